@@ -0,0 +1,141 @@
+#!/usr/bin/env python3
+"""Build or check the postcode country index from the ONS Postcode Directory (ONSPD).
+
+The ONSPD is published by the ONS Geography team on the Open Geography Portal
+(https://geoportal.statistics.gov.uk), under the Open Government Licence. Use the single CSV file
+of the UK edition, which has a row per postcode including:
+
+  pcds    the postcode, with a single space, eg, 'TD15 1AA'
+  doterm  the year and month the postcode was terminated, blank if it is live
+  ctry    the GSS code of the country the postcode lies in
+
+Only live postcodes are used. A district whose live postcodes all lie in one country gets that
+country, a district with postcodes in more than one country is marked '*' so that its postcodes are
+left to AI, and districts in the Channel Islands and Isle of Man are left out altogether. An area is
+given the country of most of its districts, and only the districts which differ are listed.
+
+  postcode_country_index.py generate ONSPD_FEB_2021_UK.csv "February 2021" > index.csv
+  postcode_country_index.py check ONSPD_FEB_2021_UK.csv src/main/resources/postcode/index.csv
+
+check reports every live postcode which the index would give the wrong country, and fails if there
+are any.
+"""
+
+import csv
+import re
+import sys
+from collections import Counter, defaultdict
+
+COUNTRIES = {
+    "E92000001": "E",
+    "W92000004": "W",
+    "S92000003": "S",
+    "N92000002": "N",
+}
+
+BORDER_MARKER = "*"
+
+HEADER = """\
+# Postcode country index, generated by scripts/postcode_country_index.py from the ONS Postcode
+# Directory, {edition}.
+#
+# Each line maps a postcode area (eg, 'EH') or district (eg, 'TD15') to the country code used by
+# AI: E, W, S or N. A district entry takes precedence over the entry for its area. Districts that
+# straddle a border are marked '*', which means their country must be found from AI instead.
+# Postcodes in areas not listed here are also looked up in AI.
+#
+# Source: Office for National Statistics licensed under the Open Government Licence v3.0.
+# Contains OS data (c) Crown copyright and database right. Contains Royal Mail data (c) Royal Mail
+# copyright and database right. Contains GeoPlace data (c) Local Government Information House
+# Limited copyright and database right.
+#
+# When changing this file create a new version of it, and point
+# postcode-country-index-settings.index-file at the new version.
+"""
+
+
+def area(district):
+    return re.match(r"[A-Z]*", district).group(0)
+
+
+def live_postcodes(onspd_path):
+    with open(onspd_path, newline="", encoding="utf-8-sig") as onspd:
+        for row in csv.DictReader(onspd):
+            if row["doterm"].strip():
+                continue
+            postcode = row["pcds"].strip().upper()
+            yield postcode, COUNTRIES.get(row["ctry"].strip())
+
+
+def district_countries(onspd_path):
+    countries = defaultdict(set)
+    for postcode, country in live_postcodes(onspd_path):
+        # None, ie, a Crown dependency, counts as a country of its own
+        countries[postcode.split()[0]].add(country)
+    return countries
+
+
+def generate(onspd_path, edition):
+    districts_by_area = defaultdict(dict)
+    for district, countries in district_countries(onspd_path).items():
+        if countries == {None}:
+            continue
+        country = countries.pop() if len(countries) == 1 else BORDER_MARKER
+        districts_by_area[area(district)][district] = country
+
+    print(HEADER.format(edition=edition))
+    for area_code in sorted(districts_by_area):
+        districts = districts_by_area[area_code]
+        single = Counter(c for c in districts.values() if c != BORDER_MARKER)
+        area_country = single.most_common(1)[0][0] if single else BORDER_MARKER
+        print("%s,%s" % (area_code, area_country))
+        for district in sorted(districts, key=district_sort_key):
+            if districts[district] != area_country:
+                print("%s,%s" % (district, districts[district]))
+
+
+def district_sort_key(district):
+    match = re.match(r"([A-Z]*)([0-9]*)(.*)", district)
+    return match.group(1), int(match.group(2) or 0), match.group(3)
+
+
+def read_index(index_path):
+    # The same rules as PostcodeCountryIndex
+    index = {"BT": "N"}
+    with open(index_path, encoding="utf-8") as index_file:
+        for line in index_file:
+            line = line.strip()
+            if not line or line.startswith("#"):
+                continue
+            fields = [f.strip().upper() for f in line.split(",")]
+            if len(fields) == 2 and all(fields):
+                index[fields[0]] = fields[1]
+    return index
+
+
+def check(onspd_path, index_path):
+    index = read_index(index_path)
+    wrong = 0
+    for postcode, country in live_postcodes(onspd_path):
+        district = postcode.split()[0]
+        indexed = index.get(district, index.get(area(district)))
+        if indexed is None or indexed == BORDER_MARKER or indexed == country:
+            continue
+        wrong += 1
+        print("%s is in %s but the index gives %s" % (postcode, country or "neither", indexed))
+    print("%d postcodes would be given the wrong country" % wrong, file=sys.stderr)
+    return 1 if wrong else 0
+
+
+def main(args):
+    if len(args) == 3 and args[0] == "generate":
+        generate(args[1], args[2])
+        return 0
+    if len(args) == 3 and args[0] == "check":
+        return check(args[1], args[2])
+    print(__doc__, file=sys.stderr)
+    return 2
+
+
+if __name__ == "__main__":
+    sys.exit(main(sys.argv[1:]))
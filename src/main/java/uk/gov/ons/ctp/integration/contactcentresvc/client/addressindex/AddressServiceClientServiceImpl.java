@@ -34,25 +34,15 @@ public class AddressServiceClientServiceImpl {
       log.debug("Delegating address search to AddressIndex service");
     }
 
-    String input = addressQueryRequest.getInput().trim();
-    int offset = addressQueryRequest.getOffset();
-    int limit = addressQueryRequest.getLimit();
-
-    // Address query is delegated to Address Index. Build the query params for the request
-    MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
-    queryParams.add("input", input);
-    queryParams.add("offset", Integer.toString(offset));
-    queryParams.add("limit", Integer.toString(limit));
-    queryParams.add("historical", "false");
-    queryParams.add("includeauxiliarysearch", "true");
-    queryParams.add("matchthreshold", "0");
-    addEpoch(queryParams);
-
     // Ask Address Index to do an address search
     String path = appConfig.getAddressIndexSettings().getAddressQueryPath();
     AddressIndexSearchResultsDTO addressIndexResponse =
         addressIndexClient.getResource(
-            path, AddressIndexSearchResultsDTO.class, null, queryParams, new Object[] {});
+            path,
+            AddressIndexSearchResultsDTO.class,
+            null,
+            addressQueryParams(addressQueryRequest),
+            new Object[] {});
     if (log.isDebugEnabled()) {
       log.with("status", addressIndexResponse.getStatus().getCode())
           .with("addresses", addressIndexResponse.getResponse().getAddresses().size())
@@ -62,28 +52,62 @@ public class AddressServiceClientServiceImpl {
     return addressIndexResponse;
   }
 
-  public AddressIndexSearchResultsDTO searchByPostcode(
-      PostcodeQueryRequestDTO postcodeQueryRequest) {
+  /**
+   * Search by address, returning the response from Address Index as it is, so that it can be
+   * parsed without being bound to DTOs.
+   *
+   * @param addressQueryRequest the search
+   * @return the JSON response from Address Index
+   */
+  public byte[] searchByAddressJson(AddressQueryRequestDTO addressQueryRequest) {
     if (log.isDebugEnabled()) {
-      log.debug("Delegating postcode search to the AddressIndex service");
+      log.debug("Delegating address search to AddressIndex service");
     }
 
-    int offset = postcodeQueryRequest.getOffset();
-    int limit = postcodeQueryRequest.getLimit();
+    String path = appConfig.getAddressIndexSettings().getAddressQueryPath();
+    byte[] addressIndexResponse =
+        addressIndexClient.getResource(
+            path, byte[].class, null, addressQueryParams(addressQueryRequest), new Object[] {});
+    if (log.isDebugEnabled()) {
+      log.with("bytes", addressIndexResponse.length).debug("Address query response received");
+    }
 
-    // Postcode query is delegated to Address Index. Build the query params
+    return addressIndexResponse;
+  }
+
+  private MultiValueMap<String, String> addressQueryParams(
+      AddressQueryRequestDTO addressQueryRequest) {
+    String input = addressQueryRequest.getInput().trim();
+    int offset = addressQueryRequest.getOffset();
+    int limit = addressQueryRequest.getLimit();
+
+    // Address query is delegated to Address Index. Build the query params for the request
     MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
+    queryParams.add("input", input);
     queryParams.add("offset", Integer.toString(offset));
     queryParams.add("limit", Integer.toString(limit));
+    queryParams.add("historical", "false");
     queryParams.add("includeauxiliarysearch", "true");
-    addEpoch(queryParams);
+    queryParams.add("matchthreshold", "0");
+    return addEpoch(queryParams);
+  }
+
+  public AddressIndexSearchResultsDTO searchByPostcode(
+      PostcodeQueryRequestDTO postcodeQueryRequest) {
+    if (log.isDebugEnabled()) {
+      log.debug("Delegating postcode search to the AddressIndex service");
+    }
 
     // Ask Address Index to do postcode search
     String postcode = postcodeQueryRequest.getPostcode();
     String path = appConfig.getAddressIndexSettings().getPostcodeLookupPath();
     AddressIndexSearchResultsDTO addressIndexResponse =
         addressIndexClient.getResource(
-            path, AddressIndexSearchResultsDTO.class, null, queryParams, postcode);
+            path,
+            AddressIndexSearchResultsDTO.class,
+            null,
+            postcodeQueryParams(postcodeQueryRequest),
+            postcode);
     if (log.isDebugEnabled()) {
       log.with("postcode", postcode)
           .with("status", addressIndexResponse.getStatus().getCode())
@@ -94,6 +118,45 @@ public class AddressServiceClientServiceImpl {
     return addressIndexResponse;
   }
 
+  /**
+   * Search by postcode, returning the response from Address Index as it is, so that it can be
+   * parsed without being bound to DTOs.
+   *
+   * @param postcodeQueryRequest the search
+   * @return the JSON response from Address Index
+   */
+  public byte[] searchByPostcodeJson(PostcodeQueryRequestDTO postcodeQueryRequest) {
+    if (log.isDebugEnabled()) {
+      log.debug("Delegating postcode search to the AddressIndex service");
+    }
+
+    String postcode = postcodeQueryRequest.getPostcode();
+    String path = appConfig.getAddressIndexSettings().getPostcodeLookupPath();
+    byte[] addressIndexResponse =
+        addressIndexClient.getResource(
+            path, byte[].class, null, postcodeQueryParams(postcodeQueryRequest), postcode);
+    if (log.isDebugEnabled()) {
+      log.with("postcode", postcode)
+          .with("bytes", addressIndexResponse.length)
+          .debug("Postcode query response received");
+    }
+
+    return addressIndexResponse;
+  }
+
+  private MultiValueMap<String, String> postcodeQueryParams(
+      PostcodeQueryRequestDTO postcodeQueryRequest) {
+    int offset = postcodeQueryRequest.getOffset();
+    int limit = postcodeQueryRequest.getLimit();
+
+    // Postcode query is delegated to Address Index. Build the query params
+    MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
+    queryParams.add("offset", Integer.toString(offset));
+    queryParams.add("limit", Integer.toString(limit));
+    queryParams.add("includeauxiliarysearch", "true");
+    return addEpoch(queryParams);
+  }
+
   public AddressIndexSearchResultsCompositeDTO searchByUPRN(Long uprn) {
     if (log.isDebugEnabled()) {
       log.debug("Delegating UPRN search to AddressIndex service");
@@ -10,5 +10,8 @@ public class AddressIndexSettings {
   private String uprnLookupPath;
   private String addressType;
   private String epoch;
+  // When true address and postcode search results are summarised as they are parsed, rather than
+  // being bound to DTOs first
+  private boolean streamingParse;
   private RestClientConfig restClientConfig;
 }
@@ -0,0 +1,15 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class AddressQueryCacheSettings {
+  // When false every address search goes to AI
+  private boolean enabled;
+  // The cache is bounded by the total number of addresses held, not the number of searches
+  private long maximumAddresses = 100000;
+  private long timeToLiveMinutes = 10;
+  // Answer a search locally when a shorter search it extends returned all of its matches. The
+  // results may then differ from AI's in order and total
+  private boolean derivePrefixQueries;
+}
@@ -19,7 +19,21 @@ public class AppConfig {
   private String surveyName;
   private String collectionExerciseId;
   private AddressIndexSettings addressIndexSettings;
+  private AddressQueryCacheSettings addressQueryCacheSettings;
+  private PostcodeCountryCacheSettings postcodeCountryCacheSettings;
+  private PostcodeCountryIndexSettings postcodeCountryIndexSettings;
+  private PostcodeQueryCacheSettings postcodeQueryCacheSettings;
+  private UprnAddressCacheSettings uprnAddressCacheSettings;
   private CaseServiceSettings caseServiceSettings;
+  private CaseLookupSettings caseLookupSettings;
+  private RmCaseCacheSettings rmCaseCacheSettings;
+  private CaseWriteBehindSettings caseWriteBehindSettings;
+  private CaseWriteBatchSettings caseWriteBatchSettings;
+  private CaseReadCacheSettings caseReadCacheSettings;
+  private CaseUprnFilterSettings caseUprnFilterSettings;
+  private CaseUprnIndexSettings caseUprnIndexSettings;
+  private CaseCollectionCheckSettings caseCollectionCheckSettings;
+  private EmbeddedCaseStoreSettings embeddedCaseStoreSettings;
   private Fulfilments fulfilments;
   private KeyStore keystore;
   private EqConfig eq;
@@ -27,6 +41,8 @@ public class AppConfig {
   private Channel channel;
   private Resource publicPgpKey1;
   private Resource publicPgpKey2;
+  private PgpKeySettings pgpKeySettings;
+  private RefusalEncryptionSettings refusalEncryptionSettings;
   private CCSPostcodes ccsPostcodes;
   private CustomCircuitBreakerConfig circuitBreaker;
   private MessagingConfig messaging;
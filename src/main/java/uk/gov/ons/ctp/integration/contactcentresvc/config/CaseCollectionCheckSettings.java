@@ -0,0 +1,14 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class CaseCollectionCheckSettings {
+  // When true the check is made in the background, and the service reports itself out of service
+  // until it is complete
+  private boolean async;
+  // A failed background check is made again after the minimum delay, doubling each time up to the
+  // maximum, and the service reports itself down until the check succeeds
+  private long retryMinDelayMillis = 1000;
+  private long retryMaxDelayMillis = 60000;
+}
@@ -0,0 +1,13 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class CaseLookupSettings {
+  // When true the RM and cache legs of a case lookup run at the same time
+  private boolean concurrent;
+  private int threadPoolSize = 10;
+  private int queueCapacity = 100;
+  // How long to wait for the case cache once RM has supplied a case. Zero waits indefinitely
+  private long cacheDeadlineMillis;
+}
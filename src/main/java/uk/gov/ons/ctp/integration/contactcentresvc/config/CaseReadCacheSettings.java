@@ -0,0 +1,15 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class CaseReadCacheSettings {
+  // When false every cached case read goes to the cloud data store
+  private boolean enabled;
+  private long maximumSize = 10000;
+  // Another pod's update is not seen until the entry expires, so this matches the RM case cache
+  private long timeToLiveSeconds = 5;
+  // Another pod may create a case at any time, which this pod would not see until a remembered
+  // absence expires, so absence is only remembered if this is positive
+  private long notFoundTimeToLiveSeconds;
+}
@@ -0,0 +1,14 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class CaseUprnFilterSettings {
+  // When false every search for the cached cases at a UPRN goes to the cloud data store. Needs the
+  // UPRN index to be used for reads
+  private boolean enabled;
+  private long expectedUprns = 1000000;
+  private double falsePositiveRate = 0.01;
+  // The filter is only built once, but if that fails it is tried again after this long
+  private long buildRetryMinutes = 1;
+}
@@ -0,0 +1,12 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class CaseUprnIndexSettings {
+  // When true each write of a case also adds it to the index document for its UPRN
+  private boolean enabled;
+  // When true cases are found by UPRN through the index rather than by a query. Only safe once
+  // every case has been indexed
+  private boolean useForReads;
+}
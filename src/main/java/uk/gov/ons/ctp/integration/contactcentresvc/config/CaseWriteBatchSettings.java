@@ -0,0 +1,12 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class CaseWriteBatchSettings {
+  // When false each case written by a request is committed on its own
+  private boolean enabled;
+  private int maxBatchSize = 100;
+  // How long the first write of a batch waits for others to join it
+  private long maxDelayMillis = 5;
+}
@@ -0,0 +1,16 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class CaseWriteBehindSettings {
+  // When false each modified case is written to Firestore before the request that modified it
+  // completes. New cases are always written before the request completes
+  private boolean enabled;
+  private int queueCapacity = 1000;
+  private int batchSize = 50;
+  private long flushIntervalMillis = 200;
+  // Cases which do not fit in the queue, or could not be written, are kept here until written.
+  // They are lost with the container unless this is a mounted volume
+  private String spillDirectory = "/tmp/case-write-behind";
+}
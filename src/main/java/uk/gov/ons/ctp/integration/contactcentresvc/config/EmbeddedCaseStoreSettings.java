@@ -0,0 +1,10 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class EmbeddedCaseStoreSettings {
+  // Holds the log of cases written when running with the embedded-case-store profile
+  private String directory = "/tmp/case-store";
+  private int segmentSizeMegabytes = 64;
+}
@@ -0,0 +1,9 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class PgpKeySettings {
+  // Changed key files are picked up within this long, and never when 0
+  private long reloadCheckIntervalSeconds = 60;
+}
@@ -0,0 +1,15 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class PostcodeCountryCacheSettings {
+  // When false every region lookup for a new address goes to AI
+  private boolean enabled;
+  private long maximumSize = 50000;
+  private long timeToLiveHours = 24;
+  // Optional file of 'postcode,countryCode' lines which are held for the lifetime of the service
+  private String preloadPath;
+  // The AI epoch the preload file was built for. The file is ignored under any other epoch
+  private String preloadEpoch;
+}
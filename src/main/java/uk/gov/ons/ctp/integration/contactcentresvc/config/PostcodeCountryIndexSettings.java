@@ -0,0 +1,11 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+import org.springframework.core.io.Resource;
+
+@Data
+public class PostcodeCountryIndexSettings {
+  // When false the country of every new address postcode outside Northern Ireland is found from AI
+  private boolean enabled;
+  private Resource indexFile;
+}
@@ -0,0 +1,12 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class PostcodeQueryCacheSettings {
+  // When false every postcode search goes to AI
+  private boolean enabled;
+  // The cache is bounded by the total number of addresses held, not the number of searches
+  private long maximumAddresses = 200000;
+  private long timeToLiveMinutes = 60;
+}
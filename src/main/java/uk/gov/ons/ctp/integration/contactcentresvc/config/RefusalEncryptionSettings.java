@@ -0,0 +1,15 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class RefusalEncryptionSettings {
+  // When false refusal contact details are encrypted on the request thread
+  private boolean pooled;
+  // Zero sizes the pool to the number of processors
+  private int threadPoolSize;
+  // Refusals beyond those being encrypted and queued are turned away
+  private int queueCapacity = 100;
+  // How long a refusal waits for its contact details to be encrypted
+  private long timeoutMillis = 10000;
+}
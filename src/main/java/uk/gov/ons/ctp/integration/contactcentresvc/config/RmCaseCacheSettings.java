@@ -0,0 +1,13 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class RmCaseCacheSettings {
+  // When false every case read goes to RM
+  private boolean enabled;
+  private long maximumSize = 10000;
+  private long timeToLiveSeconds = 5;
+  // When true concurrent identical lookups share a single call to RM
+  private boolean singleFlight;
+}
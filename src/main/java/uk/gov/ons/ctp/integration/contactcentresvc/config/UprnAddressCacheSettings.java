@@ -0,0 +1,13 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.config;
+
+import lombok.Data;
+
+@Data
+public class UprnAddressCacheSettings {
+  // When false every UPRN lookup goes to AI
+  private boolean enabled;
+  private long maximumSize = 20000;
+  private long timeToLiveMinutes = 60;
+  // UPRNs that AI does not know are remembered for much less time, in case they are added
+  private long notFoundTimeToLiveSeconds = 60;
+}
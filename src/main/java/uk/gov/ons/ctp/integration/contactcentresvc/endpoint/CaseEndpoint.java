@@ -35,6 +35,7 @@ import uk.gov.ons.ctp.integration.contactcentresvc.representation.SMSFulfilmentR
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.UACRequestDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.UACResponseDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.service.CaseService;
+import uk.gov.ons.ctp.integration.contactcentresvc.service.CasesAtAddress;
 
 /** The REST controller for ContactCentreSvc find cases end points */
 @Timed
@@ -43,6 +44,8 @@ import uk.gov.ons.ctp.integration.contactcentresvc.service.CaseService;
 public class CaseEndpoint implements CTPEndpoint {
   private static final Logger log = LoggerFactory.getLogger(CaseEndpoint.class);
 
+  static final String PARTIAL_RESPONSE_HEADER = "X-Partial-Response";
+
   private CaseService caseService;
 
   /**
@@ -101,7 +104,7 @@ public class CaseEndpoint implements CTPEndpoint {
    *
    * @param uprn the UPRN
    * @param requestParamsDTO contains request params
-   * @return the case
+   * @return the case, with an X-Partial-Response header if it was found without our cached cases
    * @throws CTPException something went wrong
    */
   @RequestMapping(value = "/uprn/{uprn}", method = RequestMethod.GET)
@@ -113,9 +116,13 @@ public class CaseEndpoint implements CTPEndpoint {
         .with("requestParams", requestParamsDTO)
         .info("Entering GET getCaseByUPRN");
 
-    List<CaseDTO> results = caseService.getCaseByUPRN(uprn, requestParamsDTO);
+    CasesAtAddress results = caseService.getCaseByUPRN(uprn, requestParamsDTO);
 
-    return ResponseEntity.ok(results);
+    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+    if (results.isPartial()) {
+      response.header(PARTIAL_RESPONSE_HEADER, "true");
+    }
+    return response.body(results.getCases());
   }
 
   /**
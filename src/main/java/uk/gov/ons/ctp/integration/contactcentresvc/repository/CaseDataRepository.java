@@ -1,5 +1,6 @@
 package uk.gov.ons.ctp.integration.contactcentresvc.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -18,6 +19,26 @@ public interface CaseDataRepository {
    */
   void writeCachedCase(final CachedCase newCase) throws CTPException;
 
+  /**
+   * Store a new version of a case which RM already holds, eg, one modified by an agent.
+   *
+   * <p>Unlike a new case this may be written in the background, since no pod creates a case on the
+   * strength of this one not having been stored yet.
+   *
+   * @param caze case to be stored in repository
+   * @throws CTPException undefined system error on storing case to repository
+   */
+  void updateCachedCase(final CachedCase caze) throws CTPException;
+
+  /**
+   * Store several cases to repository in a single commit
+   *
+   * @param cases cases to be stored in repository. If a case appears more than once, the last one
+   *     is stored
+   * @throws CTPException undefined system error on storing cases to repository
+   */
+  void writeCachedCases(final Collection<CachedCase> cases) throws CTPException;
+
   /**
    * Get all Cached cases for an address by Unique Property Reference Number.
    *
@@ -28,6 +49,19 @@ public interface CaseDataRepository {
   List<CachedCase> readCachedCasesByUprn(final UniquePropertyReferenceNumber uprn)
       throws CTPException;
 
+  /**
+   * Get all Cached cases for an address by Unique Property Reference Number, only reading their
+   * events if they are wanted.
+   *
+   * @param uprn UPRN of the case to read
+   * @param caseEvents false if the cases should be read without their events, in which case they
+   *     are returned with none
+   * @return list of cached cases found that match the given UPRN
+   * @throws CTPException on error
+   */
+  List<CachedCase> readCachedCasesByUprn(
+      final UniquePropertyReferenceNumber uprn, final boolean caseEvents) throws CTPException;
+
   /**
    * Read a skeleton Case by Id
    *
@@ -36,4 +70,16 @@ public interface CaseDataRepository {
    * @throws CTPException for error reading case
    */
   Optional<CachedCase> readCachedCaseById(final UUID caseId) throws CTPException;
+
+  /**
+   * Read a skeleton Case by Id, only reading its events if they are wanted
+   *
+   * @param caseId of case to read
+   * @param caseEvents false if the case should be read without its events, in which case it is
+   *     returned with none
+   * @return Optional containing case for Id if available
+   * @throws CTPException for error reading case
+   */
+  Optional<CachedCase> readCachedCaseById(final UUID caseId, final boolean caseEvents)
+      throws CTPException;
 }
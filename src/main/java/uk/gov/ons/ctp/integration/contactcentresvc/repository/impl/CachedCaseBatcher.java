@@ -0,0 +1,137 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import lombok.Value;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseWriteBatchSettings;
+
+/**
+ * Groups cached cases written at about the same time by different requests into a single batch
+ * write.
+ *
+ * <p>The first caller to arrive when no batch is being gathered waits up to the maximum delay for
+ * others to join, or until the batch is full, and then writes the batch on behalf of everyone in
+ * it. Each caller still returns only once its case has been written, and sees the failure if the
+ * batch could not be written, so callers cannot tell the difference from writing on their own.
+ * While one batch is being written the next one is gathered.
+ */
+class CachedCaseBatcher {
+
+  /** The synchronous write of a batch of cases. */
+  @FunctionalInterface
+  interface BatchWriter {
+    void write(List<CachedCase> cases) throws CTPException;
+  }
+
+  @Value
+  private static class Pending {
+    CachedCase caze;
+    CompletableFuture<Void> written = new CompletableFuture<>();
+  }
+
+  private final BatchWriter writer;
+
+  private final int maxBatchSize;
+
+  private final long maxDelayNanos;
+
+  private final Object lock = new Object();
+
+  // guarded by lock
+  private List<Pending> gathering = new ArrayList<>();
+
+  // guarded by lock, true while the first caller of a batch is waiting for others
+  private boolean leaderWaiting;
+
+  CachedCaseBatcher(CaseWriteBatchSettings settings, BatchWriter writer) {
+    this.writer = writer;
+    this.maxBatchSize = settings.getMaxBatchSize();
+    this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(settings.getMaxDelayMillis());
+  }
+
+  /**
+   * Write a case as part of a batch, returning once the batch has been written.
+   *
+   * @param caze the case
+   * @throws CTPException if the batch could not be written
+   */
+  void write(CachedCase caze) throws CTPException {
+    Pending pending = new Pending(caze);
+    boolean leader;
+    synchronized (lock) {
+      gathering.add(pending);
+      leader = !leaderWaiting;
+      if (leader) {
+        leaderWaiting = true;
+      } else if (gathering.size() >= maxBatchSize) {
+        lock.notifyAll();
+      }
+    }
+
+    if (leader) {
+      writeBatch(gather());
+    }
+    await(pending);
+  }
+
+  private List<Pending> gather() {
+    boolean interrupted = false;
+    List<Pending> batch;
+    synchronized (lock) {
+      long deadline = System.nanoTime() + maxDelayNanos;
+      long remaining = maxDelayNanos;
+      while (gathering.size() < maxBatchSize && remaining > 0) {
+        try {
+          TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+        } catch (InterruptedException e) {
+          // Others are relying on this batch being written, so carry on
+          interrupted = true;
+        }
+        remaining = deadline - System.nanoTime();
+      }
+      batch = gathering;
+      gathering = new ArrayList<>();
+      leaderWaiting = false;
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    return batch;
+  }
+
+  private void writeBatch(List<Pending> batch) {
+    List<CachedCase> cases = new ArrayList<>(batch.size());
+    batch.forEach(p -> cases.add(p.getCaze()));
+    try {
+      writer.write(cases);
+      batch.forEach(p -> p.getWritten().complete(null));
+    } catch (Throwable e) {
+      // Including errors, as the others in the batch would otherwise wait forever
+      batch.forEach(p -> p.getWritten().completeExceptionally(e));
+    }
+  }
+
+  private void await(Pending pending) throws CTPException {
+    try {
+      pending.getWritten().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CTPException(Fault.SYSTEM_ERROR, e);
+    } catch (ExecutionException e) {
+      // the same failure as writing the case on its own would have had
+      if (e.getCause() instanceof CTPException) {
+        throw (CTPException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw (RuntimeException) e.getCause();
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static java.util.stream.Collectors.toList;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import ma.glasnost.orika.MapperFacade;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.integration.contactcentresvc.CCSvcBeanMapper;
+import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseReadCacheSettings;
+
+/**
+ * Read-through cache of the cached cases held by the cloud data store, keyed by case id and by
+ * UPRN.
+ *
+ * <p>Most UPRNs have no cached case, so finding nothing may be cached too, but only if configured
+ * to be, and then for a short time. Another pod may create a case at any moment, and until the
+ * entry expires this pod would not see it, and could create a second case for the address. Cases
+ * written by this pod are put straight into the cache. Failed reads are not cached.
+ *
+ * <p>A read which leaves out the case events can be answered by a cached case, but what it reads
+ * is only cached if it found nothing, as the cache holds complete cases.
+ *
+ * <p>Callers are free to modify what they are given, so each read hands out a copy of the cached
+ * case.
+ */
+class CachedCaseReadCache {
+  private static final Logger log = LoggerFactory.getLogger(CachedCaseReadCache.class);
+
+  static final String BY_ID_CACHE_NAME = "cachedCaseById";
+  static final String BY_UPRN_CACHE_NAME = "cachedCasesByUprn";
+
+  /** A read from the cloud data store. */
+  @FunctionalInterface
+  interface Loader<V> {
+    V load() throws CTPException;
+  }
+
+  private final MapperFacade mapper = new CCSvcBeanMapper();
+
+  private final boolean cacheNotFound;
+
+  // both null when the cache is disabled
+  private final Cache<String, Optional<CachedCase>> casesById;
+  private final Cache<String, List<CachedCase>> casesByUprn;
+
+  CachedCaseReadCache(CaseReadCacheSettings settings, MeterRegistry meterRegistry) {
+    cacheNotFound = settings.getNotFoundTimeToLiveSeconds() > 0;
+    if (settings.isEnabled()) {
+      log.with("maximumSize", settings.getMaximumSize())
+          .with("timeToLiveSeconds", settings.getTimeToLiveSeconds())
+          .with("notFoundTimeToLiveSeconds", settings.getNotFoundTimeToLiveSeconds())
+          .info("Caching cached case reads");
+      casesById = createCache(settings, meterRegistry, BY_ID_CACHE_NAME, c -> !c.isPresent());
+      casesByUprn = createCache(settings, meterRegistry, BY_UPRN_CACHE_NAME, List::isEmpty);
+    } else {
+      casesById = null;
+      casesByUprn = null;
+    }
+  }
+
+  /**
+   * Get a case by its id, reading it from the store if it is not cached.
+   *
+   * @param caseId of the case
+   * @param read the read from the store
+   * @return the case, or empty if there is no such case
+   * @throws CTPException if the read failed
+   */
+  Optional<CachedCase> getById(String caseId, Loader<Optional<CachedCase>> read)
+      throws CTPException {
+    if (casesById == null) {
+      return read.load();
+    }
+    Optional<CachedCase> cached = casesById.getIfPresent(caseId);
+    if (cached != null) {
+      return cached.map(this::copy);
+    }
+    Optional<CachedCase> caze = read.load();
+    if (caze.isPresent() || cacheNotFound) {
+      casesById.asMap().putIfAbsent(caseId, caze.map(this::copy));
+    }
+    return caze;
+  }
+
+  /**
+   * Get the cases for a UPRN, reading them from the store if they are not cached.
+   *
+   * @param uprn of the address
+   * @param read the read from the store
+   * @return the cases, which may be none
+   * @throws CTPException if the read failed
+   */
+  List<CachedCase> getByUprn(String uprn, Loader<List<CachedCase>> read) throws CTPException {
+    if (casesByUprn == null) {
+      return read.load();
+    }
+    List<CachedCase> cached = casesByUprn.getIfPresent(uprn);
+    if (cached != null) {
+      return copy(cached);
+    }
+    List<CachedCase> cases = read.load();
+    if (!cases.isEmpty() || cacheNotFound) {
+      casesByUprn.asMap().putIfAbsent(uprn, List.copyOf(copy(cases)));
+    }
+    return cases;
+  }
+
+  /**
+   * Get a case by its id without its events, reading it from the store without them if it is not
+   * cached.
+   *
+   * @param caseId of the case
+   * @param read the read from the store which leaves out the events
+   * @return the case, or empty if there is no such case
+   * @throws CTPException if the read failed
+   */
+  Optional<CachedCase> getByIdWithoutEvents(String caseId, Loader<Optional<CachedCase>> read)
+      throws CTPException {
+    if (casesById == null) {
+      return read.load();
+    }
+    Optional<CachedCase> cached = casesById.getIfPresent(caseId);
+    if (cached != null) {
+      return cached.map(this::copyWithoutEvents);
+    }
+    Optional<CachedCase> caze = read.load();
+    if (!caze.isPresent() && cacheNotFound) {
+      casesById.asMap().putIfAbsent(caseId, caze);
+    }
+    return caze;
+  }
+
+  /**
+   * Get the cases for a UPRN without their events, reading them from the store without them if
+   * they are not cached.
+   *
+   * @param uprn of the address
+   * @param read the read from the store which leaves out the events
+   * @return the cases, which may be none
+   * @throws CTPException if the read failed
+   */
+  List<CachedCase> getByUprnWithoutEvents(String uprn, Loader<List<CachedCase>> read)
+      throws CTPException {
+    if (casesByUprn == null) {
+      return read.load();
+    }
+    List<CachedCase> cached = casesByUprn.getIfPresent(uprn);
+    if (cached != null) {
+      return cached.stream().map(this::copyWithoutEvents).collect(toList());
+    }
+    List<CachedCase> cases = read.load();
+    if (cases.isEmpty() && cacheNotFound) {
+      casesByUprn.asMap().putIfAbsent(uprn, List.of());
+    }
+    return cases;
+  }
+
+  /**
+   * Cache a case which has just been written. It replaces any cached version of the case, and is
+   * added to the cases for its UPRN if those are cached.
+   *
+   * @param caze the case
+   */
+  void put(CachedCase caze) {
+    if (casesById == null) {
+      return;
+    }
+    CachedCase written = copy(caze);
+    Optional<CachedCase> previous = casesById.asMap().put(written.getId(), Optional.of(written));
+    if (previous != null && previous.isPresent()) {
+      String previousUprn = previous.get().getUprn();
+      if (previousUprn != null && !previousUprn.equals(written.getUprn())) {
+        // the case has moved, so is no longer one of the cases at its old UPRN
+        casesByUprn.invalidate(previousUprn);
+      }
+    }
+    casesByUprn
+        .asMap()
+        .computeIfPresent(written.getUprn(), (uprn, cases) -> replace(cases, written));
+  }
+
+  private List<CachedCase> replace(List<CachedCase> cases, CachedCase caze) {
+    List<CachedCase> replaced = new ArrayList<>(cases.size() + 1);
+    cases.stream().filter(c -> !c.getId().equals(caze.getId())).forEach(replaced::add);
+    replaced.add(caze);
+    return List.copyOf(replaced);
+  }
+
+  private CachedCase copy(CachedCase caze) {
+    return mapper.map(caze, CachedCase.class);
+  }
+
+  private CachedCase copyWithoutEvents(CachedCase caze) {
+    CachedCase copy = copy(caze);
+    copy.setCaseEvents(new ArrayList<>());
+    return copy;
+  }
+
+  private List<CachedCase> copy(List<CachedCase> cases) {
+    return cases.stream().map(this::copy).collect(toList());
+  }
+
+  private static <V> Cache<String, V> createCache(
+      CaseReadCacheSettings settings,
+      MeterRegistry meterRegistry,
+      String name,
+      Predicate<V> isNotFound) {
+    long foundNanos = TimeUnit.SECONDS.toNanos(settings.getTimeToLiveSeconds());
+    long notFoundNanos = TimeUnit.SECONDS.toNanos(settings.getNotFoundTimeToLiveSeconds());
+    Cache<String, V> cache =
+        Caffeine.newBuilder()
+            .maximumSize(settings.getMaximumSize())
+            .expireAfter(new NotFoundExpiry<>(foundNanos, notFoundNanos, isNotFound))
+            .recordStats()
+            .build();
+    return CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+  }
+
+  private static class NotFoundExpiry<V> implements Expiry<String, V> {
+    private final long foundNanos;
+    private final long notFoundNanos;
+    private final Predicate<V> isNotFound;
+
+    NotFoundExpiry(long foundNanos, long notFoundNanos, Predicate<V> isNotFound) {
+      this.foundNanos = foundNanos;
+      this.notFoundNanos = notFoundNanos;
+      this.isNotFound = isNotFound;
+    }
+
+    @Override
+    public long expireAfterCreate(String key, V value, long currentTime) {
+      return isNotFound.test(value) ? notFoundNanos : foundNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(String key, V value, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, value, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(String key, V value, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseUprnFilterSettings;
+
+/**
+ * Knows which UPRNs had no cached case when last checked, so that a cheaper check can be made for
+ * them than searching the cloud data store.
+ *
+ * <p>A Bloom filter of the UPRN of every cached case is built in the background once, at startup,
+ * and is then kept up to date incrementally rather than by scanning the collection again. Cases
+ * written by this pod are added as they are written, including while the filter is being built. A
+ * case created by another pod since the filter was built is not in it, so a UPRN the filter rules
+ * out is only a hint, and must be confirmed before it is taken to have no case; a UPRN found to
+ * have a case after all is added then. Until the filter has been built, and for anything which is
+ * not a valid UPRN, nothing can be ruled out.
+ */
+class CachedCaseUprnFilter {
+  private static final Logger log = LoggerFactory.getLogger(CachedCaseUprnFilter.class);
+
+  static final String FALSE_POSITIVE_RATE_GAUGE_NAME = "case.uprn.filter.false.positive.rate";
+  static final String SEARCH_COUNTER_NAME = "case.uprn.filter.searches";
+  static final String SKIPPED = "skipped";
+  static final String MISSED = "missed";
+  static final String FOUND = "found";
+  static final String FALSE_POSITIVE = "false_positive";
+
+  /** Passes the UPRN of every stored case to a consumer. */
+  @FunctionalInterface
+  interface UprnSource {
+    void forEachUprn(Consumer<Object> consumer) throws CTPException;
+  }
+
+  private final CaseUprnFilterSettings settings;
+
+  private final UprnSource source;
+
+  private final MeterRegistry meterRegistry;
+
+  private final Object lock = new Object();
+
+  // null until first built
+  private volatile UprnBloomFilter filter;
+
+  // guarded by lock, the filter being built if any
+  private UprnBloomFilter building;
+
+  private ScheduledExecutorService builder;
+
+  CachedCaseUprnFilter(
+      CaseUprnFilterSettings settings, UprnSource source, MeterRegistry meterRegistry) {
+    this.settings = settings;
+    this.source = source;
+    this.meterRegistry = meterRegistry;
+    Gauge.builder(FALSE_POSITIVE_RATE_GAUGE_NAME, this, CachedCaseUprnFilter::falsePositiveRate)
+        .description("Expected chance that a UPRN without a cached case is searched for anyway")
+        .register(meterRegistry);
+  }
+
+  /** Build the filter in the background, trying again until it has been built. */
+  void start() {
+    log.with("expectedUprns", settings.getExpectedUprns())
+        .with("falsePositiveRate", settings.getFalsePositiveRate())
+        .with("buildRetryMinutes", settings.getBuildRetryMinutes())
+        .info("Filtering searches for cached cases by UPRN");
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("case-uprn-filter-");
+    threadFactory.setDaemon(true);
+    builder = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    builder.execute(this::buildInBackground);
+  }
+
+  void shutdown() {
+    if (builder != null) {
+      builder.shutdownNow();
+    }
+  }
+
+  private void buildInBackground() {
+    if (build()) {
+      builder.shutdown();
+    } else {
+      builder.schedule(this::buildInBackground, settings.getBuildRetryMinutes(), TimeUnit.MINUTES);
+    }
+  }
+
+  /**
+   * Note that a case has been written for a UPRN.
+   *
+   * @param uprn of the case
+   */
+  void add(String uprn) {
+    Long value = parse(uprn);
+    if (value == null) {
+      return;
+    }
+    synchronized (lock) {
+      if (filter != null) {
+        filter.add(value);
+      }
+      if (building != null) {
+        building.add(value);
+      }
+    }
+  }
+
+  /**
+   * Find out whether there might be a cached case for a UPRN.
+   *
+   * @param uprn the UPRN
+   * @return false if there was no cached case for the UPRN when the filter was built, and this pod
+   *     has written none since
+   */
+  boolean mightContain(String uprn) {
+    UprnBloomFilter current = filter;
+    Long value = parse(uprn);
+    return current == null || value == null || current.mightContain(value);
+  }
+
+  /**
+   * Record the outcome of a search for the cases at a UPRN which could not be ruled out, so that
+   * false positives actually seen can be compared with what is expected.
+   *
+   * @param found whether any cases were found
+   */
+  void searched(boolean found) {
+    if (filter != null) {
+      countSearch(found ? FOUND : FALSE_POSITIVE);
+    }
+  }
+
+  /**
+   * Record the outcome of confirming that a UPRN the filter ruled out has no case. A UPRN found to
+   * have a case after all, eg, because another pod created one, is added to the filter.
+   *
+   * @param uprn the UPRN
+   * @param found whether any cases were found
+   */
+  void confirmed(String uprn, boolean found) {
+    if (found) {
+      add(uprn);
+    }
+    countSearch(found ? MISSED : SKIPPED);
+  }
+
+  /*
+   * Nothing is ruled out until the filter is complete, and if the build fails nothing is ruled out
+   * until it is tried again.
+   */
+  boolean build() {
+    UprnBloomFilter built =
+        new UprnBloomFilter(settings.getExpectedUprns(), settings.getFalsePositiveRate());
+    synchronized (lock) {
+      building = built;
+    }
+    long start = System.currentTimeMillis();
+    AtomicLong count = new AtomicLong();
+    try {
+      source.forEachUprn(
+          uprn -> {
+            Long value = parse(uprn);
+            if (value != null) {
+              built.add(value);
+              count.incrementAndGet();
+            }
+          });
+    } catch (CTPException | RuntimeException e) {
+      log.error("Failed to build filter of UPRNs with cached cases", e);
+      synchronized (lock) {
+        building = null;
+      }
+      return false;
+    }
+    synchronized (lock) {
+      filter = built;
+      building = null;
+    }
+    log.with("uprns", count.get())
+        .with("millis", System.currentTimeMillis() - start)
+        .with("expectedFalsePositiveRate", built.expectedFalsePositiveRate())
+        .info("Built filter of UPRNs with cached cases");
+    return true;
+  }
+
+  private double falsePositiveRate() {
+    UprnBloomFilter current = filter;
+    return current == null ? Double.NaN : current.expectedFalsePositiveRate();
+  }
+
+  private void countSearch(String outcome) {
+    Counter.builder(SEARCH_COUNTER_NAME)
+        .description("Searches for cached cases by UPRN, by what the filter and the search found")
+        .tag("outcome", outcome)
+        .register(meterRegistry)
+        .increment();
+  }
+
+  // null for anything which is not a UPRN, eg, the placeholder case
+  private static Long parse(Object uprn) {
+    if (uprn == null) {
+      return null;
+    }
+    try {
+      return Long.parseLong(uprn.toString().trim());
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static java.util.stream.Collectors.toList;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.SetOptions;
+import com.google.cloud.firestore.WriteBatch;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+
+/**
+ * Index of cached cases by UPRN, held in Firestore as one small document per UPRN, so that the
+ * cases at an address can be found by key rather than by a query over every case.
+ *
+ * <p>Each index document maps the id of each case at the address to when the case was created.
+ * Cases are written in the same commit as their index entries, so a case is never written without
+ * being indexed and indexing costs no extra round trip. Entries are only ever added, by merging
+ * them into the document, so concurrent writers need no transaction. An entry may therefore
+ * outlive the case being at the address, and readers must check what they find.
+ */
+@Component
+@Profile("!" + EmbeddedCaseDataRepository.PROFILE)
+public class CachedCaseUprnIndex {
+
+  static final String UPRN_FIELD = "uprn";
+  static final String CASES_FIELD = "cases";
+
+  // Each case takes at most two writes, itself and its index entry, and Firestore rejects a commit
+  // of more writes than FirestoreBatchWriter.MAX_WRITES_PER_COMMIT
+  private static final int MAX_CASES_PER_COMMIT = FirestoreBatchWriter.MAX_WRITES_PER_COMMIT / 2;
+
+  @Autowired private FirestoreClient firestoreClient;
+
+  /**
+   * Write cases, together with their index entries. More cases than fit in one commit are split
+   * over several commits, each holding the entries for its own cases.
+   *
+   * @param collectionName name of the collection of cases
+   * @param indexCollectionName name of the collection of index documents
+   * @param cases the cases to write, by id
+   * @throws CTPException if a commit failed even after retrying, in which case some of the cases
+   *     may have been written
+   */
+  public void write(
+      String collectionName, String indexCollectionName, Map<String, CachedCase> cases)
+      throws CTPException {
+    List<CachedCase> all = new ArrayList<>(cases.values());
+    for (int from = 0; from < all.size(); from += MAX_CASES_PER_COMMIT) {
+      List<CachedCase> chunk = all.subList(from, Math.min(from + MAX_CASES_PER_COMMIT, all.size()));
+      Map<String, Map<String, Object>> documents = indexDocuments(chunk);
+      firestoreClient.call(
+          "commit " + chunk.size() + " indexed cases to " + collectionName,
+          firestore -> {
+            CollectionReference collection = firestore.collection(collectionName);
+            CollectionReference index = firestore.collection(indexCollectionName);
+            WriteBatch batch = firestore.batch();
+            chunk.forEach(c -> batch.set(collection.document(c.getId()), c));
+            documents.forEach(
+                (uprn, document) -> batch.set(index.document(uprn), document, SetOptions.merge()));
+            return batch.commit().get();
+          });
+    }
+  }
+
+  /**
+   * Read the ids of the cases indexed for an address.
+   *
+   * @param indexCollectionName name of the collection of index documents
+   * @param uprn of the address
+   * @return the case ids, most recently created first, which is none if the address has no index
+   *     document
+   * @throws CTPException if the index could not be read, even after retrying
+   */
+  public List<String> read(String indexCollectionName, String uprn) throws CTPException {
+    DocumentSnapshot document =
+        firestoreClient.call(
+            "read " + uprn + " from " + indexCollectionName,
+            firestore -> firestore.collection(indexCollectionName).document(uprn).get().get());
+    Object entries = document.exists() ? document.get(CASES_FIELD) : null;
+    if (!(entries instanceof Map)) {
+      return new ArrayList<>();
+    }
+    Map<String, Date> createdById = new HashMap<>();
+    ((Map<?, ?>) entries).forEach((id, created) -> createdById.put((String) id, toDate(created)));
+    Comparator<Date> newestFirst =
+        Comparator.nullsFirst(Comparator.<Date>naturalOrder()).reversed();
+    return createdById.entrySet().stream()
+        .sorted(Map.Entry.comparingByValue(newestFirst))
+        .map(Map.Entry::getKey)
+        .collect(toList());
+  }
+
+  private static Map<String, Map<String, Object>> indexDocuments(Collection<CachedCase> cases) {
+    Map<String, Map<String, Object>> documents = new LinkedHashMap<>();
+    for (CachedCase caze : cases) {
+      if (caze.getUprn() == null) {
+        continue;
+      }
+      Map<String, Object> document =
+          documents.computeIfAbsent(caze.getUprn(), CachedCaseUprnIndex::newDocument);
+      @SuppressWarnings("unchecked")
+      Map<String, Object> entries = (Map<String, Object>) document.get(CASES_FIELD);
+      entries.put(caze.getId(), caze.getCreatedDateTime());
+    }
+    return documents;
+  }
+
+  private static Map<String, Object> newDocument(String uprn) {
+    Map<String, Object> document = new HashMap<>();
+    document.put(UPRN_FIELD, uprn);
+    document.put(CASES_FIELD, new HashMap<String, Object>());
+    return document;
+  }
+
+  private static Date toDate(Object created) {
+    if (created instanceof Timestamp) {
+      return ((Timestamp) created).toDate();
+    }
+    return created instanceof Date ? (Date) created : null;
+  }
+}
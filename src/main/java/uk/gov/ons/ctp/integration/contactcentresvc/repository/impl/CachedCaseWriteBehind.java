@@ -0,0 +1,387 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static java.util.stream.Collectors.toList;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import lombok.Value;
+import ma.glasnost.orika.MapperFacade;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+import uk.gov.ons.ctp.common.jackson.CustomObjectMapper;
+import uk.gov.ons.ctp.integration.contactcentresvc.CCSvcBeanMapper;
+import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseWriteBehindSettings;
+
+/**
+ * Writes cached cases to the cloud data store in the background, so that the request which
+ * created or modified a case is not held up by the store, or by its retries when the store is
+ * struggling.
+ *
+ * <p>Cases are queued and written in batches, each in a single commit, by a single thread. Until
+ * a case has been written it is served from an in-memory overlay, so that a read straight after a
+ * write sees it. A case that does not fit in the queue, or which could not be written, is spilled
+ * to a file in the spill directory, from which it is reloaded and retried.
+ *
+ * <p>The queue and overlay belong to this pod alone, so other pods do not see a case until it has
+ * been written. This is only used for new versions of cases which RM already holds, never for new
+ * cases, which another pod would otherwise duplicate. Spilled cases only survive a restart of the
+ * container if the spill directory is a mounted volume, which the default in /tmp is not.
+ *
+ * <p>Every write is given a sequence number and only the latest write of a case is ever stored, so
+ * a retry can never overwrite a newer version of a case with an older one.
+ */
+class CachedCaseWriteBehind {
+  private static final Logger log = LoggerFactory.getLogger(CachedCaseWriteBehind.class);
+
+  static final String QUEUE_SIZE_GAUGE_NAME = "case.write.behind.queue.size";
+  static final String SPILLED_COUNTER_NAME = "case.write.behind.spilled";
+  static final String OVERFLOW = "overflow";
+  static final String FAILURE = "failure";
+
+  private static final String SPILL_FILE_SUFFIX = ".json";
+  private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+  private static final String UNREADABLE_FILE_SUFFIX = ".unreadable";
+
+  /** The synchronous write of a batch of cases. */
+  @FunctionalInterface
+  interface Writer {
+    void write(List<CachedCase> cases) throws CTPException;
+  }
+
+  @Value
+  private static class Pending {
+    long seq;
+    CachedCase caze;
+    // null unless the write was reloaded from a spill file
+    Path spillFile;
+  }
+
+  private final MapperFacade mapper = new CCSvcBeanMapper();
+
+  private final ObjectMapper objectMapper = new CustomObjectMapper();
+
+  private final Writer writer;
+
+  private final MeterRegistry meterRegistry;
+
+  private final int batchSize;
+
+  private final long flushIntervalMillis;
+
+  private final Path spillDirectory;
+
+  private final BlockingQueue<Pending> queue;
+
+  // The latest unwritten write of each case, by case id
+  private final Map<String, Pending> overlay = new ConcurrentHashMap<>();
+
+  // Spill files which are in the queue, so that they are not loaded twice
+  private final Set<Path> queuedSpillFiles = ConcurrentHashMap.newKeySet();
+
+  // Based on the clock so that writes spilled by an earlier run sort before those of this run
+  private final AtomicLong sequence = new AtomicLong(System.currentTimeMillis() * 1000);
+
+  private ScheduledExecutorService flusher;
+
+  CachedCaseWriteBehind(CaseWriteBehindSettings settings, Writer writer, MeterRegistry registry) {
+    this.writer = writer;
+    this.meterRegistry = registry;
+    this.batchSize = settings.getBatchSize();
+    this.flushIntervalMillis = settings.getFlushIntervalMillis();
+    this.spillDirectory = Paths.get(settings.getSpillDirectory());
+    this.queue = new ArrayBlockingQueue<>(settings.getQueueCapacity());
+    Gauge.builder(QUEUE_SIZE_GAUGE_NAME, queue, BlockingQueue::size)
+        .description("Cached cases waiting to be written")
+        .register(registry);
+  }
+
+  /**
+   * Start writing queued cases in the background.
+   *
+   * @throws CTPException if the spill directory cannot be created
+   */
+  void start() throws CTPException {
+    try {
+      Files.createDirectories(spillDirectory);
+    } catch (IOException e) {
+      log.with("spillDirectory", spillDirectory).error("Unable to create spill directory", e);
+      throw new CTPException(Fault.SYSTEM_ERROR, e);
+    }
+    log.with("batchSize", batchSize)
+        .with("flushIntervalMillis", flushIntervalMillis)
+        .with("queueCapacity", queue.remainingCapacity())
+        .with("spillDirectory", spillDirectory)
+        .info("Writing cached cases behind");
+
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("case-write-behind-");
+    threadFactory.setDaemon(true);
+    flusher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    flusher.scheduleWithFixedDelay(
+        this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stop writing in the background, after a last attempt to write everything still queued.
+   * Anything which cannot be written is left in the spill directory.
+   */
+  void shutdown() {
+    if (flusher != null) {
+      flusher.shutdown();
+      try {
+        flusher.awaitTermination(flushIntervalMillis + 30000, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    flush();
+  }
+
+  /**
+   * Queue a case to be written.
+   *
+   * @param caze the case
+   * @throws CTPException if the queue was full, the case could not be spilled and it could not be
+   *     written straight away either
+   */
+  void write(CachedCase caze) throws CTPException {
+    Pending pending = new Pending(sequence.incrementAndGet(), copy(caze), null);
+    overlay.put(caze.getId(), pending);
+    if (!queue.offer(pending) && !spill(pending, OVERFLOW)) {
+      log.with("caseId", caze.getId()).warn("Unable to queue or spill case, writing it now");
+      writer.write(List.of(pending.getCaze()));
+      acknowledge(pending);
+    }
+  }
+
+  /**
+   * Get the latest unwritten version of a case.
+   *
+   * @param caseId of the case
+   * @return the case, or empty if there is no unwritten version
+   */
+  Optional<CachedCase> read(String caseId) {
+    Pending pending = overlay.get(caseId);
+    return pending == null ? Optional.empty() : Optional.of(copy(pending.getCaze()));
+  }
+
+  /**
+   * Bring cases read from the store up to date with any unwritten versions of them, and add any
+   * unwritten cases for the same UPRN.
+   *
+   * @param uprn the cases were read by
+   * @param stored the cases read from the store
+   * @return the up to date cases
+   */
+  List<CachedCase> read(String uprn, List<CachedCase> stored) {
+    if (overlay.isEmpty()) {
+      return stored;
+    }
+    Map<String, CachedCase> cases = new LinkedHashMap<>();
+    stored.forEach(c -> cases.put(c.getId(), c));
+    overlay.values().stream()
+        .map(Pending::getCaze)
+        .filter(c -> uprn.equals(c.getUprn()))
+        .forEach(c -> cases.put(c.getId(), copy(c)));
+    return new ArrayList<>(cases.values());
+  }
+
+  /*
+   * Write everything in the queue, a batch at a time, having first topped the queue up with any
+   * spilled cases.
+   */
+  void flush() {
+    try {
+      loadSpilled();
+      List<Pending> batch = new ArrayList<>(batchSize);
+      boolean written = true;
+      while (written && queue.drainTo(batch, batchSize) > 0) {
+        written = writeBatch(batch);
+        batch.clear();
+      }
+    } catch (RuntimeException e) {
+      // An exception would stop the flusher from being scheduled again
+      log.error("Unexpected failure writing cached cases", e);
+    }
+  }
+
+  /*
+   * The cases still to be written go to the store in one batch, so if that fails they are all
+   * retried later. Returns false if the batch could not be written.
+   */
+  private boolean writeBatch(List<Pending> batch) {
+    List<Pending> unwritten = new ArrayList<>(batch.size());
+    for (Pending pending : batch) {
+      if (isSuperseded(pending)) {
+        acknowledge(pending);
+      } else {
+        unwritten.add(pending);
+      }
+    }
+    if (unwritten.isEmpty()) {
+      return true;
+    }
+
+    try {
+      writer.write(unwritten.stream().map(Pending::getCaze).collect(toList()));
+    } catch (CTPException | RuntimeException e) {
+      log.with("size", unwritten.size())
+          .error("Failed to write cached cases, they will be retried", e);
+      unwritten.forEach(this::retryLater);
+      return false;
+    }
+    unwritten.forEach(this::acknowledge);
+    return true;
+  }
+
+  private void retryLater(Pending pending) {
+    if (pending.getSpillFile() != null) {
+      // still spilled, so it will simply be loaded again
+      queuedSpillFiles.remove(pending.getSpillFile());
+    } else if (!spill(pending, FAILURE) && !queue.offer(pending)) {
+      log.with("caseId", pending.getCaze().getId())
+          .error("Unable to spill or requeue cached case, it has not been written");
+    }
+  }
+
+  private boolean isSuperseded(Pending pending) {
+    Pending latest = overlay.get(pending.getCaze().getId());
+    return latest != null && latest.getSeq() > pending.getSeq();
+  }
+
+  private void acknowledge(Pending pending) {
+    overlay.computeIfPresent(
+        pending.getCaze().getId(),
+        (id, latest) -> latest.getSeq() <= pending.getSeq() ? null : latest);
+    if (pending.getSpillFile() != null) {
+      deleteQuietly(pending.getSpillFile());
+      queuedSpillFiles.remove(pending.getSpillFile());
+    }
+  }
+
+  private boolean spill(Pending pending, String reason) {
+    String name = String.format("%020d-%s", pending.getSeq(), pending.getCaze().getId());
+    Path file = spillDirectory.resolve(name + SPILL_FILE_SUFFIX);
+    Path temporaryFile = spillDirectory.resolve(name + TEMPORARY_FILE_SUFFIX);
+    try {
+      Files.write(
+          temporaryFile,
+          objectMapper.writeValueAsBytes(pending.getCaze()),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING,
+          StandardOpenOption.WRITE,
+          StandardOpenOption.DSYNC);
+      Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.with("caseId", pending.getCaze().getId())
+          .with("spillFile", file)
+          .error("Unable to spill cached case", e);
+      deleteQuietly(temporaryFile);
+      return false;
+    }
+    Counter.builder(SPILLED_COUNTER_NAME)
+        .description("Cached cases spilled to disk because the queue was full or a write failed")
+        .tag("reason", reason)
+        .register(meterRegistry)
+        .increment();
+    return true;
+  }
+
+  private void loadSpilled() {
+    if (queue.remainingCapacity() == 0) {
+      return;
+    }
+
+    List<Path> files;
+    try (Stream<Path> paths = Files.list(spillDirectory)) {
+      files =
+          paths
+              .filter(p -> p.getFileName().toString().endsWith(SPILL_FILE_SUFFIX))
+              .filter(p -> !queuedSpillFiles.contains(p))
+              .sorted()
+              .collect(toList());
+    } catch (IOException e) {
+      log.with("spillDirectory", spillDirectory).error("Unable to list spilled cases", e);
+      return;
+    }
+
+    for (Path file : files) {
+      if (queue.remainingCapacity() == 0) {
+        return;
+      }
+      Pending spilled = readSpilled(file);
+      if (spilled == null) {
+        continue;
+      }
+      Pending latest =
+          overlay.merge(
+              spilled.getCaze().getId(),
+              spilled,
+              (current, loaded) -> current.getSeq() > loaded.getSeq() ? current : loaded);
+      if (latest != spilled) {
+        // a newer version of the case has been written since
+        deleteQuietly(file);
+        continue;
+      }
+      queuedSpillFiles.add(file);
+      if (!queue.offer(spilled)) {
+        queuedSpillFiles.remove(file);
+        return;
+      }
+    }
+  }
+
+  private Pending readSpilled(Path file) {
+    String name = file.getFileName().toString();
+    try {
+      long seq = Long.parseLong(name.substring(0, name.indexOf('-')));
+      return new Pending(seq, objectMapper.readValue(file.toFile(), CachedCase.class), file);
+    } catch (IOException | RuntimeException e) {
+      // Set it aside so that it is not retried forever, but keep it for investigation
+      log.with("spillFile", file).error("Unable to read spilled case", e);
+      try {
+        Files.move(file, file.resolveSibling(name + UNREADABLE_FILE_SUFFIX));
+      } catch (IOException moveFailure) {
+        log.with("spillFile", file).error("Unable to set aside spilled case", moveFailure);
+      }
+      return null;
+    }
+  }
+
+  private void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.with("file", file).warn("Unable to delete file", e);
+    }
+  }
+
+  private CachedCase copy(CachedCase caze) {
+    return mapper.map(caze, CachedCase.class);
+  }
+}
@@ -0,0 +1,35 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports on the startup check that the collection of cached cases exists. The service is out of
+ * service while the check is being made in the background, so that it is not sent traffic until
+ * the check is complete, and down while a failed check is waiting to be made again.
+ */
+@Component
+@Profile("!" + EmbeddedCaseDataRepository.PROFILE)
+public class CaseCollectionHealthIndicator implements HealthIndicator {
+
+  private volatile Health health = Health.unknown().build();
+
+  void checking(String collectionName) {
+    health = Health.outOfService().withDetail("collection", collectionName).build();
+  }
+
+  void checked(String collectionName) {
+    health = Health.up().withDetail("collection", collectionName).build();
+  }
+
+  void failed(String collectionName, Exception e) {
+    health = Health.down(e).withDetail("collection", collectionName).build();
+  }
+
+  @Override
+  public Health health() {
+    return health;
+  }
+}
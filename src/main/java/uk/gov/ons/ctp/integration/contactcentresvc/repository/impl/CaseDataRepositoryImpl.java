@@ -1,27 +1,54 @@
 package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
 
+import static java.util.stream.Collectors.toList;
+
 import com.godaddy.logging.Logger;
 import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 import uk.gov.ons.ctp.common.cloud.RetryableCloudDataStore;
 import uk.gov.ons.ctp.common.domain.UniquePropertyReferenceNumber;
 import uk.gov.ons.ctp.common.error.CTPException;
 import uk.gov.ons.ctp.common.error.CTPException.Fault;
 import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseCollectionCheckSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseUprnFilterSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseUprnIndexSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseWriteBatchSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseWriteBehindSettings;
 import uk.gov.ons.ctp.integration.contactcentresvc.repository.CaseDataRepository;
 
 @Service
+@Profile("!" + EmbeddedCaseDataRepository.PROFILE)
 public class CaseDataRepositoryImpl implements CaseDataRepository {
 
   private static final Logger log = LoggerFactory.getLogger(CaseDataRepositoryImpl.class);
 
+  static final String BATCH_LATENCY_TIMER_NAME = "case.write.batch.latency";
+  static final String BATCH_SIZE_SUMMARY_NAME = "case.write.batch.size";
+
   @Value("${GOOGLE_CLOUD_PROJECT}")
   private String gcpProject;
 
@@ -32,28 +59,195 @@ public class CaseDataRepositoryImpl implements CaseDataRepository {
 
   private RetryableCloudDataStore cloudDataStore;
 
+  private AppConfig appConfig;
+
+  private FirestoreBatchWriter batchWriter;
+
+  private FirestoreProjectedReader projectedReader;
+
+  private CaseCollectionHealthIndicator collectionHealth;
+
+  private CachedCaseUprnIndex uprnIndex;
+
+  private String uprnIndexCollection;
+
+  private CaseUprnIndexSettings uprnIndexSettings;
+
+  private MeterRegistry meterRegistry;
+
+  private Timer batchLatency;
+
+  private DistributionSummary batchSize;
+
+  private CachedCaseReadCache readCache;
+
+  // null unless the collection is checked in the background
+  private ScheduledExecutorService collectionChecker;
+
+  // null unless searches by UPRN are filtered
+  private CachedCaseUprnFilter uprnFilter;
+
+  // null unless cases are written behind
+  private CachedCaseWriteBehind writeBehind;
+
+  // null unless concurrent writes are batched
+  private CachedCaseBatcher batcher;
+
   // This is the name of the document that is used to create and retain the new-case collection
   private static final String PLACEHOLDER_CASE_NAME = "placeholder";
 
-  private static final String[] SEARCH_BY_UPRN_PATH = new String[] {"uprn"};
+  private static final String UPRN_FIELD = "uprn";
+
+  private static final String[] SEARCH_BY_UPRN_PATH = new String[] {UPRN_FIELD};
+
+  private static final String CASE_EVENTS_FIELD = "caseEvents";
+
+  // What is read of a case when its events are not wanted
+  private static final List<String> FIELDS_WITHOUT_EVENTS =
+      Arrays.stream(CachedCase.class.getDeclaredFields())
+          .filter(f -> !Modifier.isStatic(f.getModifiers()) && !f.isSynthetic())
+          .map(Field::getName)
+          .filter(name -> !CASE_EVENTS_FIELD.equals(name))
+          .collect(toList());
 
   @PostConstruct
   public void init() throws CTPException {
     caseSchema = gcpProject + "-" + caseSchemaName.toLowerCase();
-    ensureCollectionExists(caseSchema);
+    checkCollection();
+
+    uprnIndexCollection = caseSchema + "-uprn-index";
+    uprnIndexSettings = appConfig.getCaseUprnIndexSettings();
+    log.with("collectionName", uprnIndexCollection)
+        .with("enabled", uprnIndexSettings.isEnabled())
+        .with("useForReads", uprnIndexSettings.isUseForReads())
+        .info("UPRN index of cached cases");
+
+    batchLatency =
+        Timer.builder(BATCH_LATENCY_TIMER_NAME)
+            .description("Time taken to commit a batch of cached cases")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    batchSize =
+        DistributionSummary.builder(BATCH_SIZE_SUMMARY_NAME)
+            .description("Number of cached cases committed in a batch")
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+
+    readCache = new CachedCaseReadCache(appConfig.getCaseReadCacheSettings(), meterRegistry);
+
+    CaseUprnFilterSettings uprnFilterSettings = appConfig.getCaseUprnFilterSettings();
+    if (uprnFilterSettings.isEnabled()) {
+      // Without the index a UPRN the filter rules out would have to be confirmed by searching, so
+      // the filter would save nothing
+      if (!uprnIndexSettings.isEnabled() || !uprnIndexSettings.isUseForReads()) {
+        throw new CTPException(
+            Fault.SYSTEM_ERROR,
+            "The case UPRN filter needs the case UPRN index to be used for reads");
+      }
+      uprnFilter =
+          new CachedCaseUprnFilter(
+              uprnFilterSettings,
+              consumer -> projectedReader.scan(caseSchema, UPRN_FIELD, consumer),
+              meterRegistry);
+      uprnFilter.start();
+    }
+
+    CaseWriteBehindSettings writeBehindSettings = appConfig.getCaseWriteBehindSettings();
+    CaseWriteBatchSettings batchSettings = appConfig.getCaseWriteBatchSettings();
+    if (writeBehindSettings.isEnabled()) {
+      writeBehind =
+          new CachedCaseWriteBehind(writeBehindSettings, this::storeCachedCases, meterRegistry);
+      writeBehind.start();
+    } else if (batchSettings.isEnabled()) {
+      log.with("maxBatchSize", batchSettings.getMaxBatchSize())
+          .with("maxDelayMillis", batchSettings.getMaxDelayMillis())
+          .info("Batching concurrent writes of cached cases");
+      batcher = new CachedCaseBatcher(batchSettings, this::storeCachedCases);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (collectionChecker != null) {
+      collectionChecker.shutdownNow();
+    }
+    if (uprnFilter != null) {
+      uprnFilter.shutdown();
+    }
+    if (writeBehind != null) {
+      writeBehind.shutdown();
+    }
   }
 
   @Autowired
-  public CaseDataRepositoryImpl(RetryableCloudDataStore cloudDataStore) {
+  public CaseDataRepositoryImpl(
+      RetryableCloudDataStore cloudDataStore,
+      FirestoreBatchWriter batchWriter,
+      FirestoreProjectedReader projectedReader,
+      CaseCollectionHealthIndicator collectionHealth,
+      CachedCaseUprnIndex uprnIndex,
+      AppConfig appConfig,
+      MeterRegistry meterRegistry) {
     this.cloudDataStore = cloudDataStore;
+    this.batchWriter = batchWriter;
+    this.projectedReader = projectedReader;
+    this.collectionHealth = collectionHealth;
+    this.uprnIndex = uprnIndex;
+    this.appConfig = appConfig;
+    this.meterRegistry = meterRegistry;
+  }
+
+  /*
+   * Firestore creates the collection when a case is first written to it, so nothing relies on the
+   * check having been made, and it can be made in the background.
+   */
+  private void checkCollection() throws CTPException {
+    CaseCollectionCheckSettings settings = appConfig.getCaseCollectionCheckSettings();
+    if (!settings.isAsync()) {
+      ensureCollectionExists(caseSchema);
+      collectionHealth.checked(caseSchema);
+      return;
+    }
+
+    collectionHealth.checking(caseSchema);
+    CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("case-collection-");
+    threadFactory.setDaemon(true);
+    collectionChecker = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    collectionChecker.execute(() -> checkCollectionInBackground(settings.getRetryMinDelayMillis()));
+  }
+
+  /*
+   * A failed check is made again, backing off up to the maximum delay, so that a failure which
+   * passes, eg, Firestore being briefly unavailable at startup, does not leave the service down.
+   */
+  private void checkCollectionInBackground(long retryDelayMillis) {
+    try {
+      ensureCollectionExists(caseSchema);
+      collectionHealth.checked(caseSchema);
+      collectionChecker.shutdown();
+    } catch (CTPException | RuntimeException e) {
+      log.with("collectionName", caseSchema)
+          .with("retryDelayMillis", retryDelayMillis)
+          .error("Collection check failed", e);
+      collectionHealth.failed(caseSchema, e);
+      long maxDelayMillis = appConfig.getCaseCollectionCheckSettings().getRetryMaxDelayMillis();
+      long nextDelayMillis = Math.min(retryDelayMillis * 2, maxDelayMillis);
+      collectionChecker.schedule(
+          () -> checkCollectionInBackground(nextDelayMillis),
+          retryDelayMillis,
+          TimeUnit.MILLISECONDS);
+    }
   }
 
   private void ensureCollectionExists(String collectionName) throws CTPException {
     log.with("collectionName", collectionName).info("Checking if collection exists");
 
-    Set<String> collectionNames = cloudDataStore.getCollectionNames();
+    // Reading the one document the collection is known to hold is much quicker than listing every
+    // collection in the project
+    Optional<CachedCase> placeholder =
+        cloudDataStore.retrieveObject(CachedCase.class, collectionName, PLACEHOLDER_CASE_NAME);
 
-    if (!collectionNames.contains(collectionName)) {
+    if (!placeholder.isPresent()) {
       log.with("collectionName", collectionName).info("Creating collection");
 
       try {
@@ -73,20 +267,171 @@ public class CaseDataRepositoryImpl implements CaseDataRepository {
     log.with("collectionName", collectionName).info("Collection check completed");
   }
 
+  /*
+   * A new case is never written behind, as until it was stored another pod searching its UPRN would
+   * not find it, and would create a second case for the address.
+   */
   @Override
   public void writeCachedCase(final CachedCase caze) throws CTPException {
-    cloudDataStore.storeObject(caseSchema, caze.getId(), caze, caze.getId());
+    // Before the write, so that a search made meanwhile is not skipped
+    addToUprnFilter(caze);
+    if (batcher != null) {
+      batcher.write(caze);
+    } else {
+      storeCachedCase(caze);
+    }
+    readCache.put(caze);
+  }
+
+  @Override
+  public void updateCachedCase(final CachedCase caze) throws CTPException {
+    if (writeBehind == null) {
+      writeCachedCase(caze);
+      return;
+    }
+    addToUprnFilter(caze);
+    writeBehind.write(caze);
+    readCache.put(caze);
+  }
+
+  @Override
+  public void writeCachedCases(final Collection<CachedCase> cases) throws CTPException {
+    cases.forEach(this::addToUprnFilter);
+    if (writeBehind != null) {
+      for (CachedCase caze : cases) {
+        writeBehind.write(caze);
+      }
+    } else {
+      storeCachedCases(new ArrayList<>(cases));
+    }
+    cases.forEach(readCache::put);
   }
 
   @Override
   public List<CachedCase> readCachedCasesByUprn(UniquePropertyReferenceNumber uprn)
       throws CTPException {
+    return readCachedCasesByUprn(uprn, true);
+  }
+
+  @Override
+  public List<CachedCase> readCachedCasesByUprn(
+      UniquePropertyReferenceNumber uprn, boolean caseEvents) throws CTPException {
     String key = String.valueOf(uprn.getValue());
-    return cloudDataStore.search(CachedCase.class, caseSchema, SEARCH_BY_UPRN_PATH, key);
+    // The filter may not know of a case another pod has since created, so when it rules a UPRN
+    // out this is confirmed from the index
+    boolean ruledOut = uprnFilter != null && !uprnFilter.mightContain(key);
+    if (ruledOut) {
+      boolean indexed = !uprnIndex.read(uprnIndexCollection, key).isEmpty();
+      uprnFilter.confirmed(key, indexed);
+      if (!indexed) {
+        return new ArrayList<>();
+      }
+    }
+    List<CachedCase> cases;
+    if (caseEvents) {
+      cases =
+          readCache.getByUprn(
+              key,
+              () ->
+                  uprnIndexSettings.isUseForReads()
+                      ? readIndexedCases(key, null)
+                      : cloudDataStore.search(
+                          CachedCase.class, caseSchema, SEARCH_BY_UPRN_PATH, key));
+    } else {
+      cases =
+          readCache.getByUprnWithoutEvents(
+              key,
+              () ->
+                  uprnIndexSettings.isUseForReads()
+                      ? readIndexedCases(key, FIELDS_WITHOUT_EVENTS)
+                      : projectedReader.search(
+                          CachedCase.class, caseSchema, UPRN_FIELD, key, FIELDS_WITHOUT_EVENTS));
+    }
+    if (!ruledOut && uprnFilter != null) {
+      uprnFilter.searched(!cases.isEmpty());
+    }
+    // Include anything written but not yet stored
+    if (writeBehind != null) {
+      cases = writeBehind.read(key, cases);
+    }
+    if (!caseEvents) {
+      cases.forEach(c -> c.setCaseEvents(new ArrayList<>()));
+    }
+    return cases;
   }
 
   @Override
   public Optional<CachedCase> readCachedCaseById(final UUID caseId) throws CTPException {
-    return cloudDataStore.retrieveObject(CachedCase.class, caseSchema, caseId.toString());
+    return readCachedCaseById(caseId, true);
+  }
+
+  @Override
+  public Optional<CachedCase> readCachedCaseById(final UUID caseId, boolean caseEvents)
+      throws CTPException {
+    String key = caseId.toString();
+    Optional<CachedCase> caze = Optional.empty();
+    if (writeBehind != null) {
+      caze = writeBehind.read(key);
+    }
+    if (!caze.isPresent()) {
+      caze =
+          caseEvents
+              ? readCache.getById(
+                  key, () -> cloudDataStore.retrieveObject(CachedCase.class, caseSchema, key))
+              : readCache.getByIdWithoutEvents(
+                  key,
+                  () ->
+                      projectedReader.retrieveObject(
+                          CachedCase.class, caseSchema, key, FIELDS_WITHOUT_EVENTS));
+    }
+    if (!caseEvents) {
+      caze.ifPresent(c -> c.setCaseEvents(new ArrayList<>()));
+    }
+    return caze;
+  }
+
+  /*
+   * The index may name cases which were never written, or which have since moved, so only the
+   * cases which are still at the address are kept.
+   */
+  private List<CachedCase> readIndexedCases(String uprn, List<String> fields) throws CTPException {
+    List<String> ids = uprnIndex.read(uprnIndexCollection, uprn);
+    return projectedReader.retrieveObjects(CachedCase.class, caseSchema, ids, fields).stream()
+        .filter(c -> uprn.equals(c.getUprn()))
+        .collect(toList());
+  }
+
+  private void addToUprnFilter(final CachedCase caze) {
+    if (uprnFilter != null) {
+      uprnFilter.add(caze.getUprn());
+    }
+  }
+
+  private void storeCachedCase(final CachedCase caze) throws CTPException {
+    if (uprnIndexSettings.isEnabled()) {
+      uprnIndex.write(caseSchema, uprnIndexCollection, Map.of(caze.getId(), caze));
+    } else {
+      cloudDataStore.storeObject(caseSchema, caze.getId(), caze, caze.getId());
+    }
+  }
+
+  private void storeCachedCases(final List<CachedCase> cases) throws CTPException {
+    if (cases.isEmpty()) {
+      return;
+    }
+    // Only the last version of a case in the batch is worth writing
+    Map<String, CachedCase> byId = new LinkedHashMap<>();
+    cases.forEach(c -> byId.put(c.getId(), c));
+    batchSize.record(byId.size());
+    long start = System.nanoTime();
+    try {
+      if (uprnIndexSettings.isEnabled()) {
+        uprnIndex.write(caseSchema, uprnIndexCollection, byId);
+      } else {
+        batchWriter.write(caseSchema, byId);
+      }
+    } finally {
+      batchLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
   }
 }
@@ -0,0 +1,112 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import uk.gov.ons.ctp.common.domain.UniquePropertyReferenceNumber;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.EmbeddedCaseStoreSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.repository.CaseDataRepository;
+
+/**
+ * Case repository which keeps cases on local disk rather than in Firestore, for running the
+ * service, eg, for performance testing, without a GCP project or an emulator. It is used in place
+ * of the Firestore repository when the embedded-case-store profile is active.
+ */
+@Service
+@Profile(EmbeddedCaseDataRepository.PROFILE)
+public class EmbeddedCaseDataRepository implements CaseDataRepository {
+
+  private static final Logger log = LoggerFactory.getLogger(EmbeddedCaseDataRepository.class);
+
+  public static final String PROFILE = "embedded-case-store";
+
+  private AppConfig appConfig;
+
+  private EmbeddedCaseStore store;
+
+  @Autowired
+  public EmbeddedCaseDataRepository(AppConfig appConfig) {
+    this.appConfig = appConfig;
+  }
+
+  @PostConstruct
+  public void init() throws CTPException {
+    EmbeddedCaseStoreSettings settings = appConfig.getEmbeddedCaseStoreSettings();
+    log.with("directory", settings.getDirectory())
+        .with("segmentSizeMegabytes", settings.getSegmentSizeMegabytes())
+        .info("Storing cached cases in embedded store");
+    store =
+        new EmbeddedCaseStore(
+            Paths.get(settings.getDirectory()), settings.getSegmentSizeMegabytes() * 1024 * 1024);
+    store.open();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    store.close();
+  }
+
+  @Override
+  public void writeCachedCase(final CachedCase caze) throws CTPException {
+    store.write(List.of(caze));
+  }
+
+  @Override
+  public void updateCachedCase(final CachedCase caze) throws CTPException {
+    writeCachedCase(caze);
+  }
+
+  @Override
+  public void writeCachedCases(final Collection<CachedCase> cases) throws CTPException {
+    // Only the last version of a case is worth writing
+    Map<String, CachedCase> byId = new LinkedHashMap<>();
+    cases.forEach(c -> byId.put(c.getId(), c));
+    store.write(byId.values());
+  }
+
+  @Override
+  public List<CachedCase> readCachedCasesByUprn(UniquePropertyReferenceNumber uprn)
+      throws CTPException {
+    return readCachedCasesByUprn(uprn, true);
+  }
+
+  @Override
+  public List<CachedCase> readCachedCasesByUprn(
+      UniquePropertyReferenceNumber uprn, boolean caseEvents) throws CTPException {
+    List<CachedCase> cases = store.readByUprn(String.valueOf(uprn.getValue()));
+    if (!caseEvents) {
+      cases.forEach(c -> c.setCaseEvents(new ArrayList<>()));
+    }
+    return cases;
+  }
+
+  @Override
+  public Optional<CachedCase> readCachedCaseById(final UUID caseId) throws CTPException {
+    return readCachedCaseById(caseId, true);
+  }
+
+  @Override
+  public Optional<CachedCase> readCachedCaseById(final UUID caseId, boolean caseEvents)
+      throws CTPException {
+    Optional<CachedCase> caze = store.read(caseId.toString());
+    if (!caseEvents) {
+      caze.ifPresent(c -> c.setCaseEvents(new ArrayList<>()));
+    }
+    return caze;
+  }
+}
@@ -0,0 +1,296 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static java.util.stream.Collectors.toList;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+import lombok.Data;
+import lombok.Value;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+import uk.gov.ons.ctp.common.jackson.CustomObjectMapper;
+import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+
+/**
+ * Log-structured store of cached cases held in memory-mapped files on local disk.
+ *
+ * <p>Each write appends the case, as JSON preceded by its length, to the current segment file. A
+ * segment which is full is left as it is and a new one started. Every version of a case stays in
+ * the log, but the in-memory indexes, by id and by UPRN, only point at the latest. They are rebuilt
+ * from the log when the store is opened, so cases survive a restart.
+ *
+ * <p>Writes are serialised, whereas reads take no lock, and copy the case out of the mapped file.
+ * The mapped files are only forced to disk when the store is closed, so a process which dies keeps
+ * what it wrote, but a machine which does may not.
+ */
+class EmbeddedCaseStore {
+  private static final Logger log = LoggerFactory.getLogger(EmbeddedCaseStore.class);
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+
+  // Each record is preceded by its length. A length of 0 marks the end of the records in a segment
+  private static final int LENGTH_BYTES = Integer.BYTES;
+
+  /** Where the latest version of a case is in the log. */
+  @Value
+  private static class Location {
+    int segment;
+    int offset;
+    int length;
+    String uprn;
+  }
+
+  /** Just what is needed of a case to index it while the log is replayed. */
+  @Data
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  private static class Keys {
+    private String id;
+    private String uprn;
+  }
+
+  private final ObjectMapper objectMapper = new CustomObjectMapper();
+
+  private final Path directory;
+
+  private final int segmentSize;
+
+  // Appended to while writes are made, so copied on write to let reads go on meanwhile
+  private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+
+  private final Map<String, Location> byId = new ConcurrentHashMap<>();
+
+  private final Map<String, Set<String>> idsByUprn = new ConcurrentHashMap<>();
+
+  // Where the next record goes in the last segment. Only used while holding the lock on this
+  private int writeOffset;
+
+  EmbeddedCaseStore(Path directory, int segmentSize) {
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * Map the segments already in the directory, and index the cases in them.
+   *
+   * @throws CTPException if the directory or its segments cannot be read
+   */
+  synchronized void open() throws CTPException {
+    List<Path> segmentFiles;
+    try {
+      Files.createDirectories(directory);
+      try (Stream<Path> files = Files.list(directory)) {
+        segmentFiles =
+            files
+                .filter(f -> f.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .collect(toList());
+      }
+      for (Path segmentFile : segmentFiles) {
+        segments.add(map(segmentFile, Files.size(segmentFile)));
+        writeOffset = replay(segments.size() - 1);
+      }
+      if (segments.isEmpty()) {
+        startSegment(segmentSize);
+      }
+    } catch (IOException e) {
+      log.with("directory", directory).error("Unable to open embedded case store", e);
+      throw new CTPException(Fault.SYSTEM_ERROR, e);
+    }
+    log.with("directory", directory)
+        .with("segments", segments.size())
+        .with("cases", byId.size())
+        .info("Opened embedded case store");
+  }
+
+  /** Force what has been written to disk and let go of the mapped files. */
+  synchronized void close() {
+    segments.forEach(MappedByteBuffer::force);
+    segments.clear();
+    byId.clear();
+    idsByUprn.clear();
+  }
+
+  /**
+   * Append cases to the log. Each replaces any earlier version of the same case.
+   *
+   * @param cases to write
+   * @throws CTPException if a case cannot be serialised, or a new segment cannot be started
+   */
+  void write(Collection<CachedCase> cases) throws CTPException {
+    List<byte[]> records = new ArrayList<>(cases.size());
+    for (CachedCase caze : cases) {
+      try {
+        records.add(objectMapper.writeValueAsBytes(caze));
+      } catch (IOException e) {
+        log.with("caseId", caze.getId()).error("Unable to serialise case", e);
+        throw new CTPException(Fault.SYSTEM_ERROR, e);
+      }
+    }
+
+    synchronized (this) {
+      int i = 0;
+      for (CachedCase caze : cases) {
+        append(caze.getId(), caze.getUprn(), records.get(i++));
+      }
+    }
+  }
+
+  /**
+   * Read the latest version of a case.
+   *
+   * @param id of the case
+   * @return the case, if it has been written
+   * @throws CTPException if the case cannot be deserialised
+   */
+  Optional<CachedCase> read(String id) throws CTPException {
+    Location location = byId.get(id);
+    return location == null ? Optional.empty() : Optional.of(read(location));
+  }
+
+  /**
+   * Read the latest version of every case at an address.
+   *
+   * @param uprn of the address
+   * @return the cases, in no particular order
+   * @throws CTPException if a case cannot be deserialised
+   */
+  List<CachedCase> readByUprn(String uprn) throws CTPException {
+    Set<String> ids = idsByUprn.get(uprn);
+    List<CachedCase> cases = new ArrayList<>();
+    if (ids != null) {
+      for (String id : ids) {
+        Location location = byId.get(id);
+        // The case may have moved since the ids were read
+        if (location != null && uprn.equals(location.getUprn())) {
+          cases.add(read(location));
+        }
+      }
+    }
+    return cases;
+  }
+
+  private CachedCase read(Location location) throws CTPException {
+    ByteBuffer buffer = segments.get(location.getSegment()).duplicate();
+    buffer.position(location.getOffset() + LENGTH_BYTES);
+    byte[] record = new byte[location.getLength()];
+    buffer.get(record);
+    try {
+      return objectMapper.readValue(record, CachedCase.class);
+    } catch (IOException e) {
+      log.with("location", location).error("Unable to deserialise case", e);
+      throw new CTPException(Fault.SYSTEM_ERROR, e);
+    }
+  }
+
+  private void append(String id, String uprn, byte[] record) throws CTPException {
+    int recordSize = LENGTH_BYTES + record.length;
+    // Always leave room for the end marker
+    if (writeOffset + recordSize + LENGTH_BYTES > lastSegment().capacity()) {
+      startSegment(Math.max(segmentSize, recordSize + LENGTH_BYTES));
+    }
+    int offset = writeOffset;
+    ByteBuffer buffer = lastSegment().duplicate();
+    buffer.position(offset + LENGTH_BYTES);
+    buffer.put(record);
+    // Mark the end, in case anything was left beyond it by a record which was not completed
+    buffer.putInt(offset + recordSize, 0);
+    // The length goes in last, so that a record is only seen on replay once it is complete
+    buffer.putInt(offset, record.length);
+    writeOffset = offset + recordSize;
+    index(id, new Location(segments.size() - 1, offset, record.length, uprn));
+  }
+
+  private void index(String id, Location location) {
+    Location previous = byId.put(id, location);
+    if (previous != null
+        && previous.getUprn() != null
+        && !previous.getUprn().equals(location.getUprn())) {
+      Set<String> ids = idsByUprn.get(previous.getUprn());
+      if (ids != null) {
+        ids.remove(id);
+      }
+    }
+    if (location.getUprn() != null) {
+      idsByUprn.computeIfAbsent(location.getUprn(), k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+  }
+
+  /*
+   * Index the records in a segment, stopping at the end marker, or at a record which was not
+   * completely written.
+   */
+  private int replay(int segment) {
+    ByteBuffer buffer = segments.get(segment).duplicate();
+    int offset = 0;
+    while (offset + LENGTH_BYTES <= buffer.capacity()) {
+      int length = buffer.getInt(offset);
+      if (length <= 0 || offset + LENGTH_BYTES + length > buffer.capacity()) {
+        break;
+      }
+      byte[] record = new byte[length];
+      buffer.position(offset + LENGTH_BYTES);
+      buffer.get(record);
+      Keys keys;
+      try {
+        keys = objectMapper.readValue(record, Keys.class);
+      } catch (IOException e) {
+        log.with("segment", segment)
+            .with("offset", offset)
+            .warn("Unreadable record in embedded case store, ignoring the rest of the segment", e);
+        break;
+      }
+      index(keys.getId(), new Location(segment, offset, length, keys.getUprn()));
+      offset += LENGTH_BYTES + length;
+    }
+    return offset;
+  }
+
+  private void startSegment(int size) throws CTPException {
+    String name = String.format("%s%010d%s", SEGMENT_PREFIX, segments.size(), SEGMENT_SUFFIX);
+    Path segmentFile = directory.resolve(name);
+    try {
+      segments.add(map(segmentFile, size));
+    } catch (IOException e) {
+      log.with("segmentFile", segmentFile).error("Unable to start segment", e);
+      throw new CTPException(Fault.SYSTEM_ERROR, e);
+    }
+    writeOffset = 0;
+  }
+
+  private MappedByteBuffer lastSegment() {
+    return segments.get(segments.size() - 1);
+  }
+
+  private static MappedByteBuffer map(Path segmentFile, long size) throws IOException {
+    try (FileChannel channel =
+        FileChannel.open(
+            segmentFile,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      // The mapping outlives the channel
+      return channel.map(MapMode.READ_WRITE, 0, size);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.WriteBatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import uk.gov.ons.ctp.common.error.CTPException;
+
+/**
+ * Writes several documents to a Firestore collection in a single commit.
+ *
+ * <p>The cloud data store only writes one object at a time, so this goes to Firestore directly.
+ * Each commit is retried with the same backoff as the cloud data store.
+ */
+@Component
+@Profile("!" + EmbeddedCaseDataRepository.PROFILE)
+public class FirestoreBatchWriter {
+
+  // Firestore rejects a commit of more writes than this
+  static final int MAX_WRITES_PER_COMMIT = 500;
+
+  @Autowired private FirestoreClient firestoreClient;
+
+  /**
+   * Write documents to a collection, replacing any existing documents with the same ids. More
+   * documents than fit in one commit are split over several commits.
+   *
+   * @param collectionName name of the collection
+   * @param documents the documents to write, by document id
+   * @throws CTPException if a commit failed even after retrying, in which case some of the
+   *     documents may have been written
+   */
+  public void write(String collectionName, Map<String, ?> documents) throws CTPException {
+    List<Map.Entry<String, ?>> entries = new ArrayList<>(documents.entrySet());
+    for (int from = 0; from < entries.size(); from += MAX_WRITES_PER_COMMIT) {
+      List<Map.Entry<String, ?>> chunk =
+          entries.subList(from, Math.min(from + MAX_WRITES_PER_COMMIT, entries.size()));
+      firestoreClient.call(
+          "commit " + chunk.size() + " documents to " + collectionName,
+          firestore -> {
+            CollectionReference collection = firestore.collection(collectionName);
+            WriteBatch batch = firestore.batch();
+            chunk.forEach(d -> batch.set(collection.document(d.getKey()), d.getValue()));
+            return batch.commit().get();
+          });
+    }
+  }
+}
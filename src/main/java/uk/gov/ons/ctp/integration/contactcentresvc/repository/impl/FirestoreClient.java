@@ -0,0 +1,137 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreOptions;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.retry.RetryPolicy;
+import org.springframework.retry.backoff.ExponentialBackOffPolicy;
+import org.springframework.retry.policy.ExceptionClassifierRetryPolicy;
+import org.springframework.retry.policy.NeverRetryPolicy;
+import org.springframework.retry.policy.SimpleRetryPolicy;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+
+/**
+ * Direct access to Firestore, for the few things the cloud data store cannot do, using the default
+ * credentials and the configured project. The client is not created until it is first needed.
+ *
+ * <p>Only transient failures, such as contention or Firestore being unavailable, are retried.
+ * Anything else, eg, an invalid argument or a permission failure, fails at once.
+ */
+@Component
+@Profile("!" + EmbeddedCaseDataRepository.PROFILE)
+public class FirestoreClient {
+  private static final Logger log = LoggerFactory.getLogger(FirestoreClient.class);
+
+  // Failures which may succeed if tried again
+  private static final Set<StatusCode.Code> TRANSIENT_CODES =
+      Set.of(
+          StatusCode.Code.ABORTED,
+          StatusCode.Code.DEADLINE_EXCEEDED,
+          StatusCode.Code.RESOURCE_EXHAUSTED,
+          StatusCode.Code.UNAVAILABLE);
+
+  /** Something done with the Firestore client. */
+  @FunctionalInterface
+  public interface Call<T> {
+    T call(Firestore firestore) throws Exception;
+  }
+
+  @Value("${GOOGLE_CLOUD_PROJECT}")
+  private String gcpProject;
+
+  @Value("${cloud-storage.backoff.initial}")
+  private long backoffInitial;
+
+  @Value("${cloud-storage.backoff.multiplier}")
+  private double backoffMultiplier;
+
+  @Value("${cloud-storage.backoff.max}")
+  private long backoffMax;
+
+  @Value("${cloud-storage.backoff.max-attempts}")
+  private int backoffMaxAttempts;
+
+  private volatile Firestore firestore;
+
+  private volatile RetryTemplate retryTemplate;
+
+  /**
+   * Get the Firestore client, creating it if need be.
+   *
+   * @return the client
+   */
+  public Firestore get() {
+    if (firestore == null) {
+      synchronized (this) {
+        if (firestore == null) {
+          firestore =
+              FirestoreOptions.getDefaultInstance()
+                  .toBuilder()
+                  .setProjectId(gcpProject)
+                  .build()
+                  .getService();
+        }
+      }
+    }
+    return firestore;
+  }
+
+  /**
+   * Make a call to Firestore, retrying it with the same backoff as the cloud data store if it
+   * fails transiently.
+   *
+   * @param <T> type of the result
+   * @param description of the call, for logging
+   * @param call the call
+   * @return the result of the call
+   * @throws CTPException if the call failed even after retrying
+   */
+  public <T> T call(String description, Call<T> call) throws CTPException {
+    try {
+      return getRetryTemplate().<T, Exception>execute(context -> call.call(get()));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CTPException(Fault.SYSTEM_ERROR, e);
+    } catch (Exception e) {
+      log.with("call", description).error("Firestore call failed", e);
+      throw new CTPException(Fault.SYSTEM_ERROR, e);
+    }
+  }
+
+  private RetryTemplate getRetryTemplate() {
+    if (retryTemplate == null) {
+      ExponentialBackOffPolicy backOffPolicy = new ExponentialBackOffPolicy();
+      backOffPolicy.setInitialInterval(backoffInitial);
+      backOffPolicy.setMultiplier(backoffMultiplier);
+      backOffPolicy.setMaxInterval(backoffMax);
+      RetryTemplate template = new RetryTemplate();
+      template.setBackOffPolicy(backOffPolicy);
+      RetryPolicy retryTransient = new SimpleRetryPolicy(backoffMaxAttempts);
+      RetryPolicy neverRetry = new NeverRetryPolicy();
+      ExceptionClassifierRetryPolicy retryPolicy = new ExceptionClassifierRetryPolicy();
+      retryPolicy.setExceptionClassifier(e -> isTransient(e) ? retryTransient : neverRetry);
+      template.setRetryPolicy(retryPolicy);
+      retryTemplate = template;
+    }
+    return retryTemplate;
+  }
+
+  // The status may be on a cause, eg, of the ExecutionException thrown by an ApiFuture
+  static boolean isTransient(Throwable e) {
+    for (Throwable t = e; t != null; t = t.getCause()) {
+      if (t instanceof ApiException) {
+        return TRANSIENT_CODES.contains(((ApiException) t).getStatusCode().getCode());
+      }
+    }
+    return false;
+  }
+}
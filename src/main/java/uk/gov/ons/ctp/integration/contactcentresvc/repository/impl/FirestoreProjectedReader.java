@@ -0,0 +1,167 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static java.util.stream.Collectors.toList;
+
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldMask;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import uk.gov.ons.ctp.common.error.CTPException;
+
+/**
+ * Reads only some of the fields of Firestore documents, so that the rest are neither transferred
+ * nor deserialised. The cloud data store always reads whole documents.
+ */
+@Component
+@Profile("!" + EmbeddedCaseDataRepository.PROFILE)
+public class FirestoreProjectedReader {
+
+  // Documents fetched per query when scanning, so that a large collection is not held in memory
+  static final int PAGE_SIZE = 5000;
+
+  @Autowired private FirestoreClient firestoreClient;
+
+  /**
+   * Read some of the fields of a document.
+   *
+   * @param <T> type of the object
+   * @param target class of the object, whose other fields are left as constructed
+   * @param collectionName name of the collection
+   * @param id of the document
+   * @param fields names of the fields to read
+   * @return the object, or empty if there is no such document
+   * @throws CTPException if the document could not be read
+   */
+  public <T> Optional<T> retrieveObject(
+      Class<T> target, String collectionName, String id, List<String> fields)
+      throws CTPException {
+    DocumentSnapshot document =
+        firestoreClient.call(
+            "read " + id + " from " + collectionName,
+            firestore -> {
+              DocumentReference reference = firestore.collection(collectionName).document(id);
+              return firestore
+                  .getAll(new DocumentReference[] {reference}, fieldMask(fields))
+                  .get()
+                  .get(0);
+            });
+    return document.exists() ? Optional.ofNullable(document.toObject(target)) : Optional.empty();
+  }
+
+  /**
+   * Read several documents by id in a single call, optionally reading only some of their fields.
+   *
+   * @param <T> type of the objects
+   * @param target class of the objects, whose other fields are left as constructed
+   * @param collectionName name of the collection
+   * @param ids of the documents
+   * @param fields names of the fields to read, or null to read every field
+   * @return the objects, in the order of their ids, leaving out those with no document
+   * @throws CTPException if the documents could not be read
+   */
+  public <T> List<T> retrieveObjects(
+      Class<T> target, String collectionName, List<String> ids, List<String> fields)
+      throws CTPException {
+    if (ids.isEmpty()) {
+      return new ArrayList<>();
+    }
+    List<DocumentSnapshot> documents =
+        firestoreClient.call(
+            "read " + ids.size() + " documents from " + collectionName,
+            firestore -> {
+              CollectionReference collection = firestore.collection(collectionName);
+              DocumentReference[] references =
+                  ids.stream().map(collection::document).toArray(DocumentReference[]::new);
+              return fields == null
+                  ? firestore.getAll(references).get()
+                  : firestore.getAll(references, fieldMask(fields)).get();
+            });
+    return documents.stream()
+        .filter(DocumentSnapshot::exists)
+        .map(d -> d.toObject(target))
+        .collect(toList());
+  }
+
+  /**
+   * Read some of the fields of every document with a given value for a field.
+   *
+   * @param <T> type of the objects
+   * @param target class of the objects, whose other fields are left as constructed
+   * @param collectionName name of the collection
+   * @param field name of the field searched
+   * @param value of the field searched for
+   * @param fields names of the fields to read
+   * @return the objects found, which may be none
+   * @throws CTPException if the search failed
+   */
+  public <T> List<T> search(
+      Class<T> target, String collectionName, String field, String value, List<String> fields)
+      throws CTPException {
+    List<QueryDocumentSnapshot> documents =
+        firestoreClient.call(
+            "search " + collectionName + " by " + field,
+            firestore ->
+                firestore
+                    .collection(collectionName)
+                    .whereEqualTo(field, value)
+                    .select(fields.toArray(new String[0]))
+                    .get()
+                    .get()
+                    .getDocuments());
+    return documents.stream().map(d -> d.toObject(target)).collect(toList());
+  }
+
+  /**
+   * Pass the value of a field of every document in a collection to a consumer, reading the
+   * collection a page at a time.
+   *
+   * @param collectionName name of the collection
+   * @param field name of the field
+   * @param consumer given the value of the field in each document, which is null for a document
+   *     without the field
+   * @throws CTPException if the collection could not be read
+   */
+  public void scan(String collectionName, String field, Consumer<Object> consumer)
+      throws CTPException {
+    List<QueryDocumentSnapshot> page = readPage(collectionName, field, null);
+    while (!page.isEmpty()) {
+      page.forEach(d -> consumer.accept(d.get(field)));
+      if (page.size() < PAGE_SIZE) {
+        return;
+      }
+      page = readPage(collectionName, field, page.get(page.size() - 1));
+    }
+  }
+
+  private List<QueryDocumentSnapshot> readPage(
+      String collectionName, String field, QueryDocumentSnapshot after) throws CTPException {
+    return firestoreClient.call(
+        "scan " + field + " of " + collectionName,
+        firestore -> {
+          Query query =
+              firestore
+                  .collection(collectionName)
+                  .select(field)
+                  .orderBy(FieldPath.documentId())
+                  .limit(PAGE_SIZE);
+          if (after != null) {
+            query = query.startAfter(after);
+          }
+          return query.get().get().getDocuments();
+        });
+  }
+
+  private static FieldMask fieldMask(List<String> fields) {
+    return FieldMask.of(fields.toArray(new String[0]));
+  }
+}
@@ -0,0 +1,84 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of UPRNs. It can say for certain that a UPRN has never been added, but may wrongly
+ * say that one has. Adding and testing are safe to do concurrently.
+ *
+ * <p>Each UPRN sets a number of bits chosen by double hashing, ie, the i'th bit is h1 + i * h2
+ * modulo the size of the filter.
+ */
+class UprnBloomFilter {
+
+  private final AtomicLongArray words;
+
+  private final long bitCount;
+
+  private final int hashCount;
+
+  /**
+   * Create a filter sized to hold a number of UPRNs with a given chance of a false positive.
+   *
+   * @param expectedUprns number of UPRNs the filter is sized for. More can be added, at the cost of
+   *     more false positives
+   * @param falsePositiveRate chance of wrongly saying a UPRN has been added once the expected
+   *     number have been
+   */
+  UprnBloomFilter(long expectedUprns, double falsePositiveRate) {
+    long n = Math.max(1, expectedUprns);
+    long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+    int wordCount = (int) Math.max(1, (bits + 63) / 64);
+    this.words = new AtomicLongArray(wordCount);
+    this.bitCount = wordCount * 64L;
+    this.hashCount = (int) Math.max(1, Math.round((double) bitCount / n * Math.log(2)));
+  }
+
+  void add(long uprn) {
+    long h1 = mix(uprn);
+    long h2 = mix(h1) | 1;
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitCount);
+      int word = (int) (bit >>> 6);
+      long mask = 1L << bit;
+      long current = words.get(word);
+      while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+        current = words.get(word);
+      }
+    }
+  }
+
+  boolean mightContain(long uprn) {
+    long h1 = mix(uprn);
+    long h2 = mix(h1) | 1;
+    for (int i = 0; i < hashCount; i++) {
+      long bit = Math.floorMod(h1 + i * h2, bitCount);
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * The chance that a UPRN which has not been added is said to have been, given how full the filter
+   * is now.
+   *
+   * @return the false positive rate
+   */
+  double expectedFalsePositiveRate() {
+    long set = 0;
+    for (int i = 0; i < words.length(); i++) {
+      set += Long.bitCount(words.get(i));
+    }
+    return Math.pow((double) set / bitCount, hashCount);
+  }
+
+  // The finaliser of SplitMix64, which spreads similar UPRNs across the whole filter
+  private static long mix(long value) {
+    long z = value + 0x9E3779B97F4A7C15L;
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
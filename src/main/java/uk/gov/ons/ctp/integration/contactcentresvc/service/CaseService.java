@@ -32,10 +32,10 @@ public interface CaseService {
    *
    * @param uprn Unique Property Reference No for which to return cases
    * @param requestParamsDTO request details
-   * @return List of Cases at address, excluding HI cases
+   * @return Cases at address, excluding HI cases, and whether our cached cases were consulted
    * @throws CTPException error querying for case
    */
-  List<CaseDTO> getCaseByUPRN(
+  CasesAtAddress getCaseByUPRN(
       final UniquePropertyReferenceNumber uprn, CaseQueryRequestDTO requestParamsDTO)
       throws CTPException;
 
@@ -0,0 +1,13 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service;
+
+import java.util.List;
+import lombok.Value;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseDTO;
+
+/** The cases found at an address, and whether every source of cases was consulted. */
+@Value
+public class CasesAtAddress {
+  private List<CaseDTO> cases;
+  // True when the cases were found without waiting for our case cache, so a newer case may exist
+  private boolean partial;
+}
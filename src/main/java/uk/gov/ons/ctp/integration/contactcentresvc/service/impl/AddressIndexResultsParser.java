@@ -0,0 +1,203 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexAddressCensusDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexAddressDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryResponseDTO;
+
+/**
+ * Parses the results of an address or postcode search by Address Index token by token, summarising
+ * each address as soon as it has been read.
+ *
+ * <p>Only the fields which are summarised are kept. Each address is read into the same scratch DTO,
+ * which is handed to the filter and the summariser in turn, so they must not hold on to it. The
+ * response has the data version and the total as given by Address Index, and the summarised
+ * addresses which passed the filter.
+ */
+class AddressIndexResultsParser {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+  private final Predicate<AddressIndexAddressDTO> exclude;
+
+  private final Function<AddressIndexAddressDTO, AddressDTO> summarise;
+
+  /**
+   * Constructor.
+   *
+   * @param exclude true for an address which should be left out
+   * @param summarise summarises an address
+   */
+  AddressIndexResultsParser(
+      Predicate<AddressIndexAddressDTO> exclude,
+      Function<AddressIndexAddressDTO, AddressDTO> summarise) {
+    this.exclude = exclude;
+    this.summarise = summarise;
+  }
+
+  /**
+   * Parse search results.
+   *
+   * @param json the response from Address Index
+   * @return the summarised results
+   * @throws IOException if the response is not valid JSON
+   */
+  AddressQueryResponseDTO parse(byte[] json) throws IOException {
+    AddressQueryResponseDTO results = new AddressQueryResponseDTO();
+    results.setAddresses(new ArrayList<>());
+    try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+      expect(parser, parser.nextToken(), JsonToken.START_OBJECT);
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        JsonToken value = parser.nextToken();
+        if ("dataVersion".equals(field)) {
+          results.setDataVersion(parser.getValueAsString());
+        } else if ("response".equals(field) && value == JsonToken.START_OBJECT) {
+          parseResponse(parser, results);
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return results;
+  }
+
+  private void parseResponse(JsonParser parser, AddressQueryResponseDTO results)
+      throws IOException {
+    AddressIndexAddressDTO scratch = new AddressIndexAddressDTO();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if ("total".equals(field)) {
+        results.setTotal(parser.getValueAsInt());
+      } else if ("addresses".equals(field) || "address".equals(field)) {
+        // A single address may be given without an array
+        if (value == JsonToken.START_ARRAY) {
+          parseAddresses(parser, scratch, results);
+        } else if (value == JsonToken.START_OBJECT) {
+          addAddress(parser, scratch, results);
+        }
+      } else {
+        parser.skipChildren();
+      }
+    }
+  }
+
+  // Anything in the array which is not an address, eg, null, is skipped
+  private void parseAddresses(
+      JsonParser parser, AddressIndexAddressDTO scratch, AddressQueryResponseDTO results)
+      throws IOException {
+    JsonToken element = parser.nextToken();
+    while (element != JsonToken.END_ARRAY) {
+      if (element == JsonToken.START_OBJECT) {
+        addAddress(parser, scratch, results);
+      } else if (element == null) {
+        throw new IOException("Unexpected end of addresses at " + parser.getCurrentLocation());
+      } else {
+        parser.skipChildren();
+      }
+      element = parser.nextToken();
+    }
+  }
+
+  private void addAddress(
+      JsonParser parser, AddressIndexAddressDTO scratch, AddressQueryResponseDTO results)
+      throws IOException {
+    parseAddress(parser, scratch);
+    if (!exclude.test(scratch)) {
+      results.getAddresses().add(summarise.apply(scratch));
+    }
+  }
+
+  private void parseAddress(JsonParser parser, AddressIndexAddressDTO address)
+      throws IOException {
+    address.setUprn(null);
+    address.setFormattedAddress(null);
+    address.setFormattedAddressNag(null);
+    address.setFormattedAddressPaf(null);
+    address.setWelshFormattedAddressNag(null);
+    address.setWelshFormattedAddressPaf(null);
+    address.setLpiLogicalStatus(null);
+    AddressIndexAddressCensusDTO census = address.getCensus();
+    if (census == null) {
+      census = new AddressIndexAddressCensusDTO();
+      address.setCensus(census);
+    }
+    census.setCountryCode(null);
+    census.setAddressType(null);
+    census.setEstabType(null);
+
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      switch (field) {
+        case "uprn":
+          address.setUprn(parser.getValueAsString());
+          break;
+        case "formattedAddress":
+          address.setFormattedAddress(parser.getValueAsString());
+          break;
+        case "formattedAddressNag":
+          address.setFormattedAddressNag(parser.getValueAsString());
+          break;
+        case "formattedAddressPaf":
+          address.setFormattedAddressPaf(parser.getValueAsString());
+          break;
+        case "welshFormattedAddressNag":
+          address.setWelshFormattedAddressNag(parser.getValueAsString());
+          break;
+        case "welshFormattedAddressPaf":
+          address.setWelshFormattedAddressPaf(parser.getValueAsString());
+          break;
+        case "lpiLogicalStatus":
+          address.setLpiLogicalStatus(parser.getValueAsString());
+          break;
+        case "census":
+          if (value == JsonToken.START_OBJECT) {
+            parseCensus(parser, census);
+          } else {
+            parser.skipChildren();
+          }
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+  }
+
+  private void parseCensus(JsonParser parser, AddressIndexAddressCensusDTO census)
+      throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      parser.nextToken();
+      switch (field) {
+        case "countryCode":
+          census.setCountryCode(parser.getValueAsString());
+          break;
+        case "addressType":
+          census.setAddressType(parser.getValueAsString());
+          break;
+        case "estabType":
+          census.setEstabType(parser.getValueAsString());
+          break;
+        default:
+          parser.skipChildren();
+      }
+    }
+  }
+
+  private static void expect(JsonParser parser, JsonToken actual, JsonToken expected)
+      throws IOException {
+    if (actual != expected) {
+      throw new IOException(
+          "Expected " + expected + " but found " + actual + " at " + parser.getCurrentLocation());
+    }
+  }
+}
@@ -0,0 +1,236 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static java.util.stream.Collectors.toList;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.Value;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AddressQueryCacheSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryRequestDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryResponseDTO;
+
+/**
+ * Cache of the summarised results of address searches, which are made by agents typing ahead, eg,
+ * "1 High St", "1 High Str", "1 High Stre".
+ *
+ * <p>Results are cached by input, offset, limit and the configured AI epoch. Inputs differing only
+ * in case or whitespace are treated as the same search. A search that fails is not cached.
+ *
+ * <p>Optionally, when a search returns all of its matches in a single page, its results are also
+ * kept as a complete result set. A later search whose input extends that input is then answered
+ * locally by keeping those addresses whose formatted address has a word starting with each word of
+ * the longer input. If no address survives the filter, AI is asked after all, since its matching is
+ * fuzzier than ours. A derived result keeps the order of the shorter search and counts only what
+ * survived the filter, so it need not match what AI would have returned. The complete result sets
+ * take half of the address budget. Cached responses are shared, so they must not be modified.
+ */
+@Component
+public class AddressQueryCache {
+  private static final Logger log = LoggerFactory.getLogger(AddressQueryCache.class);
+
+  static final String CACHE_NAME = "addressQuery";
+  static final String COMPLETE_CACHE_NAME = "addressQueryComplete";
+  static final String DERIVED_COUNTER_NAME = "address.query.derived";
+
+  // The address endpoint rejects anything shorter, so there is no point looking for it
+  private static final int MINIMUM_INPUT_LENGTH = 5;
+
+  @Value
+  private static class QueryKey {
+    String epoch;
+    String input;
+    int offset;
+    int limit;
+  }
+
+  @Value
+  private static class InputKey {
+    String epoch;
+    String input;
+  }
+
+  private final String epoch;
+
+  private final MeterRegistry meterRegistry;
+
+  // null when the cache is disabled
+  private final Cache<QueryKey, AddressQueryResponseDTO> responses;
+
+  // null unless the cache is enabled and searches are derived from shorter ones
+  private final Cache<InputKey, AddressQueryResponseDTO> completeResults;
+
+  @Autowired
+  public AddressQueryCache(AppConfig appConfig, MeterRegistry meterRegistry) {
+    this(
+        appConfig.getAddressQueryCacheSettings(),
+        appConfig.getAddressIndexSettings().getEpoch(),
+        meterRegistry);
+  }
+
+  AddressQueryCache(AddressQueryCacheSettings settings, String epoch, MeterRegistry meterRegistry) {
+    this.epoch = StringUtils.defaultString(epoch);
+    this.meterRegistry = meterRegistry;
+    if (settings.isEnabled()) {
+      long maximumAddresses = settings.getMaximumAddresses();
+      log.with("maximumAddresses", maximumAddresses)
+          .with("timeToLiveMinutes", settings.getTimeToLiveMinutes())
+          .with("derivePrefixQueries", settings.isDerivePrefixQueries())
+          .with("epoch", epoch)
+          .info("Caching address search results");
+      if (settings.isDerivePrefixQueries()) {
+        // The complete result sets take half of the budget
+        long completeAddresses = maximumAddresses / 2;
+        responses =
+            createCache(
+                settings, maximumAddresses - completeAddresses, meterRegistry, CACHE_NAME);
+        completeResults =
+            createCache(settings, completeAddresses, meterRegistry, COMPLETE_CACHE_NAME);
+      } else {
+        responses = createCache(settings, maximumAddresses, meterRegistry, CACHE_NAME);
+        completeResults = null;
+      }
+    } else {
+      responses = null;
+      completeResults = null;
+    }
+  }
+
+  /**
+   * Get the summarised results of an address search, from the cache, from the complete results of
+   * a shorter search, or failing that from AI.
+   *
+   * @param addressQueryRequest the search
+   * @param aiQuery the search of AI and summary of its results
+   * @return the summarised results, which the caller must not modify
+   */
+  AddressQueryResponseDTO getAddressQuery(
+      AddressQueryRequestDTO addressQueryRequest, Supplier<AddressQueryResponseDTO> aiQuery) {
+    if (responses == null) {
+      return aiQuery.get();
+    }
+
+    QueryKey key =
+        new QueryKey(
+            epoch,
+            normalise(addressQueryRequest.getInput()),
+            addressQueryRequest.getOffset(),
+            addressQueryRequest.getLimit());
+    // AI is asked outside the cache, where a slow search would hold up other searches
+    AddressQueryResponseDTO response = responses.getIfPresent(key);
+    if (response == null) {
+      AddressQueryResponseDTO derived = derive(key);
+      response = derived != null ? derived : search(key, aiQuery);
+      responses.put(key, response);
+    }
+    return response;
+  }
+
+  static String normalise(String input) {
+    return StringUtils.normalizeSpace(input).toLowerCase();
+  }
+
+  private AddressQueryResponseDTO search(QueryKey key, Supplier<AddressQueryResponseDTO> aiQuery) {
+    AddressQueryResponseDTO response = aiQuery.get();
+    if (completeResults != null
+        && key.getOffset() == 0
+        && response.getTotal() <= response.getAddresses().size()) {
+      completeResults.put(new InputKey(epoch, key.getInput()), response);
+    }
+    return response;
+  }
+
+  /*
+   * Look for the complete results of the longest shorter search that this one extends, and filter
+   * them. Returns null if there are none, or nothing in them matches.
+   */
+  private AddressQueryResponseDTO derive(QueryKey key) {
+    if (completeResults == null) {
+      return null;
+    }
+
+    String input = key.getInput();
+    for (int end = input.length() - 1; end >= MINIMUM_INPUT_LENGTH; end--) {
+      AddressQueryResponseDTO complete =
+          completeResults.getIfPresent(new InputKey(epoch, input.substring(0, end)));
+      if (complete == null) {
+        continue;
+      }
+
+      List<String> words = words(input);
+      List<AddressDTO> matches =
+          complete.getAddresses().stream().filter(a -> matches(a, words)).collect(toList());
+      if (matches.isEmpty()) {
+        return null;
+      }
+
+      Counter.builder(DERIVED_COUNTER_NAME)
+          .description("Address searches answered from the complete results of a shorter search")
+          .register(meterRegistry)
+          .increment();
+      completeResults.put(new InputKey(epoch, input), response(complete, matches));
+
+      int from = Math.min(key.getOffset(), matches.size());
+      int to = Math.min(from + key.getLimit(), matches.size());
+      AddressQueryResponseDTO derived = response(complete, matches.subList(from, to));
+      derived.setTotal(matches.size());
+      return derived;
+    }
+    return null;
+  }
+
+  private static boolean matches(AddressDTO address, List<String> inputWords) {
+    List<String> addressWords = new ArrayList<>();
+    addressWords.addAll(words(address.getFormattedAddress()));
+    addressWords.addAll(words(address.getWelshFormattedAddress()));
+    return inputWords.stream().allMatch(w -> addressWords.stream().anyMatch(a -> a.startsWith(w)));
+  }
+
+  // Split into lower case words, ignoring the quotes and commas the address endpoint ignores
+  private static List<String> words(String text) {
+    if (StringUtils.isBlank(text)) {
+      return List.of();
+    }
+    String cleaned = text.replaceAll("'", "").replaceAll(",", " ").trim().toLowerCase();
+    return Arrays.asList(cleaned.split("\\s+"));
+  }
+
+  private static AddressQueryResponseDTO response(
+      AddressQueryResponseDTO source, List<AddressDTO> addresses) {
+    AddressQueryResponseDTO response = new AddressQueryResponseDTO();
+    response.setDataVersion(source.getDataVersion());
+    response.setAddresses(new ArrayList<>(addresses));
+    response.setTotal(addresses.size());
+    return response;
+  }
+
+  // Every entry weighs at least one, so that searches with no addresses are still bounded
+  private static <K> Cache<K, AddressQueryResponseDTO> createCache(
+      AddressQueryCacheSettings settings,
+      long maximumAddresses,
+      MeterRegistry meterRegistry,
+      String name) {
+    Cache<K, AddressQueryResponseDTO> cache =
+        Caffeine.newBuilder()
+            .maximumWeight(maximumAddresses)
+            .<K, AddressQueryResponseDTO>weigher((k, r) -> 1 + r.getAddresses().size())
+            .expireAfterWrite(settings.getTimeToLiveMinutes(), TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+    return CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+  }
+}
@@ -1,12 +1,12 @@
 package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
 
-import static java.util.stream.Collectors.toList;
-
 import com.godaddy.logging.Logger;
 import com.godaddy.logging.LoggerFactory;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.server.ResponseStatusException;
@@ -19,6 +19,7 @@ import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.Add
 import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexAddressDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexSearchResultsCompositeDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexSearchResultsDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryRequestDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryResponseDTO;
@@ -34,22 +35,31 @@ import uk.gov.ons.ctp.integration.contactcentresvc.service.AddressService;
 public class AddressServiceImpl implements AddressService {
   private static final Logger log = LoggerFactory.getLogger(AddressServiceImpl.class);
   private static final String HISTORICAL_ADDRESS_STATUS = "8";
+  private static final String NA_ADDRESS_TYPE = "NA";
+
+  @Autowired private AppConfig appConfig;
 
   @Autowired private AddressServiceClientServiceImpl addressServiceClient;
 
+  @Autowired private AddressQueryCache addressQueryCache;
+
+  @Autowired private PostcodeQueryCache postcodeQueryCache;
+
+  @Autowired private UprnAddressCache uprnAddressCache;
+
+  private final AddressIndexResultsParser resultsParser =
+      new AddressIndexResultsParser(this::isHistorical, this::convertToSummarised);
+
   @Override
   public AddressQueryResponseDTO addressQuery(AddressQueryRequestDTO addressQueryRequest) {
     if (log.isDebugEnabled()) {
       log.with("addressQueryRequest", addressQueryRequest).debug("Running search by address");
     }
 
-    // Delegate the query to Address Index
-    AddressIndexSearchResultsDTO addressIndexResponse =
-        addressServiceClient.searchByAddress(addressQueryRequest);
-
-    // Summarise the returned addresses
+    // Delegate the query to Address Index, unless it can be answered from earlier searches
     AddressQueryResponseDTO results =
-        convertAddressIndexResultsToSummarisedAdresses(addressIndexResponse);
+        addressQueryCache.getAddressQuery(
+            addressQueryRequest, () -> searchByAddress(addressQueryRequest));
 
     if (log.isDebugEnabled()) {
       log.with("addresses", results.getAddresses().size())
@@ -58,19 +68,28 @@ public class AddressServiceImpl implements AddressService {
     return results;
   }
 
+  private AddressQueryResponseDTO searchByAddress(AddressQueryRequestDTO addressQueryRequest) {
+    if (appConfig.getAddressIndexSettings().isStreamingParse()) {
+      return parseSummarisedAddresses(
+          addressServiceClient.searchByAddressJson(addressQueryRequest));
+    }
+    AddressIndexSearchResultsDTO addressIndexResponse =
+        addressServiceClient.searchByAddress(addressQueryRequest);
+
+    // Summarise the returned addresses
+    return convertAddressIndexResultsToSummarisedAdresses(addressIndexResponse);
+  }
+
   @Override
   public AddressQueryResponseDTO postcodeQuery(PostcodeQueryRequestDTO postcodeQueryRequest) {
     if (log.isDebugEnabled()) {
       log.with("postcodeQueryRequest", postcodeQueryRequest).debug("Running search by postcode");
     }
 
-    // Delegate the query to Address Index
-    AddressIndexSearchResultsDTO addressIndexResponse =
-        addressServiceClient.searchByPostcode(postcodeQueryRequest);
-
-    // Summarise the returned addresses
+    // Delegate the query to Address Index, unless the results of the same search are cached
     AddressQueryResponseDTO results =
-        convertAddressIndexResultsToSummarisedAdresses(addressIndexResponse);
+        postcodeQueryCache.getPostcodeQuery(
+            postcodeQueryRequest, () -> searchByPostcode(postcodeQueryRequest));
 
     if (log.isDebugEnabled()) {
       log.with("addresses", results.getAddresses().size())
@@ -79,6 +98,18 @@ public class AddressServiceImpl implements AddressService {
     return results;
   }
 
+  private AddressQueryResponseDTO searchByPostcode(PostcodeQueryRequestDTO postcodeQueryRequest) {
+    if (appConfig.getAddressIndexSettings().isStreamingParse()) {
+      return parseSummarisedAddresses(
+          addressServiceClient.searchByPostcodeJson(postcodeQueryRequest));
+    }
+    AddressIndexSearchResultsDTO addressIndexResponse =
+        addressServiceClient.searchByPostcode(postcodeQueryRequest);
+
+    // Summarise the returned addresses
+    return convertAddressIndexResultsToSummarisedAdresses(addressIndexResponse);
+  }
+
   @Override
   public AddressIndexAddressCompositeDTO uprnQuery(long uprn) throws CTPException {
     if (log.isDebugEnabled()) {
@@ -87,7 +118,8 @@ public class AddressServiceImpl implements AddressService {
 
     // Delegate the query to Address Index
     try {
-      AddressIndexSearchResultsCompositeDTO addressResult = addressServiceClient.searchByUPRN(uprn);
+      AddressIndexSearchResultsCompositeDTO addressResult =
+          uprnAddressCache.getAddress(uprn, () -> addressServiceClient.searchByUPRN(uprn));
       // No result for UPRN from Address Index search
       if (addressResult.getStatus().getCode() != 200) {
         log.with("uprn", uprn)
@@ -125,12 +157,24 @@ public class AddressServiceImpl implements AddressService {
     String welshAddressNag = fullAddress.getWelshFormattedAddressNag();
     String estabDescription = fullAddress.getCensus().getEstabType();
 
+    String addressType = fullAddress.getCensus().getAddressType();
+
     AddressDTO addressSummary = new AddressDTO();
     addressSummary.setUprn(fullAddress.getUprn());
     addressSummary.setRegion(fullAddress.getCensus().getCountryCode());
-    addressSummary.setAddressType(fullAddress.getCensus().getAddressType());
-    addressSummary.setEstabType(EstabType.forCode(estabDescription).name());
-    addressSummary.setEstabDescription(estabDescription);
+    if (NA_ADDRESS_TYPE.equals(addressType)) {
+      // Allow Serco to handle NA addresses by reclassifying as HH
+      if (log.isDebugEnabled()) {
+        log.with("uprn", fullAddress.getUprn()).debug("Reclassifying NA address as HH");
+      }
+      addressSummary.setAddressType(AddressType.HH.name());
+      addressSummary.setEstabType(EstabType.HOUSEHOLD.name());
+      addressSummary.setEstabDescription("Household");
+    } else {
+      addressSummary.setAddressType(addressType);
+      addressSummary.setEstabType(EstabType.forCode(estabDescription).name());
+      addressSummary.setEstabDescription(estabDescription);
+    }
     addressSummary.setFormattedAddress(
         StringUtils.selectFirstNonBlankString(addressPaf, addressNag, formattedAddress));
     addressSummary.setWelshFormattedAddress(
@@ -162,31 +206,50 @@ public class AddressServiceImpl implements AddressService {
     return historical;
   }
 
-  private AddressQueryResponseDTO convertAddressIndexResultsToSummarisedAdresses(
+  /*
+   * Filters, summarises and reclassifies the addresses in a single pass, straight into the list
+   * which is returned. Package-private for benchmarking.
+   */
+  AddressQueryResponseDTO convertAddressIndexResultsToSummarisedAdresses(
       AddressIndexSearchResultsDTO addressIndexResponse) {
-    List<AddressDTO> summarisedAddresses =
-        addressIndexResponse.getResponse().getAddresses().stream()
-            .filter(a -> !isHistorical(a))
-            .map(this::convertToSummarised)
-            .collect(toList());
-
-    // Allow Serco to handle NA addresses by reclassifying as HH
-    for (AddressDTO address : summarisedAddresses) {
-      String addressType = address.getAddressType();
-      if (addressType != null && addressType.equals("NA")) {
-        log.with("uprn", address.getUprn()).debug("Reclassifying NA address as HH");
-        address.setAddressType(AddressType.HH.name());
-        address.setEstabType(EstabType.HOUSEHOLD.name());
-        address.setEstabDescription("Household");
+    List<AddressIndexAddressDTO> addresses = addressIndexResponse.getResponse().getAddresses();
+    ArrayList<AddressDTO> summarisedAddresses = new ArrayList<>(addresses.size());
+    for (AddressIndexAddressDTO address : addresses) {
+      if (!isHistorical(address)) {
+        summarisedAddresses.add(convertToSummarised(address));
       }
     }
 
+    return completeSummarisedAddresses(
+        addressIndexResponse.getDataVersion(),
+        addressIndexResponse.getResponse().getTotal(),
+        summarisedAddresses);
+  }
+
+  /*
+   * Summarises the addresses while the response is parsed, so that no DTOs are built for the
+   * addresses, and historical addresses are dropped as they are read.
+   */
+  private AddressQueryResponseDTO parseSummarisedAddresses(byte[] addressIndexResponse) {
+    AddressQueryResponseDTO parsed;
+    try {
+      parsed = resultsParser.parse(addressIndexResponse);
+    } catch (IOException e) {
+      log.error("Unable to parse response from Address Index", e);
+      throw new ResponseStatusException(
+          HttpStatus.INTERNAL_SERVER_ERROR, "Unable to parse response from Address Index", e);
+    }
+    return completeSummarisedAddresses(
+        parsed.getDataVersion(), parsed.getTotal(), parsed.getAddresses());
+  }
+
+  private AddressQueryResponseDTO completeSummarisedAddresses(
+      String dataVersion, int total, ArrayList<AddressDTO> summarisedAddresses) {
     // Complete construction of response objects
     AddressQueryResponseDTO queryResponse = new AddressQueryResponseDTO();
-    queryResponse.setDataVersion(addressIndexResponse.getDataVersion());
-    queryResponse.setAddresses(new ArrayList<>(summarisedAddresses));
+    queryResponse.setDataVersion(dataVersion);
+    queryResponse.setAddresses(summarisedAddresses);
 
-    int total = addressIndexResponse.getResponse().getTotal();
     int arraySize = summarisedAddresses.size();
 
     // UPRN search has no JSON total attribute as only one or zero
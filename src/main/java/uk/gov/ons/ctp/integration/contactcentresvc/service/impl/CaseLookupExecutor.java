@@ -0,0 +1,216 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseLookupSettings;
+
+/**
+ * Runs the two legs of a case lookup: the call to RM, which always runs on the calling thread, and
+ * the read of our own cached cases.
+ *
+ * <p>When concurrent lookups are enabled the cache leg is handed to a bounded pool as soon as it is
+ * started, so that it overlaps the RM call. Otherwise it is not run until it is joined, which keeps
+ * the original RM-then-cache ordering. Each leg is timed so that we can see which backend
+ * dominates.
+ */
+@Component
+public class CaseLookupExecutor {
+  private static final Logger log = LoggerFactory.getLogger(CaseLookupExecutor.class);
+
+  static final String LEG_TIMER_NAME = "case.lookup.leg";
+  static final String RM_LEG = "rm";
+  static final String CACHE_LEG = "cache";
+  static final String CACHE_DEADLINE_COUNTER_NAME = "case.lookup.cache.deadline.exceeded";
+
+  /** A single leg of a lookup. */
+  @FunctionalInterface
+  interface Leg<T> {
+    T call() throws CTPException;
+  }
+
+  private final MeterRegistry meterRegistry;
+
+  private final long cacheDeadlineMillis;
+
+  // null when the legs are run one after the other
+  private final ExecutorService executor;
+
+  @Autowired
+  public CaseLookupExecutor(AppConfig appConfig, MeterRegistry meterRegistry) {
+    this(appConfig.getCaseLookupSettings(), meterRegistry);
+  }
+
+  CaseLookupExecutor(CaseLookupSettings settings, MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    this.cacheDeadlineMillis = settings.getCacheDeadlineMillis();
+
+    if (settings.isConcurrent()) {
+      int poolSize = settings.getThreadPoolSize();
+      log.with("threadPoolSize", poolSize)
+          .with("queueCapacity", settings.getQueueCapacity())
+          .info("Case lookups will query RM and the case cache concurrently");
+
+      // A full queue makes the caller run the cache leg itself, ie, we degrade to sequential
+      ThreadPoolExecutor pool =
+          new ThreadPoolExecutor(
+              poolSize,
+              poolSize,
+              60L,
+              TimeUnit.SECONDS,
+              new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+              new CustomizableThreadFactory("case-lookup-"),
+              new ThreadPoolExecutor.CallerRunsPolicy());
+      pool.allowCoreThreadTimeOut(true);
+      this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "caseLookup");
+    } else {
+      this.executor = null;
+    }
+  }
+
+  boolean isConcurrent() {
+    return executor != null;
+  }
+
+  /**
+   * Run the RM leg of a lookup on the calling thread.
+   *
+   * @param lookup the type of lookup, used to tag the leg timer
+   * @param leg the call to RM
+   * @return the result of the RM call
+   * @throws CTPException if the leg fails
+   */
+  <T> T callRm(String lookup, Leg<T> leg) throws CTPException {
+    return timed(lookup, RM_LEG, leg);
+  }
+
+  /**
+   * Start the cache leg of a lookup. The result is collected with {@link #join(FutureTask)}.
+   *
+   * @param lookup the type of lookup, used to tag the leg timer
+   * @param leg the read of the case cache
+   * @return a task holding the outcome of the leg
+   */
+  <T> FutureTask<T> startCacheLeg(String lookup, Leg<T> leg) {
+    FutureTask<T> task = new FutureTask<>(() -> timed(lookup, CACHE_LEG, leg));
+    if (executor != null) {
+      executor.execute(task);
+    }
+    return task;
+  }
+
+  /**
+   * Wait for the outcome of a cache leg.
+   *
+   * <p>If the leg has not been picked up by the pool yet (or lookups are sequential) then it is run
+   * on the calling thread rather than waiting for a pool thread to become free.
+   *
+   * @param task as returned by {@link #startCacheLeg(String, Leg)}
+   * @return the result of the leg
+   * @throws CTPException if the leg failed with a CTPException, or could not be waited for
+   */
+  <T> T join(FutureTask<T> task) throws CTPException {
+    task.run(); // no-op if the leg has already been run
+    try {
+      return task.get();
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CTPException(Fault.SYSTEM_ERROR, e, "Interrupted waiting for case cache");
+    }
+  }
+
+  /**
+   * Wait for the outcome of a cache leg, but for no longer than the configured deadline.
+   *
+   * <p>The deadline only applies to concurrent lookups, and is ignored if it is not positive. If
+   * the deadline passes the leg is left to complete in the background and its result is discarded.
+   *
+   * @param lookup the type of lookup, used to tag the deadline counter
+   * @param task as returned by {@link #startCacheLeg(String, Leg)}
+   * @return the result of the leg, or empty if the deadline passed first
+   * @throws CTPException if the leg failed with a CTPException, or could not be waited for
+   */
+  <T> Optional<T> joinWithinDeadline(String lookup, FutureTask<T> task) throws CTPException {
+    if (executor == null || cacheDeadlineMillis <= 0) {
+      return Optional.ofNullable(join(task));
+    }
+    try {
+      return Optional.ofNullable(task.get(cacheDeadlineMillis, TimeUnit.MILLISECONDS));
+    } catch (TimeoutException e) {
+      Counter.builder(CACHE_DEADLINE_COUNTER_NAME)
+          .description("Case lookups answered without waiting for the case cache")
+          .tag("lookup", lookup)
+          .register(meterRegistry)
+          .increment();
+      return Optional.empty();
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CTPException(Fault.SYSTEM_ERROR, e, "Interrupted waiting for case cache");
+    }
+  }
+
+  /**
+   * Abandon a cache leg whose result is no longer needed, eg, because the RM leg failed.
+   *
+   * @param task as returned by {@link #startCacheLeg(String, Leg)}
+   */
+  void abandon(FutureTask<?> task) {
+    task.cancel(false);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+  private <T> T timed(String lookup, String legName, Leg<T> leg) throws CTPException {
+    Timer.Sample sample = Timer.start(meterRegistry);
+    try {
+      return leg.call();
+    } finally {
+      sample.stop(
+          Timer.builder(LEG_TIMER_NAME)
+              .description("Time taken by each backend during a case lookup")
+              .tag("lookup", lookup)
+              .tag("leg", legName)
+              .register(meterRegistry));
+    }
+  }
+
+  private CTPException rethrow(Throwable cause) throws CTPException {
+    if (cause instanceof CTPException) {
+      throw (CTPException) cause;
+    }
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new CTPException(Fault.SYSTEM_ERROR, cause);
+  }
+}
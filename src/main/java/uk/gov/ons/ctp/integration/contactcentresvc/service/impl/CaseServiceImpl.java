@@ -4,22 +4,20 @@ import static java.util.stream.Collectors.toList;
 
 import com.godaddy.logging.Logger;
 import com.godaddy.logging.LoggerFactory;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.FutureTask;
 import javax.inject.Inject;
 import ma.glasnost.orika.MapperFacade;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.validator.routines.checkdigit.LuhnCheckDigit;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
@@ -86,7 +84,8 @@ import uk.gov.ons.ctp.integration.contactcentresvc.representation.UACRequestDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.UACResponseDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.service.AddressService;
 import uk.gov.ons.ctp.integration.contactcentresvc.service.CaseService;
-import uk.gov.ons.ctp.integration.contactcentresvc.util.PgpEncrypt;
+import uk.gov.ons.ctp.integration.contactcentresvc.service.CasesAtAddress;
+import uk.gov.ons.ctp.integration.contactcentresvc.util.PgpFieldEncryptor;
 import uk.gov.ons.ctp.integration.eqlaunch.service.EqLaunchData;
 import uk.gov.ons.ctp.integration.eqlaunch.service.EqLaunchService;
 
@@ -109,6 +108,9 @@ public class CaseServiceImpl implements CaseService {
 
   private static final String SCOTLAND_COUNTRY_CODE = "S";
 
+  private static final String LOOKUP_BY_ID = "id";
+  private static final String LOOKUP_BY_UPRN = "uprn";
+
   @Autowired private AppConfig appConfig;
 
   @Autowired private CaseServiceClientServiceImpl caseServiceClient;
@@ -127,6 +129,18 @@ public class CaseServiceImpl implements CaseService {
 
   @Autowired private CCSPostcodesBean ccsPostcodesBean;
 
+  @Autowired private CaseLookupExecutor caseLookupExecutor;
+
+  @Autowired private RmCaseCache rmCaseCache;
+
+  @Autowired private PostcodeCountryIndex postcodeCountryIndex;
+
+  @Autowired private PostcodeCountryCache postcodeCountryCache;
+
+  @Autowired private PgpKeyRegistry pgpKeyRegistry;
+
+  @Autowired private RefusalEncryptionExecutor refusalEncryptionExecutor;
+
   @Inject
   @Qualifier("addressIndexClient")
   private RestClient addressIndexClient;
@@ -269,13 +283,15 @@ public class CaseServiceImpl implements CaseService {
   }
 
   @Override
-  public List<CaseDTO> getCaseByUPRN(
+  public CasesAtAddress getCaseByUPRN(
       UniquePropertyReferenceNumber uprn, CaseQueryRequestDTO requestParamsDTO)
       throws CTPException {
     if (log.isDebugEnabled()) {
       log.with("uprn", uprn).debug("Fetching latest case details by UPRN");
     }
-    Optional<CaseDTO> latest = getLatestCaseByUprn(uprn, requestParamsDTO.getCaseEvents());
+    TimeOrderedCases timeOrderedCases = new TimeOrderedCases();
+    boolean partial = findCasesByUprn(uprn, requestParamsDTO.getCaseEvents(), timeOrderedCases);
+    Optional<CaseDTO> latest = timeOrderedCases.latest();
 
     CaseDTO response;
     if (latest.isPresent()) {
@@ -290,7 +306,7 @@ public class CaseServiceImpl implements CaseService {
       }
       response = createNewCachedCaseResponse(newcase, false);
     }
-    return Collections.singletonList(response);
+    return new CasesAtAddress(Collections.singletonList(response), partial);
   }
 
   @Override
@@ -382,6 +398,7 @@ public class CaseServiceImpl implements CaseService {
     } else {
       sendAddressModifiedEvent(originalCaseId, modifyRequestDTO, caseDetails);
     }
+    rmCaseCache.evict(originalCaseId);
     updateOrCreateCachedCase(caseId, caseDetails, modifyRequestDTO);
     prepareModificationResponse(response, modifyRequestDTO, caseId, caseRef);
     return response;
@@ -405,6 +422,7 @@ public class CaseServiceImpl implements CaseService {
         createRespondentRefusalPayload(caseId, requestBodyDTO);
 
     sendEvent(EventType.REFUSAL_RECEIVED, refusalPayload, caseId);
+    rmCaseCache.evict(caseId);
 
     // Build response
     ResponseDTO response =
@@ -491,6 +509,7 @@ public class CaseServiceImpl implements CaseService {
             .build();
 
     sendEvent(EventType.ADDRESS_NOT_VALID, payload, caseId);
+    rmCaseCache.evict(caseId);
     ResponseDTO response =
         ResponseDTO.builder().id(caseId.toString()).dateTime(DateTimeUtil.nowUTC()).build();
 
@@ -548,7 +567,8 @@ public class CaseServiceImpl implements CaseService {
     sendEvent(EventType.NEW_ADDRESS_REPORTED, payload, payload.getCollectionCase().getId());
   }
 
-  private CaseContainerDTO filterCaseEvents(CaseContainerDTO caseDTO, Boolean getCaseEvents) {
+  // Package-private for benchmarking
+  CaseContainerDTO filterCaseEvents(CaseContainerDTO caseDTO, Boolean getCaseEvents) {
     if (getCaseEvents) {
       // Only return whitelisted events
       Set<String> whitelistedEventCategories =
@@ -675,7 +695,7 @@ public class CaseServiceImpl implements CaseService {
         if (log.isDebugEnabled()) {
           log.with("caseId", caseId).debug("Case Id Not Found calling Case Service");
         }
-        Optional<CachedCase> cachedCase = dataRepo.readCachedCaseById(caseId);
+        Optional<CachedCase> cachedCase = dataRepo.readCachedCaseById(caseId, getCaseEvents);
         if (cachedCase.isPresent()) {
           log.with("caseId", caseId).info("Using stored case details");
           caze = caseDTOMapper.map(cachedCase.get(), CaseContainerDTO.class);
@@ -694,17 +714,25 @@ public class CaseServiceImpl implements CaseService {
   }
 
   private CaseContainerDTO getCaseFromRm(UUID caseId, boolean getCaseEvents) {
-    CaseContainerDTO caseDetails = caseServiceClient.getCaseById(caseId, getCaseEvents);
+    CaseContainerDTO caseDetails =
+        rmCaseCache.getCaseById(
+            caseId, getCaseEvents, () -> caseServiceClient.getCaseById(caseId, getCaseEvents));
     return filterCaseEvents(caseDetails, getCaseEvents);
   }
 
   private CaseContainerDTO getCaseFromRm(long caseRef, boolean getCaseEvents) {
-    CaseContainerDTO caseDetails = caseServiceClient.getCaseByCaseRef(caseRef, getCaseEvents);
+    CaseContainerDTO caseDetails =
+        rmCaseCache.getCaseByCaseRef(
+            caseRef,
+            getCaseEvents,
+            () -> caseServiceClient.getCaseByCaseRef(caseRef, getCaseEvents));
     return filterCaseEvents(caseDetails, getCaseEvents);
   }
 
   private List<CaseContainerDTO> getCasesFromRm(long uprn, boolean getCaseEvents) {
-    var caseList = caseServiceClient.getCaseByUprn(uprn, getCaseEvents);
+    var caseList =
+        rmCaseCache.getCasesByUprn(
+            uprn, getCaseEvents, () -> caseServiceClient.getCaseByUprn(uprn, getCaseEvents));
     return caseList.stream().map(c -> filterCaseEvents(c, getCaseEvents)).collect(toList());
   }
 
@@ -759,27 +787,25 @@ public class CaseServiceImpl implements CaseService {
     return refusal;
   }
 
-  private ContactCompact createRefusalContact(RefusalRequestDTO refusalRequest) {
+  private ContactCompact createRefusalContact(RefusalRequestDTO refusalRequest)
+      throws CTPException {
     ContactCompact contact = null;
 
     if (refusalRequest.getReason() == Reason.HARD) {
-      contact = new ContactCompact();
-      contact.setTitle(encrypt(refusalRequest.getTitle()));
-      contact.setForename(encrypt(refusalRequest.getForename()));
-      contact.setSurname(encrypt(refusalRequest.getSurname()));
+      PgpFieldEncryptor encryptor = pgpKeyRegistry.getFieldEncryptor();
+      contact =
+          refusalEncryptionExecutor.encrypt(
+              () -> {
+                ContactCompact encrypted = new ContactCompact();
+                encrypted.setTitle(encryptor.encryptToBase64(refusalRequest.getTitle()));
+                encrypted.setForename(encryptor.encryptToBase64(refusalRequest.getForename()));
+                encrypted.setSurname(encryptor.encryptToBase64(refusalRequest.getSurname()));
+                return encrypted;
+              });
     }
     return contact;
   }
 
-  private String encrypt(String clearValue) {
-    if (clearValue == null) {
-      return null;
-    }
-    List<Resource> keys = List.of(appConfig.getPublicPgpKey1(), appConfig.getPublicPgpKey2());
-    String encStr = PgpEncrypt.encrypt(clearValue, keys);
-    return Base64.getEncoder().encodeToString(encStr.getBytes(StandardCharsets.UTF_8));
-  }
-
   private String mapToType(Reason reason) throws CTPException {
     switch (reason) {
       case HARD:
@@ -970,8 +996,18 @@ public class CaseServiceImpl implements CaseService {
   private CaseDTO getLatestCaseById(UUID caseId, Boolean getCaseEvents) throws CTPException {
     TimeOrderedCases timeOrderedCases = new TimeOrderedCases();
 
+    // The cached case doesn't depend on RM, so may be read while we wait for RM
+    FutureTask<Optional<CaseDTO>> cachedCaseLeg =
+        caseLookupExecutor.startCacheLeg(
+            LOOKUP_BY_ID,
+            () ->
+                dataRepo
+                    .readCachedCaseById(caseId, getCaseEvents)
+                    .map(cc -> createNewCachedCaseResponse(cc, getCaseEvents)));
+
     try {
-      CaseContainerDTO caseFromRM = getCaseFromRm(caseId, getCaseEvents);
+      CaseContainerDTO caseFromRM =
+          caseLookupExecutor.callRm(LOOKUP_BY_ID, () -> getCaseFromRm(caseId, getCaseEvents));
       if (caseFromRM != null) {
         timeOrderedCases.addCase(mapCaseContainerDTO(caseFromRM));
       }
@@ -981,15 +1017,13 @@ public class CaseServiceImpl implements CaseService {
           log.with("caseId", caseId).debug("Case Id Not Found by Case Service");
         }
       } else {
+        caseLookupExecutor.abandon(cachedCaseLeg);
         log.with("caseId", caseId).error("Error calling Case Service", ex);
         throw ex;
       }
     }
 
-    Optional<CaseDTO> cachedCase =
-        dataRepo
-            .readCachedCaseById(caseId)
-            .map(cc -> createNewCachedCaseResponse(cc, getCaseEvents));
+    Optional<CaseDTO> cachedCase = caseLookupExecutor.join(cachedCaseLeg);
 
     if (cachedCase.isPresent()) {
       timeOrderedCases.addCase(cachedCase.get());
@@ -1007,11 +1041,31 @@ public class CaseServiceImpl implements CaseService {
     return latestCaseDto;
   }
 
-  private Optional<CaseDTO> getLatestCaseByUprn(
-      UniquePropertyReferenceNumber uprn, boolean addCaseEvents) throws CTPException {
-    TimeOrderedCases timeOrderedCases = new TimeOrderedCases();
+  /*
+   * Add the cases at an address to those given, returning true if they were found without our case
+   * cache, which only happens when RM has supplied a case.
+   */
+  private boolean findCasesByUprn(
+      UniquePropertyReferenceNumber uprn, boolean addCaseEvents, TimeOrderedCases timeOrderedCases)
+      throws CTPException {
+
+    FutureTask<List<CaseDTO>> cachedCasesLeg =
+        caseLookupExecutor.startCacheLeg(
+            LOOKUP_BY_UPRN,
+            () ->
+                dataRepo.readCachedCasesByUprn(uprn, addCaseEvents).stream()
+                    .map(cc -> createNewCachedCaseResponse(cc, addCaseEvents))
+                    .collect(toList()));
 
-    List<CaseDTO> rmCases = callCaseSvcByUPRN(uprn.getValue(), addCaseEvents);
+    List<CaseDTO> rmCases;
+    try {
+      rmCases =
+          caseLookupExecutor.callRm(
+              LOOKUP_BY_UPRN, () -> callCaseSvcByUPRN(uprn.getValue(), addCaseEvents));
+    } catch (CTPException | RuntimeException ex) {
+      caseLookupExecutor.abandon(cachedCasesLeg);
+      throw ex;
+    }
     if (log.isDebugEnabled()) {
       log.with("uprn", uprn)
           .with("cases", rmCases.size())
@@ -1019,18 +1073,24 @@ public class CaseServiceImpl implements CaseService {
     }
     timeOrderedCases.add(rmCases);
 
-    List<CaseDTO> cachedCases =
-        dataRepo.readCachedCasesByUprn(uprn).stream()
-            .map(cc -> createNewCachedCaseResponse(cc, addCaseEvents))
-            .collect(toList());
-    if (log.isDebugEnabled()) {
-      log.with("uprn", uprn)
-          .with("cases", cachedCases.size())
-          .debug("Found {} case details in Cache for UPRN", cachedCases.size());
-    }
-    timeOrderedCases.add(cachedCases);
+    // Once RM has supplied a case we needn't wait indefinitely for the cache. Without one we must
+    // wait, as the caller will create a new skeleton case if neither source has a case.
+    Optional<List<CaseDTO>> cachedCases =
+        rmCases.isEmpty()
+            ? Optional.of(caseLookupExecutor.join(cachedCasesLeg))
+            : caseLookupExecutor.joinWithinDeadline(LOOKUP_BY_UPRN, cachedCasesLeg);
 
-    return timeOrderedCases.latest();
+    if (cachedCases.isPresent()) {
+      if (log.isDebugEnabled()) {
+        log.with("uprn", uprn)
+            .with("cases", cachedCases.get().size())
+            .debug("Found {} case details in Cache for UPRN", cachedCases.get().size());
+      }
+      timeOrderedCases.add(cachedCases.get());
+      return false;
+    }
+    log.with("uprn", uprn).warn("Case cache too slow. Returning latest case from RM only");
+    return true;
   }
 
   private void validateCaseRef(long caseRef) throws CTPException {
@@ -1102,52 +1162,24 @@ public class CaseServiceImpl implements CaseService {
     uk.gov.ons.ctp.integration.contactcentresvc.representation.Region ccRegion = null;
 
     String postcode = caseRequestDTO.getPostcode();
-    String postcodeArea = postcode.substring(0, 2).toUpperCase();
-
-    if (postcodeArea.equals("BT")) {
-      ccRegion = uk.gov.ons.ctp.integration.contactcentresvc.representation.Region.N;
 
-    } else {
-      // Get ready to call AI to find the region for the specified postcode
-      MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
-      queryParams.add("offset", "0");
-      queryParams.add("limit", "1");
-      queryParams.add("includeauxiliarysearch", "true");
-      addEpoch(queryParams);
-
-      // Ask Address Index to do postcode search
-      AddressIndexSearchResultsDTO addressIndexResponse = null;
-      try {
-        String path = appConfig.getAddressIndexSettings().getPostcodeLookupPath();
-        addressIndexResponse =
-            addressIndexClient.getResource(
-                path, AddressIndexSearchResultsDTO.class, null, queryParams, postcode);
-      } catch (ResponseStatusException e) {
-        // Something went wrong calling AI.
-        // Never mind, we'll still be able to use the Serco supplied region
-        log.with("postcode", postcode).warn("Failed to call AI to resolve region");
+    // Only go to AI if the postcode is in a border district, or is not covered by the index
+    Optional<String> countryCode = postcodeCountryIndex.getCountryCode(postcode);
+    if (countryCode.isEmpty()) {
+      countryCode =
+          postcodeCountryCache.getCountryCode(postcode, () -> findCountryCodeInAI(postcode));
+    }
+    if (countryCode.isPresent()) {
+      // Found the country. Fail if Scottish otherwise use its region
+      if (countryCode.get().equals(SCOTLAND_COUNTRY_CODE)) {
+        log.with("postcode", postcode).info("Rejecting as it's a Scottish address");
+        throw new CTPException(Fault.BAD_REQUEST, "Scottish addresses are not valid for Census");
       }
 
-      if (addressIndexResponse != null) {
-        ArrayList<AddressIndexAddressDTO> addresses =
-            addressIndexResponse.getResponse().getAddresses();
-        if (!addresses.isEmpty()) {
-          // Found an address. Fail if Scottish otherwise use its region
-          String countryCode = addresses.get(0).getCensus().getCountryCode();
-          if (countryCode != null && countryCode.equals("S")) {
-            log.with("postcode", postcode).info("Rejecting as it's a Scottish address");
-            throw new CTPException(
-                Fault.BAD_REQUEST, "Scottish addresses are not valid for Census");
-          }
-
-          if (countryCode != null) {
-            // Use the region as specified by AI
-            ccRegion =
-                uk.gov.ons.ctp.integration.contactcentresvc.representation.Region.valueOf(
-                    countryCode);
-          }
-        }
-      }
+      // Use the region of the postcode
+      ccRegion =
+          uk.gov.ons.ctp.integration.contactcentresvc.representation.Region.valueOf(
+              countryCode.get());
     }
 
     // Decide if we are using the Serco or the CC calculated region
@@ -1176,6 +1208,38 @@ public class CaseServiceImpl implements CaseService {
     return regionForNewCase;
   }
 
+  private Optional<String> findCountryCodeInAI(String postcode) {
+    // Get ready to call AI to find the region for the specified postcode
+    MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>();
+    queryParams.add("offset", "0");
+    queryParams.add("limit", "1");
+    queryParams.add("includeauxiliarysearch", "true");
+    addEpoch(queryParams);
+
+    // Ask Address Index to do postcode search
+    AddressIndexSearchResultsDTO addressIndexResponse = null;
+    try {
+      String path = appConfig.getAddressIndexSettings().getPostcodeLookupPath();
+      addressIndexResponse =
+          addressIndexClient.getResource(
+              path, AddressIndexSearchResultsDTO.class, null, queryParams, postcode);
+    } catch (ResponseStatusException e) {
+      // Something went wrong calling AI.
+      // Never mind, we'll still be able to use the Serco supplied region
+      log.with("postcode", postcode).warn("Failed to call AI to resolve region");
+    }
+
+    String countryCode = null;
+    if (addressIndexResponse != null) {
+      ArrayList<AddressIndexAddressDTO> addresses =
+          addressIndexResponse.getResponse().getAddresses();
+      if (!addresses.isEmpty()) {
+        countryCode = addresses.get(0).getCensus().getCountryCode();
+      }
+    }
+    return Optional.ofNullable(countryCode);
+  }
+
   private MultiValueMap<String, String> addEpoch(MultiValueMap<String, String> queryParams) {
     String epoch = appConfig.getAddressIndexSettings().getEpoch();
     if (!StringUtils.isBlank(epoch)) {
@@ -1197,7 +1261,7 @@ public class CaseServiceImpl implements CaseService {
     cachedCase.setAddressLine2(modifyRequestDTO.getAddressLine2());
     cachedCase.setAddressLine3(modifyRequestDTO.getAddressLine3());
     cachedCase.setCeOrgName(modifyRequestDTO.getCeOrgName());
-    dataRepo.writeCachedCase(cachedCase);
+    dataRepo.updateCachedCase(cachedCase);
   }
 
   private void sendAddressModifiedEvent(
@@ -1349,7 +1413,7 @@ public class CaseServiceImpl implements CaseService {
       return caseDetails;
     } catch (ResponseStatusException ex) {
       if (ex.getStatus() == HttpStatus.NOT_FOUND) {
-        Optional<CachedCase> cachedCase = dataRepo.readCachedCaseById(caseId);
+        Optional<CachedCase> cachedCase = dataRepo.readCachedCaseById(caseId, false);
         if (cachedCase.isPresent()) {
           log.with("caseid", caseId)
               .with("status", ex.getStatus())
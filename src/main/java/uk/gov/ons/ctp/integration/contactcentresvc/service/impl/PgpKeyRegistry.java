@@ -0,0 +1,147 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import lombok.Value;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PgpKeySettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.util.PgpEncrypt;
+import uk.gov.ons.ctp.integration.contactcentresvc.util.PgpFieldEncryptor;
+
+/**
+ * Holds the PGP public keys which refusal contact details are encrypted for, so that they are read
+ * and parsed once rather than for every field encrypted, along with an encryptor set up for them.
+ *
+ * <p>The keys are read when first needed. After that, when the check interval has passed, the key
+ * files are looked at again on the next use, and if either has been modified both are re-read. The
+ * keys in use are replaced as a whole, and are kept if the changed files cannot be read.
+ */
+@Component
+public class PgpKeyRegistry {
+  private static final Logger log = LoggerFactory.getLogger(PgpKeyRegistry.class);
+
+  /** The keys, with when each key file had last been modified when they were read. */
+  @Value
+  private static class Keys {
+    Collection<PGPPublicKey> publicKeys;
+    PgpFieldEncryptor fieldEncryptor;
+    // -1 for a key file which cannot say
+    List<Long> lastModified;
+  }
+
+  private final PgpKeySettings settings;
+
+  private final List<Resource> keyResources;
+
+  private final Object lock = new Object();
+
+  // null until first read
+  private volatile Keys keys;
+
+  // System.nanoTime() after which the key files are next looked at
+  private volatile long nextCheck;
+
+  @Autowired
+  public PgpKeyRegistry(AppConfig appConfig) {
+    this(
+        appConfig.getPgpKeySettings(),
+        List.of(appConfig.getPublicPgpKey1(), appConfig.getPublicPgpKey2()));
+  }
+
+  PgpKeyRegistry(PgpKeySettings settings, List<Resource> keyResources) {
+    this.settings = settings;
+    this.keyResources = keyResources;
+  }
+
+  /**
+   * Get the public keys, reading them if they have not yet been read or their files have changed.
+   *
+   * @return the keys, any of which can decrypt what is encrypted for them
+   */
+  public Collection<PGPPublicKey> getPublicKeys() {
+    return current().getPublicKeys();
+  }
+
+  /**
+   * Get an encryptor for the public keys, reading them if they have not yet been read or their
+   * files have changed.
+   *
+   * @return the encryptor
+   */
+  public PgpFieldEncryptor getFieldEncryptor() {
+    return current().getFieldEncryptor();
+  }
+
+  private Keys current() {
+    Keys current = keys;
+    if (current == null || checkDue()) {
+      synchronized (lock) {
+        if (keys == null || checkDue()) {
+          reloadIfChanged();
+        }
+        current = keys;
+      }
+    }
+    return current;
+  }
+
+  /*
+   * Re-read the keys if they have not yet been read or any key file has been modified since they
+   * were.
+   */
+  void reloadIfChanged() {
+    synchronized (lock) {
+      nextCheck = System.nanoTime() + TimeUnit.SECONDS.toNanos(checkIntervalSeconds());
+      List<Long> lastModified = lastModified();
+      Keys current = keys;
+      if (current != null && lastModified.equals(current.getLastModified())) {
+        return;
+      }
+      try {
+        Collection<PGPPublicKey> publicKeys =
+            Collections.unmodifiableList(new ArrayList<>(PgpEncrypt.readPublicKeys(keyResources)));
+        keys = new Keys(publicKeys, new PgpFieldEncryptor(publicKeys), lastModified);
+        log.with("keys", publicKeys.size())
+            .with("reloaded", current != null)
+            .info("Read PGP public keys");
+      } catch (IOException | PGPException e) {
+        if (current == null) {
+          throw new RuntimeException("failed to read public keys", e);
+        }
+        log.error("Unable to re-read changed PGP public keys. Using those read before", e);
+      }
+    }
+  }
+
+  private boolean checkDue() {
+    return checkIntervalSeconds() > 0 && System.nanoTime() - nextCheck >= 0;
+  }
+
+  private long checkIntervalSeconds() {
+    return settings.getReloadCheckIntervalSeconds();
+  }
+
+  private List<Long> lastModified() {
+    List<Long> lastModified = new ArrayList<>(keyResources.size());
+    for (Resource resource : keyResources) {
+      try {
+        lastModified.add(resource.lastModified());
+      } catch (IOException e) {
+        // eg, a key which is not a file, which is never re-read
+        lastModified.add(-1L);
+      }
+    }
+    return lastModified;
+  }
+}
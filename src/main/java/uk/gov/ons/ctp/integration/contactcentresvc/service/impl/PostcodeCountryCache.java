@@ -0,0 +1,150 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.Value;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PostcodeCountryCacheSettings;
+
+/**
+ * Cache of the country code that AI holds for a postcode, as used to work out the region of a new
+ * case.
+ *
+ * <p>Entries are scoped by the configured AI epoch. Only postcodes for which AI supplied a country
+ * code are cached, so a failed or empty AI lookup is retried next time. Postcodes from the optional
+ * preload file are held for the lifetime of the service and never need AI at all. They are scoped
+ * by the epoch the file was built for, so a file built for another epoch is never used.
+ */
+@Component
+public class PostcodeCountryCache {
+  private static final Logger log = LoggerFactory.getLogger(PostcodeCountryCache.class);
+
+  static final String CACHE_NAME = "postcodeCountry";
+
+  @Value
+  private static class PostcodeKey {
+    String epoch;
+    String postcode;
+  }
+
+  private final String epoch;
+
+  // empty when there is no preload file for the configured epoch
+  private final Map<PostcodeKey, String> preloaded;
+
+  // null when the cache is disabled
+  private final Cache<PostcodeKey, String> countryCodes;
+
+  @Autowired
+  public PostcodeCountryCache(AppConfig appConfig, MeterRegistry meterRegistry) {
+    this(
+        appConfig.getPostcodeCountryCacheSettings(),
+        appConfig.getAddressIndexSettings().getEpoch(),
+        meterRegistry);
+  }
+
+  PostcodeCountryCache(
+      PostcodeCountryCacheSettings settings, String epoch, MeterRegistry meterRegistry) {
+    this.epoch = StringUtils.defaultString(epoch);
+    if (settings.isEnabled()) {
+      log.with("maximumSize", settings.getMaximumSize())
+          .with("timeToLiveHours", settings.getTimeToLiveHours())
+          .with("epoch", epoch)
+          .info("Caching postcode country codes");
+      Cache<PostcodeKey, String> cache =
+          Caffeine.newBuilder()
+              .maximumSize(settings.getMaximumSize())
+              .expireAfterWrite(settings.getTimeToLiveHours(), TimeUnit.HOURS)
+              .recordStats()
+              .build();
+      this.countryCodes = CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+      this.preloaded =
+          preload(settings.getPreloadPath(), StringUtils.defaultString(settings.getPreloadEpoch()));
+    } else {
+      this.countryCodes = null;
+      this.preloaded = Map.of();
+    }
+  }
+
+  /**
+   * Get the country code for a postcode, asking AI if it is not known.
+   *
+   * @param postcode in any case, with or without spaces
+   * @param aiLookup the call to AI, which returns empty if AI could not supply a country code
+   * @return the country code, or empty if it could not be found
+   */
+  Optional<String> getCountryCode(String postcode, Supplier<Optional<String>> aiLookup) {
+    if (countryCodes == null) {
+      return aiLookup.get();
+    }
+
+    PostcodeKey key = new PostcodeKey(epoch, normalise(postcode));
+    String countryCode = preloaded.get(key);
+    if (countryCode != null) {
+      return Optional.of(countryCode);
+    }
+
+    countryCode = countryCodes.getIfPresent(key);
+    if (countryCode != null) {
+      return Optional.of(countryCode);
+    }
+
+    Optional<String> fromAi = aiLookup.get();
+    fromAi.ifPresent(c -> countryCodes.put(key, c));
+    return fromAi;
+  }
+
+  static String normalise(String postcode) {
+    return StringUtils.deleteWhitespace(postcode).toUpperCase();
+  }
+
+  private Map<PostcodeKey, String> preload(String preloadPath, String preloadEpoch) {
+    Map<PostcodeKey, String> postcodes = new HashMap<>();
+    if (StringUtils.isBlank(preloadPath)) {
+      return postcodes;
+    }
+    if (!epoch.equals(preloadEpoch)) {
+      log.with("preloadPath", preloadPath)
+          .with("preloadEpoch", preloadEpoch)
+          .with("epoch", epoch)
+          .warn("Ignoring postcode country preload file built for another AI epoch");
+      return postcodes;
+    }
+
+    try (BufferedReader br = new BufferedReader(new FileReader(preloadPath))) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        String[] fields = line.split(",");
+        if (fields.length == 2 && !StringUtils.isAnyBlank(fields)) {
+          postcodes.put(
+              new PostcodeKey(preloadEpoch, normalise(fields[0])), fields[1].trim().toUpperCase());
+        } else if (!StringUtils.isBlank(line)) {
+          log.with("line", line).warn("Ignoring malformed line in postcode country preload file");
+        }
+      }
+      log.with("preloadPath", preloadPath)
+          .with("postcodes", postcodes.size())
+          .info("Preloaded postcode country codes");
+    } catch (IOException e) {
+      log.with("preloadPath", preloadPath)
+          .error("Unable to preload postcode country codes. Using AI for every postcode", e);
+      postcodes.clear();
+    }
+    return postcodes;
+  }
+}
@@ -0,0 +1,136 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PostcodeCountryIndexSettings;
+
+/**
+ * In-memory index from postcode area and district to country code, which lets us find the country
+ * of most postcodes without calling AI.
+ *
+ * <p>The index is read at startup from a versioned file of 'areaOrDistrict,countryCode' lines. A
+ * district entry overrides the entry for its area, and a district that straddles a border is
+ * marked '*' so that its postcodes are left for AI to resolve.
+ *
+ * <p>Northern Ireland postcodes are always known, even when the index is disabled or cannot be
+ * read, as they were never looked up in AI.
+ */
+@Component
+public class PostcodeCountryIndex {
+  private static final Logger log = LoggerFactory.getLogger(PostcodeCountryIndex.class);
+
+  static final String LOOKUP_COUNTER_NAME = "postcode.country.index.lookups";
+  static final String BORDER_MARKER = "*";
+
+  // The inward code is always a digit followed by two letters
+  private static final int INWARD_CODE_LENGTH = 3;
+
+  private static final Map<String, String> NORTHERN_IRELAND = Map.of("BT", "N");
+
+  // only Northern Ireland when the index is disabled or could not be read
+  private final Map<String, String> countryCodes;
+
+  private final MeterRegistry meterRegistry;
+
+  @Autowired
+  public PostcodeCountryIndex(AppConfig appConfig, MeterRegistry meterRegistry) {
+    this(appConfig.getPostcodeCountryIndexSettings(), meterRegistry);
+  }
+
+  PostcodeCountryIndex(PostcodeCountryIndexSettings settings, MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    this.countryCodes =
+        settings.isEnabled() && settings.getIndexFile() != null
+            ? load(settings.getIndexFile())
+            : NORTHERN_IRELAND;
+  }
+
+  /**
+   * Get the country code for a postcode from the index.
+   *
+   * @param postcode in any case, with or without a space
+   * @return the country code, or empty if the postcode is not covered by the index or lies in a
+   *     district that straddles a border
+   */
+  Optional<String> getCountryCode(String postcode) {
+    String outwardCode = outwardCode(postcode);
+    String countryCode = countryCodes.get(outwardCode);
+    if (countryCode == null) {
+      countryCode = countryCodes.get(area(outwardCode));
+    }
+
+    String result;
+    if (countryCode == null) {
+      result = "unknown";
+    } else if (countryCode.equals(BORDER_MARKER)) {
+      result = "border";
+      countryCode = null;
+    } else {
+      result = "hit";
+    }
+    Counter.builder(LOOKUP_COUNTER_NAME)
+        .description("Postcode country lookups, by whether the index could answer them")
+        .tag("result", result)
+        .register(meterRegistry)
+        .increment();
+    return Optional.ofNullable(countryCode);
+  }
+
+  static String outwardCode(String postcode) {
+    String normalised = StringUtils.deleteWhitespace(postcode).toUpperCase();
+    return normalised.length() > INWARD_CODE_LENGTH
+        ? normalised.substring(0, normalised.length() - INWARD_CODE_LENGTH)
+        : normalised;
+  }
+
+  private static String area(String outwardCode) {
+    int end = 0;
+    while (end < outwardCode.length() && Character.isLetter(outwardCode.charAt(end))) {
+      end++;
+    }
+    return outwardCode.substring(0, end);
+  }
+
+  private Map<String, String> load(Resource indexFile) {
+    Map<String, String> index = new HashMap<>(NORTHERN_IRELAND);
+    try (BufferedReader br =
+        new BufferedReader(
+            new InputStreamReader(indexFile.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = br.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+          continue;
+        }
+        String[] fields = line.split(",");
+        if (fields.length == 2 && !StringUtils.isAnyBlank(fields)) {
+          index.put(fields[0].trim().toUpperCase(), fields[1].trim().toUpperCase());
+        } else {
+          log.with("line", line).warn("Ignoring malformed line in postcode country index");
+        }
+      }
+      log.with("indexFile", indexFile.getDescription())
+          .with("entries", index.size())
+          .info("Loaded postcode country index");
+    } catch (IOException e) {
+      log.with("indexFile", indexFile.getDescription())
+          .error("Unable to load postcode country index. Using AI for every postcode", e);
+      return NORTHERN_IRELAND;
+    }
+    return Map.copyOf(index);
+  }
+}
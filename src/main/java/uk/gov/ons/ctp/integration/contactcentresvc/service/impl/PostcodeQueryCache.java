@@ -0,0 +1,108 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.Value;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PostcodeQueryCacheSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryResponseDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.PostcodeQueryRequestDTO;
+
+/**
+ * Cache of the summarised results of postcode searches, so that an agent paging back and forth
+ * through the addresses at a postcode does not go to AI for each page.
+ *
+ * <p>Entries are keyed by postcode, offset, limit and the configured AI epoch, and the cache is
+ * bounded by the number of addresses it holds rather than by the number of searches. A search that
+ * fails is not cached. Cached responses are shared, so they must not be modified.
+ */
+@Component
+public class PostcodeQueryCache {
+  private static final Logger log = LoggerFactory.getLogger(PostcodeQueryCache.class);
+
+  static final String CACHE_NAME = "postcodeQuery";
+
+  @Value
+  private static class QueryKey {
+    String epoch;
+    String postcode;
+    int offset;
+    int limit;
+  }
+
+  private final String epoch;
+
+  // null when the cache is disabled
+  private final Cache<QueryKey, AddressQueryResponseDTO> responses;
+
+  @Autowired
+  public PostcodeQueryCache(AppConfig appConfig, MeterRegistry meterRegistry) {
+    this(
+        appConfig.getPostcodeQueryCacheSettings(),
+        appConfig.getAddressIndexSettings().getEpoch(),
+        meterRegistry);
+  }
+
+  PostcodeQueryCache(
+      PostcodeQueryCacheSettings settings, String epoch, MeterRegistry meterRegistry) {
+    this.epoch = StringUtils.defaultString(epoch);
+    if (settings.isEnabled()) {
+      log.with("maximumAddresses", settings.getMaximumAddresses())
+          .with("timeToLiveMinutes", settings.getTimeToLiveMinutes())
+          .with("epoch", epoch)
+          .info("Caching postcode search results");
+      Cache<QueryKey, AddressQueryResponseDTO> cache =
+          Caffeine.newBuilder()
+              .maximumWeight(settings.getMaximumAddresses())
+              .weigher(PostcodeQueryCache::weigh)
+              .expireAfterWrite(settings.getTimeToLiveMinutes(), TimeUnit.MINUTES)
+              .recordStats()
+              .build();
+      this.responses = CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    } else {
+      this.responses = null;
+    }
+  }
+
+  /**
+   * Get the summarised results of a postcode search, asking AI if they are not cached.
+   *
+   * @param postcodeQueryRequest the search
+   * @param aiQuery the search of AI and summary of its results
+   * @return the summarised results, which the caller must not modify
+   */
+  AddressQueryResponseDTO getPostcodeQuery(
+      PostcodeQueryRequestDTO postcodeQueryRequest, Supplier<AddressQueryResponseDTO> aiQuery) {
+    if (responses == null) {
+      return aiQuery.get();
+    }
+
+    QueryKey key =
+        new QueryKey(
+            epoch,
+            StringUtils.deleteWhitespace(postcodeQueryRequest.getPostcode()).toUpperCase(),
+            postcodeQueryRequest.getOffset(),
+            postcodeQueryRequest.getLimit());
+    // AI is asked outside the cache, where a slow search would hold up searches for other postcodes
+    AddressQueryResponseDTO response = responses.getIfPresent(key);
+    if (response == null) {
+      response = aiQuery.get();
+      responses.put(key, response);
+    }
+    return response;
+  }
+
+  // Every entry weighs at least one, so that searches with no addresses are still bounded
+  private static int weigh(QueryKey key, AddressQueryResponseDTO response) {
+    return 1 + (response.getAddresses() == null ? 0 : response.getAddresses().size());
+  }
+}
@@ -0,0 +1,165 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.RefusalEncryptionSettings;
+
+/**
+ * Runs the PGP encryption of refusal contact details, which is the most CPU hungry part of
+ * reporting a refusal.
+ *
+ * <p>When pooled, encryption is handed to a pool with a thread per processor and a bounded queue,
+ * so that however many refusals arrive at once, no more are being encrypted than there are
+ * processors to do it. The request thread waits for the result, as the refusal event cannot be
+ * sent without it, but it waits parked rather than competing for CPU. A refusal which finds the
+ * queue full is turned away as unavailable at once rather than adding to the backlog, and how
+ * close the pool is to that is published as a gauge.
+ *
+ * <p>As the request thread is still held while it waits, a burst of refusals can still take every
+ * request thread, so pooling is off unless configured.
+ */
+@Component
+public class RefusalEncryptionExecutor {
+  private static final Logger log = LoggerFactory.getLogger(RefusalEncryptionExecutor.class);
+
+  static final String SATURATION_GAUGE_NAME = "refusal.encryption.saturation";
+  static final String REJECTED_COUNTER_NAME = "refusal.encryption.rejected";
+
+  private final MeterRegistry meterRegistry;
+
+  private final long timeoutMillis;
+
+  // null when encryption is done on the request thread
+  private final ThreadPoolExecutor pool;
+
+  @Autowired
+  public RefusalEncryptionExecutor(AppConfig appConfig, MeterRegistry meterRegistry) {
+    this(appConfig.getRefusalEncryptionSettings(), meterRegistry);
+  }
+
+  RefusalEncryptionExecutor(RefusalEncryptionSettings settings, MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    this.timeoutMillis = settings.getTimeoutMillis();
+
+    if (settings.isPooled()) {
+      int poolSize =
+          settings.getThreadPoolSize() > 0
+              ? settings.getThreadPoolSize()
+              : Runtime.getRuntime().availableProcessors();
+      log.with("threadPoolSize", poolSize)
+          .with("queueCapacity", settings.getQueueCapacity())
+          .info("Refusal contact details will be encrypted by a bounded pool");
+
+      CustomizableThreadFactory threadFactory =
+          new CustomizableThreadFactory("refusal-encryption-");
+      threadFactory.setDaemon(true);
+      pool =
+          new ThreadPoolExecutor(
+              poolSize,
+              poolSize,
+              60L,
+              TimeUnit.SECONDS,
+              new ArrayBlockingQueue<>(settings.getQueueCapacity()),
+              threadFactory,
+              new ThreadPoolExecutor.AbortPolicy());
+      pool.allowCoreThreadTimeOut(true);
+      ExecutorServiceMetrics.monitor(meterRegistry, pool, "refusalEncryption");
+      Gauge.builder(SATURATION_GAUGE_NAME, this, RefusalEncryptionExecutor::saturation)
+          .description(
+              "Refusals being encrypted or queued, as a fraction of those which can be before "
+                  + "more are turned away")
+          .register(meterRegistry);
+    } else {
+      pool = null;
+    }
+  }
+
+  boolean isPooled() {
+    return pool != null;
+  }
+
+  /**
+   * Run an encryption, and wait for its result.
+   *
+   * @param encryption the encryption
+   * @return the result of the encryption
+   * @throws ResponseStatusException with a status of service unavailable if the pool and its queue
+   *     are full
+   * @throws CTPException if the encryption did not complete in time, or could not be waited for
+   */
+  <T> T encrypt(Supplier<T> encryption) throws CTPException {
+    if (pool == null) {
+      return encryption.get();
+    }
+
+    Future<T> result;
+    try {
+      result = pool.submit(encryption::get);
+    } catch (RejectedExecutionException e) {
+      Counter.builder(REJECTED_COUNTER_NAME)
+          .description("Refusals turned away because too many were already being encrypted")
+          .register(meterRegistry)
+          .increment();
+      log.warn("Refusal turned away as too many are waiting to be encrypted");
+      throw new ResponseStatusException(
+          HttpStatus.SERVICE_UNAVAILABLE, "Too many refusals are being processed", e);
+    }
+
+    try {
+      return result.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      throw rethrow(e.getCause());
+    } catch (TimeoutException e) {
+      result.cancel(false);
+      throw new CTPException(Fault.SYSTEM_ERROR, e, "Timed out encrypting refusal");
+    } catch (InterruptedException e) {
+      result.cancel(false);
+      Thread.currentThread().interrupt();
+      throw new CTPException(Fault.SYSTEM_ERROR, e, "Interrupted encrypting refusal");
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (pool != null) {
+      pool.shutdown();
+    }
+  }
+
+  double saturation() {
+    int queued = pool.getQueue().size();
+    int capacity = pool.getMaximumPoolSize() + queued + pool.getQueue().remainingCapacity();
+    return (double) (pool.getActiveCount() + queued) / capacity;
+  }
+
+  private CTPException rethrow(Throwable cause) throws CTPException {
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    return new CTPException(Fault.SYSTEM_ERROR, cause);
+  }
+}
@@ -0,0 +1,312 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static java.util.stream.Collectors.toList;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import lombok.Value;
+import ma.glasnost.orika.MapperFacade;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import uk.gov.ons.ctp.integration.caseapiclient.caseservice.model.CaseContainerDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.CCSvcBeanMapper;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.RmCaseCacheSettings;
+
+/**
+ * Short lived, size bounded, in-process cache of the cases returned by RM, keyed by case id, case
+ * reference and UPRN.
+ *
+ * <p>In front of the cache sits a memo for the current HTTP request, so that a single request never
+ * fetches the same case twice even when the cache is disabled. Behind it, concurrent identical
+ * calls to RM can share a single call. RM is never called from within the cache, where a slow call
+ * would hold up lookups of other cases, so single flight is all that stops concurrent misses for
+ * the same case each calling RM.
+ *
+ * <p>Callers are free to modify what they are given, so each read hands out a copy of the cached
+ * case rather than the cached instance itself. Failed RM calls, including Not Found, are never
+ * cached. Outside of a request, with the cache and single flight disabled, every read goes straight
+ * to RM.
+ */
+@Component
+public class RmCaseCache {
+  private static final Logger log = LoggerFactory.getLogger(RmCaseCache.class);
+
+  static final String BY_ID_CACHE_NAME = "rmCaseById";
+  static final String BY_CASE_REF_CACHE_NAME = "rmCaseByCaseRef";
+  static final String BY_UPRN_CACHE_NAME = "rmCasesByUprn";
+  static final String AVOIDED_LOOKUP_COUNTER_NAME = "rm.case.lookups.avoided";
+  static final String SINGLE_FLIGHT_COUNTER_NAME = "rm.case.lookups.single.flight";
+  static final String LEADER = "leader";
+  static final String FOLLOWER = "follower";
+
+  private static final String MEMO_ATTRIBUTE = RmCaseCache.class.getName() + ".memo";
+
+  /** Cases read with and without their events are cached separately. */
+  @Value
+  private static class CaseKey {
+    Object key;
+    boolean caseEvents;
+  }
+
+  private final MapperFacade mapper = new CCSvcBeanMapper();
+
+  private final MeterRegistry meterRegistry;
+
+  private final boolean singleFlight;
+
+  // RM calls currently in progress, keyed by lookup and case key
+  private final Map<List<Object>, CompletableFuture<Object>> flights = new ConcurrentHashMap<>();
+
+  // all null when the cache is disabled
+  private final Cache<CaseKey, CaseContainerDTO> casesById;
+  private final Cache<CaseKey, CaseContainerDTO> casesByCaseRef;
+  private final Cache<CaseKey, List<CaseContainerDTO>> casesByUprn;
+
+  @Autowired
+  public RmCaseCache(AppConfig appConfig, MeterRegistry meterRegistry) {
+    this(appConfig.getRmCaseCacheSettings(), meterRegistry);
+  }
+
+  RmCaseCache(RmCaseCacheSettings settings, MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+    this.singleFlight = settings.isSingleFlight();
+    if (settings.isEnabled()) {
+      log.with("maximumSize", settings.getMaximumSize())
+          .with("timeToLiveSeconds", settings.getTimeToLiveSeconds())
+          .info("Caching cases read from RM");
+      casesById = createCache(settings, meterRegistry, BY_ID_CACHE_NAME);
+      casesByCaseRef = createCache(settings, meterRegistry, BY_CASE_REF_CACHE_NAME);
+      casesByUprn = createCache(settings, meterRegistry, BY_UPRN_CACHE_NAME);
+    } else {
+      casesById = null;
+      casesByCaseRef = null;
+      casesByUprn = null;
+    }
+  }
+
+  boolean isEnabled() {
+    return casesById != null;
+  }
+
+  /**
+   * Get a case by its id, calling RM if it is not cached.
+   *
+   * @param caseId of the case
+   * @param caseEvents whether RM is asked to include the case events
+   * @param rmCall the call to RM
+   * @return the case
+   */
+  CaseContainerDTO getCaseById(
+      UUID caseId, boolean caseEvents, Supplier<CaseContainerDTO> rmCall) {
+    return get(BY_ID_CACHE_NAME, casesById, new CaseKey(caseId, caseEvents), rmCall, this::copy);
+  }
+
+  /**
+   * Get a case by its case reference, calling RM if it is not cached.
+   *
+   * @param caseRef of the case
+   * @param caseEvents whether RM is asked to include the case events
+   * @param rmCall the call to RM
+   * @return the case
+   */
+  CaseContainerDTO getCaseByCaseRef(
+      long caseRef, boolean caseEvents, Supplier<CaseContainerDTO> rmCall) {
+    return get(
+        BY_CASE_REF_CACHE_NAME,
+        casesByCaseRef,
+        new CaseKey(caseRef, caseEvents),
+        rmCall,
+        this::copy);
+  }
+
+  /**
+   * Get the cases at a UPRN, calling RM if they are not cached.
+   *
+   * @param uprn of the address
+   * @param caseEvents whether RM is asked to include the case events
+   * @param rmCall the call to RM
+   * @return the cases
+   */
+  List<CaseContainerDTO> getCasesByUprn(
+      long uprn, boolean caseEvents, Supplier<List<CaseContainerDTO>> rmCall) {
+    return get(
+        BY_UPRN_CACHE_NAME,
+        casesByUprn,
+        new CaseKey(uprn, caseEvents),
+        () -> List.copyOf(rmCall.get()),
+        cases -> cases.stream().map(this::copy).collect(toList()));
+  }
+
+  /**
+   * Forget everything cached for a case, eg, because we have just published an event which will
+   * change it in RM.
+   *
+   * <p>Only this pod's cache is cleared. Other pods go on serving what they hold until it expires,
+   * which is why the time to live is kept short.
+   *
+   * @param caseId of the case
+   */
+  void evict(UUID caseId) {
+    RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+    if (requestAttributes != null) {
+      requestAttributes.removeAttribute(MEMO_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    }
+    if (!isEnabled()) {
+      return;
+    }
+    if (log.isDebugEnabled()) {
+      log.with("caseId", caseId).debug("Evicting case from RM case cache");
+    }
+    casesById.invalidate(new CaseKey(caseId, true));
+    casesById.invalidate(new CaseKey(caseId, false));
+    casesByCaseRef.asMap().values().removeIf(c -> caseId.equals(c.getId()));
+    casesByUprn
+        .asMap()
+        .values()
+        .removeIf(cases -> cases.stream().anyMatch(c -> caseId.equals(c.getId())));
+  }
+
+  /*
+   * Look in the memo for the current request first, then in the cache, and only then call RM.
+   * Anything held by the memo or the cache is shared, so the caller gets a copy of it.
+   */
+  @SuppressWarnings("unchecked")
+  private <V> V get(
+      String name,
+      Cache<CaseKey, V> cache,
+      CaseKey key,
+      Supplier<V> rmCall,
+      UnaryOperator<V> copier) {
+    Map<List<Object>, Object> memo = requestMemo();
+    List<Object> memoKey = List.of(name, key);
+    if (memo != null) {
+      V memoised = (V) memo.get(memoKey);
+      if (memoised != null) {
+        Counter.builder(AVOIDED_LOOKUP_COUNTER_NAME)
+            .description("Repeated case lookups answered from the memo for the current request")
+            .tag("cache", name)
+            .register(meterRegistry)
+            .increment();
+        return copier.apply(memoised);
+      }
+    }
+
+    Supplier<V> call = () -> singleFlight(name, key, rmCall, copier);
+    V value;
+    if (cache == null) {
+      value = call.get();
+    } else {
+      V cached = cache.getIfPresent(key);
+      if (cached != null) {
+        value = copier.apply(cached);
+      } else {
+        value = call.get();
+        if (value != null) {
+          cache.put(key, copier.apply(value));
+        }
+      }
+    }
+    if (memo != null && value != null) {
+      memo.put(memoKey, copier.apply(value));
+    }
+    return value;
+  }
+
+  /*
+   * Make the RM call, unless an identical call is already in flight in which case wait for its
+   * outcome instead. Every caller gets a result of its own to modify.
+   */
+  @SuppressWarnings("unchecked")
+  private <V> V singleFlight(
+      String name, CaseKey key, Supplier<V> rmCall, UnaryOperator<V> copier) {
+    if (!singleFlight) {
+      return rmCall.get();
+    }
+
+    List<Object> flightKey = List.of(name, key);
+    CompletableFuture<Object> flight = new CompletableFuture<>();
+    CompletableFuture<Object> inFlight = flights.putIfAbsent(flightKey, flight);
+    if (inFlight != null) {
+      countFlight(name, FOLLOWER);
+      V shared;
+      try {
+        shared = (V) inFlight.join();
+      } catch (CompletionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
+        }
+        throw e;
+      }
+      return shared == null ? null : copier.apply(shared);
+    }
+
+    countFlight(name, LEADER);
+    try {
+      V value = rmCall.get();
+      flights.remove(flightKey, flight);
+      flight.complete(value == null ? null : copier.apply(value));
+      return value;
+    } catch (RuntimeException | Error e) {
+      flights.remove(flightKey, flight);
+      flight.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private void countFlight(String name, String role) {
+    Counter.builder(SINGLE_FLIGHT_COUNTER_NAME)
+        .description("RM case lookups made (leader) or shared with an identical lookup (follower)")
+        .tag("cache", name)
+        .tag("role", role)
+        .register(meterRegistry)
+        .increment();
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<List<Object>, Object> requestMemo() {
+    RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+    if (requestAttributes == null) {
+      return null;
+    }
+    Map<List<Object>, Object> memo =
+        (Map<List<Object>, Object>)
+            requestAttributes.getAttribute(MEMO_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+    if (memo == null) {
+      memo = new ConcurrentHashMap<>();
+      requestAttributes.setAttribute(MEMO_ATTRIBUTE, memo, RequestAttributes.SCOPE_REQUEST);
+    }
+    return memo;
+  }
+
+  private CaseContainerDTO copy(CaseContainerDTO caze) {
+    return mapper.map(caze, CaseContainerDTO.class);
+  }
+
+  private static <V> Cache<CaseKey, V> createCache(
+      RmCaseCacheSettings settings, MeterRegistry meterRegistry, String name) {
+    Cache<CaseKey, V> cache =
+        Caffeine.newBuilder()
+            .maximumSize(settings.getMaximumSize())
+            .expireAfterWrite(settings.getTimeToLiveSeconds(), TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+    return CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+  }
+}
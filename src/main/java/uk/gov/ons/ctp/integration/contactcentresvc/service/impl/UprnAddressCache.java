@@ -0,0 +1,177 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.godaddy.logging.Logger;
+import com.godaddy.logging.LoggerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.Value;
+import ma.glasnost.orika.MapperFacade;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import uk.gov.ons.ctp.integration.contactcentresvc.CCSvcBeanMapper;
+import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexSearchResultsCompositeDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.UprnAddressCacheSettings;
+
+/**
+ * Cache of the results of looking up a UPRN in AI, as used to create a skeleton case for an
+ * address which has no case.
+ *
+ * <p>Entries are scoped by the configured AI epoch. A UPRN that AI does not know, whether reported
+ * by a Not Found response or by a 404 status in the response body, is cached too, but for a much
+ * shorter time, and each caller is given a new Not Found exception. Any other failure is not
+ * cached. Concurrent lookups of a UPRN which is not cached may each call AI.
+ *
+ * <p>Callers are free to modify what they are given, so each read hands out a copy of the cached
+ * result.
+ */
+@Component
+public class UprnAddressCache {
+  private static final Logger log = LoggerFactory.getLogger(UprnAddressCache.class);
+
+  static final String CACHE_NAME = "uprnAddress";
+
+  @Value
+  private static class UprnKey {
+    String epoch;
+    long uprn;
+  }
+
+  /** What AI said about a UPRN: either a result, or that it threw Not Found with a reason. */
+  @Value
+  private static class Outcome {
+    AddressIndexSearchResultsCompositeDTO result;
+    boolean notFound;
+    String notFoundReason;
+
+    boolean isFound() {
+      return !notFound && result.getStatus().getCode() == HttpStatus.OK.value();
+    }
+  }
+
+  private final MapperFacade mapper = new CCSvcBeanMapper();
+
+  private final String epoch;
+
+  // null when the cache is disabled
+  private final Cache<UprnKey, Outcome> outcomes;
+
+  @Autowired
+  public UprnAddressCache(AppConfig appConfig, MeterRegistry meterRegistry) {
+    this(
+        appConfig.getUprnAddressCacheSettings(),
+        appConfig.getAddressIndexSettings().getEpoch(),
+        meterRegistry);
+  }
+
+  UprnAddressCache(UprnAddressCacheSettings settings, String epoch, MeterRegistry meterRegistry) {
+    this.epoch = StringUtils.defaultString(epoch);
+    if (settings.isEnabled()) {
+      log.with("maximumSize", settings.getMaximumSize())
+          .with("timeToLiveMinutes", settings.getTimeToLiveMinutes())
+          .with("notFoundTimeToLiveSeconds", settings.getNotFoundTimeToLiveSeconds())
+          .with("epoch", epoch)
+          .info("Caching UPRN lookups");
+      long foundNanos = TimeUnit.MINUTES.toNanos(settings.getTimeToLiveMinutes());
+      long notFoundNanos = TimeUnit.SECONDS.toNanos(settings.getNotFoundTimeToLiveSeconds());
+      Cache<UprnKey, Outcome> cache =
+          Caffeine.newBuilder()
+              .maximumSize(settings.getMaximumSize())
+              .expireAfter(new OutcomeExpiry(foundNanos, notFoundNanos))
+              .recordStats()
+              .build();
+      this.outcomes = CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    } else {
+      this.outcomes = null;
+    }
+  }
+
+  /**
+   * Get the result of looking up a UPRN, asking AI if it is not cached.
+   *
+   * @param uprn of the address
+   * @param aiLookup the call to AI
+   * @return the result, which may carry a status other than OK
+   * @throws ResponseStatusException if AI failed, including a cached Not Found
+   */
+  AddressIndexSearchResultsCompositeDTO getAddress(
+      long uprn, Supplier<AddressIndexSearchResultsCompositeDTO> aiLookup) {
+    if (outcomes == null) {
+      return aiLookup.get();
+    }
+
+    UprnKey key = new UprnKey(epoch, uprn);
+    Outcome outcome = outcomes.getIfPresent(key);
+    if (outcome == null) {
+      return lookup(key, aiLookup);
+    }
+    if (outcome.isNotFound()) {
+      if (log.isDebugEnabled()) {
+        log.with("uprn", uprn).debug("UPRN not known to AI");
+      }
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, outcome.getNotFoundReason());
+    }
+    return mapper.map(outcome.getResult(), AddressIndexSearchResultsCompositeDTO.class);
+  }
+
+  /*
+   * Only OK and Not Found are worth remembering. Anything else, eg, too many requests, is handed
+   * back to the caller without being cached.
+   */
+  private AddressIndexSearchResultsCompositeDTO lookup(
+      UprnKey key, Supplier<AddressIndexSearchResultsCompositeDTO> aiLookup) {
+    AddressIndexSearchResultsCompositeDTO result;
+    try {
+      result = aiLookup.get();
+    } catch (ResponseStatusException e) {
+      if (e.getStatus() == HttpStatus.NOT_FOUND) {
+        outcomes.put(key, new Outcome(null, true, e.getReason()));
+      }
+      throw e;
+    }
+
+    int status = result.getStatus().getCode();
+    if (status == HttpStatus.OK.value() || status == HttpStatus.NOT_FOUND.value()) {
+      outcomes.put(
+          key,
+          new Outcome(
+              mapper.map(result, AddressIndexSearchResultsCompositeDTO.class), false, null));
+    }
+    return result;
+  }
+
+  private static class OutcomeExpiry implements Expiry<UprnKey, Outcome> {
+    private final long foundNanos;
+    private final long notFoundNanos;
+
+    OutcomeExpiry(long foundNanos, long notFoundNanos) {
+      this.foundNanos = foundNanos;
+      this.notFoundNanos = notFoundNanos;
+    }
+
+    @Override
+    public long expireAfterCreate(UprnKey key, Outcome outcome, long currentTime) {
+      return outcome.isFound() ? foundNanos : notFoundNanos;
+    }
+
+    @Override
+    public long expireAfterUpdate(
+        UprnKey key, Outcome outcome, long currentTime, long currentDuration) {
+      return expireAfterCreate(key, outcome, currentTime);
+    }
+
+    @Override
+    public long expireAfterRead(
+        UprnKey key, Outcome outcome, long currentTime, long currentDuration) {
+      return currentDuration;
+    }
+  }
+}
@@ -0,0 +1,42 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.util;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Output buffer which each thread keeps and reuses for the messages it encrypts, and whose contents
+ * can be read without being copied. The messages encrypted are names, so a buffer which has grown
+ * beyond what they need is dropped rather than kept.
+ */
+final class PgpBuffer extends ByteArrayOutputStream {
+  private static final int INITIAL_SIZE = 4 * 1024;
+  private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+  private PgpBuffer() {
+    super(INITIAL_SIZE);
+  }
+
+  /**
+   * Get this thread's buffer from a thread local, empty.
+   *
+   * @param buffers the thread local
+   * @return the buffer, which is only valid until the thread next gets it
+   */
+  static PgpBuffer get(ThreadLocal<PgpBuffer> buffers) {
+    PgpBuffer buffer = buffers.get();
+    if (buffer.buf.length > MAX_RETAINED_SIZE) {
+      buffer = new PgpBuffer();
+      buffers.set(buffer);
+    }
+    buffer.reset();
+    return buffer;
+  }
+
+  static ThreadLocal<PgpBuffer> threadLocal() {
+    return ThreadLocal.withInitial(PgpBuffer::new);
+  }
+
+  /** @return the array holding the contents, of which the first {@link #size()} bytes are valid */
+  byte[] array() {
+    return buf;
+  }
+}
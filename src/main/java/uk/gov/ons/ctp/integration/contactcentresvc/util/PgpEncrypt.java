@@ -1,10 +1,9 @@
 package uk.gov.ons.ctp.integration.contactcentresvc.util;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -27,55 +26,90 @@ import org.bouncycastle.openpgp.PGPUtil;
 import org.bouncycastle.openpgp.jcajce.JcaPGPPublicKeyRingCollection;
 import org.bouncycastle.openpgp.operator.jcajce.JcePGPDataEncryptorBuilder;
 import org.bouncycastle.openpgp.operator.jcajce.JcePublicKeyKeyEncryptionMethodGenerator;
-import org.bouncycastle.util.io.Streams;
 import org.springframework.core.io.Resource;
 
-/** PGP encryption using one or more ascii armoured public keys. */
+/**
+ * PGP encryption using one or more ascii armoured public keys.
+ *
+ * <p>Encrypting is done in buffers which each thread reuses, with randomness from one source seeded
+ * by the platform and shared by every thread.
+ */
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public final class PgpEncrypt {
-  private static final BouncyCastleProvider PROVIDER = new BouncyCastleProvider();
+  static final BouncyCastleProvider PROVIDER = new BouncyCastleProvider();
+
+  static final SecureRandom RANDOM = new SecureRandom();
+
+  private static final ThreadLocal<PgpBuffer> COMPRESSED = PgpBuffer.threadLocal();
+
+  // Holds the encrypted message until it has been made into a string
+  static final ThreadLocal<PgpBuffer> ENCRYPTED = PgpBuffer.threadLocal();
 
   public static String encrypt(String clearMsg, Collection<Resource> publicKeyResources) {
     try {
-      Collection<PGPPublicKey> publicPgpKeys = getPublicKeys(publicKeyResources);
-      byte[] encyptedFileContents = encrypt(publicPgpKeys, clearMsg);
-      return new String(encyptedFileContents);
+      return encryptWithKeys(clearMsg, readPublicKeys(publicKeyResources));
+    } catch (PGPException | IOException e) {
+      throw new RuntimeException("failed to encrypt contents", e);
+    }
+  }
+
+  /**
+   * Encrypt with keys which have already been read, which saves reading and parsing them for each
+   * message.
+   *
+   * @param clearMsg the message
+   * @param publicPgpKeys the keys, any of which can decrypt the message
+   * @return the ascii armoured encrypted message
+   */
+  public static String encryptWithKeys(String clearMsg, Collection<PGPPublicKey> publicPgpKeys) {
+    try {
+      return encrypt(publicPgpKeys, clearMsg);
     } catch (PGPException | IOException e) {
       throw new RuntimeException("failed to encrypt contents", e);
     }
   }
 
-  private static byte[] encrypt(Collection<PGPPublicKey> publicPgpKeys, String clearMsg)
+  /**
+   * Read the encryption key from each of a number of ascii armoured public keys.
+   *
+   * @param publicKeyResources the public keys
+   * @return the encryption keys
+   * @throws IOException if a key could not be read
+   * @throws PGPException if a key could not be parsed
+   */
+  public static Collection<PGPPublicKey> readPublicKeys(Collection<Resource> publicKeyResources)
+      throws IOException, PGPException {
+    var publicKeys = new ArrayList<PGPPublicKey>();
+    for (Resource resource : publicKeyResources) {
+      PGPPublicKey publicPgpKey = getPublicKey(resource);
+      publicKeys.add(publicPgpKey);
+    }
+    return publicKeys;
+  }
+
+  private static String encrypt(Collection<PGPPublicKey> publicPgpKeys, String clearMsg)
       throws IOException, PGPException {
-    final byte[] compressedContents = compress(clearMsg);
+    final PgpBuffer compressedContents = compress(clearMsg);
     final PGPEncryptedDataGenerator generator =
         new PGPEncryptedDataGenerator(
             new JcePGPDataEncryptorBuilder(SymmetricKeyAlgorithmTags.AES_256)
                 .setWithIntegrityPacket(true)
-                .setSecureRandom(new SecureRandom())
+                .setSecureRandom(RANDOM)
                 .setProvider(PROVIDER));
 
     for (PGPPublicKey publicKey : publicPgpKeys) {
       generator.addMethod(
-          new JcePublicKeyKeyEncryptionMethodGenerator(publicKey).setProvider(PROVIDER));
+          new JcePublicKeyKeyEncryptionMethodGenerator(publicKey)
+              .setProvider(PROVIDER)
+              .setSecureRandom(RANDOM));
     }
-    final ByteArrayOutputStream encryptedBytes = new ByteArrayOutputStream();
+    final PgpBuffer encryptedBytes = PgpBuffer.get(ENCRYPTED);
     try (OutputStream armoredOutputStream = new ArmoredOutputStream(encryptedBytes);
         OutputStream encryptedOut =
-            generator.open(armoredOutputStream, compressedContents.length)) {
-      encryptedOut.write(compressedContents);
-    }
-    return encryptedBytes.toByteArray();
-  }
-
-  private static Collection<PGPPublicKey> getPublicKeys(Collection<Resource> publicKeyResources)
-      throws IOException, PGPException {
-    var publicKeys = new ArrayList<PGPPublicKey>();
-    for (Resource resource : publicKeyResources) {
-      PGPPublicKey publicPgpKey = getPublicKey(resource);
-      publicKeys.add(publicPgpKey);
+            generator.open(armoredOutputStream, compressedContents.size())) {
+      encryptedOut.write(compressedContents.array(), 0, compressedContents.size());
     }
-    return publicKeys;
+    return encryptedBytes.toString(StandardCharsets.US_ASCII);
   }
 
   private static PGPPublicKey getPublicKey(Resource pgpKey) throws IOException, PGPException {
@@ -106,22 +140,25 @@ public final class PgpEncrypt {
     return key;
   }
 
-  private static byte[] compress(String clearMsg) throws IOException {
-    try (final ByteArrayInputStream inputStream = new ByteArrayInputStream(clearMsg.getBytes());
-        final ByteArrayOutputStream byteOutputStream = new ByteArrayOutputStream()) {
-      final PGPCompressedDataGenerator compressedDataGenerator =
-          new PGPCompressedDataGenerator(CompressionAlgorithmTags.ZIP);
-      final PGPLiteralDataGenerator literal = new PGPLiteralDataGenerator();
-      final OutputStream outputStream =
-          literal.open(
-              compressedDataGenerator.open(byteOutputStream),
-              PGPLiteralData.BINARY,
-              "filename",
-              inputStream.available(),
-              new Date());
-      Streams.pipeAll(inputStream, outputStream);
-      compressedDataGenerator.close();
-      return byteOutputStream.toByteArray();
-    }
+  /*
+   * The compressed message is left in this thread's buffer, where it is only valid until the
+   * thread next compresses a message.
+   */
+  static PgpBuffer compress(String clearMsg) throws IOException {
+    final byte[] clearBytes = clearMsg.getBytes(StandardCharsets.UTF_8);
+    final PgpBuffer byteOutputStream = PgpBuffer.get(COMPRESSED);
+    final PGPCompressedDataGenerator compressedDataGenerator =
+        new PGPCompressedDataGenerator(CompressionAlgorithmTags.ZIP);
+    final PGPLiteralDataGenerator literal = new PGPLiteralDataGenerator();
+    final OutputStream outputStream =
+        literal.open(
+            compressedDataGenerator.open(byteOutputStream),
+            PGPLiteralData.BINARY,
+            "filename",
+            clearBytes.length,
+            new Date());
+    outputStream.write(clearBytes);
+    compressedDataGenerator.close();
+    return byteOutputStream;
   }
 }
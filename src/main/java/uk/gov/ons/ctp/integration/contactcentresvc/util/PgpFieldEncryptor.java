@@ -0,0 +1,82 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import org.bouncycastle.bcpg.ArmoredOutputStream;
+import org.bouncycastle.bcpg.SymmetricKeyAlgorithmTags;
+import org.bouncycastle.openpgp.PGPEncryptedDataGenerator;
+import org.bouncycastle.openpgp.PGPException;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.bouncycastle.openpgp.operator.jcajce.JcePGPDataEncryptorBuilder;
+import org.bouncycastle.openpgp.operator.jcajce.JcePublicKeyKeyEncryptionMethodGenerator;
+
+/**
+ * Encrypts any number of values for the same PGP public keys, each as a message of its own, and
+ * gives each as Base64 of the ascii armoured message.
+ *
+ * <p>This is the same as Base64 encoding what {@link PgpEncrypt} gives, but the encryption is
+ * set up once for all the values rather than once for each, and the armoured message is written
+ * straight through the Base64 encoder rather than being made into a string first. An encryptor may
+ * be used by any number of threads at once.
+ */
+public final class PgpFieldEncryptor {
+
+  private final JcePGPDataEncryptorBuilder dataEncryptorBuilder;
+
+  private final List<JcePublicKeyKeyEncryptionMethodGenerator> methodGenerators;
+
+  /**
+   * Constructor.
+   *
+   * @param publicPgpKeys the keys, any of which can decrypt what is encrypted
+   */
+  public PgpFieldEncryptor(Collection<PGPPublicKey> publicPgpKeys) {
+    dataEncryptorBuilder =
+        new JcePGPDataEncryptorBuilder(SymmetricKeyAlgorithmTags.AES_256)
+            .setWithIntegrityPacket(true)
+            .setSecureRandom(PgpEncrypt.RANDOM)
+            .setProvider(PgpEncrypt.PROVIDER);
+    methodGenerators = new ArrayList<>(publicPgpKeys.size());
+    for (PGPPublicKey publicKey : publicPgpKeys) {
+      methodGenerators.add(
+          new JcePublicKeyKeyEncryptionMethodGenerator(publicKey)
+              .setProvider(PgpEncrypt.PROVIDER)
+              .setSecureRandom(PgpEncrypt.RANDOM));
+    }
+  }
+
+  /**
+   * Encrypt a value.
+   *
+   * @param clearValue the value, or null
+   * @return the Base64 encoded ascii armoured encrypted value, or null for a null value
+   */
+  public String encryptToBase64(String clearValue) {
+    if (clearValue == null) {
+      return null;
+    }
+    try {
+      PgpBuffer compressedContents = PgpEncrypt.compress(clearValue);
+      // a fresh generator for each value, as each has its own session key
+      PGPEncryptedDataGenerator generator = new PGPEncryptedDataGenerator(dataEncryptorBuilder);
+      methodGenerators.forEach(generator::addMethod);
+
+      PgpBuffer base64Bytes = PgpBuffer.get(PgpEncrypt.ENCRYPTED);
+      // closed in reverse, and closing the armour leaves the Base64 encoder to be closed itself
+      try (OutputStream base64Out = Base64.getEncoder().wrap(base64Bytes);
+          OutputStream armoredOutputStream = new ArmoredOutputStream(base64Out);
+          OutputStream encryptedOut =
+              generator.open(armoredOutputStream, compressedContents.size())) {
+        encryptedOut.write(compressedContents.array(), 0, compressedContents.size());
+      }
+      return base64Bytes.toString(StandardCharsets.US_ASCII);
+    } catch (PGPException | IOException e) {
+      throw new RuntimeException("failed to encrypt contents", e);
+    }
+  }
+}
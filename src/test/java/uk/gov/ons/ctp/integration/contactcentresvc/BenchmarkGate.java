@@ -0,0 +1,176 @@
+package uk.gov.ons.ctp.integration.contactcentresvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks, which are the test classes named *Benchmark, writes their results as JSON,
+ * and fails if any score has regressed from the recorded baseline by more than is allowed. It is
+ * run by the jmh profile:
+ *
+ * <pre>
+ * mvn -Pjmh verify
+ * mvn -Pjmh verify -Djmh.include=CaseServiceImplBenchmark -Djmh.maxRegression=0.25
+ * mvn -Pjmh verify -Djmh.recordBaseline=true
+ * </pre>
+ *
+ * <p>Scores are only comparable when taken on the same kind of machine, so the baseline should be
+ * recorded by the build which is gated on it. Recording the baseline replaces the scores of the
+ * benchmarks which were run and keeps the rest. A benchmark with no baseline score fails the gate
+ * until one is recorded, so that a missing baseline cannot pass unnoticed.
+ */
+public class BenchmarkGate {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  public static void main(String[] args) throws Exception {
+    String include = System.getProperty("jmh.include", "Benchmark");
+    Path result = Paths.get(System.getProperty("jmh.result", "target/jmh-result.json"));
+    Path baseline = Paths.get(System.getProperty("jmh.baseline", "jmh-baseline.json"));
+    double maxRegression = Double.parseDouble(System.getProperty("jmh.maxRegression", "0.15"));
+    boolean recordBaseline = Boolean.getBoolean("jmh.recordBaseline");
+
+    Files.createDirectories(result.toAbsolutePath().getParent());
+    Options options =
+        new OptionsBuilder()
+            .include(include)
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result(result.toString())
+            .build();
+    new Runner(options).run();
+
+    JsonNode results = MAPPER.readTree(result.toFile());
+    JsonNode baselineResults =
+        Files.exists(baseline) ? MAPPER.readTree(baseline.toFile()) : MAPPER.createArrayNode();
+
+    if (recordBaseline) {
+      MAPPER
+          .writerWithDefaultPrettyPrinter()
+          .writeValue(baseline.toFile(), merge(baselineResults, results));
+      System.out.println("Recorded baseline in " + baseline);
+      return;
+    }
+
+    List<String> missing = missing(baselineResults, results);
+    if (!missing.isEmpty()) {
+      System.out.println("Benchmarks with no baseline, record one with -Djmh.recordBaseline=true:");
+      missing.forEach(m -> System.out.println("  " + m));
+      System.exit(1);
+    }
+
+    List<String> regressions = regressions(baselineResults, results, maxRegression);
+    if (!regressions.isEmpty()) {
+      System.out.println("Benchmarks regressed by more than " + percent(maxRegression) + ":");
+      regressions.forEach(r -> System.out.println("  " + r));
+      System.exit(1);
+    }
+    System.out.println("No benchmark regressed by more than " + percent(maxRegression));
+  }
+
+  /**
+   * Find the benchmark results which have no baseline to compare with.
+   *
+   * @param baseline JMH results recorded earlier
+   * @param results JMH results
+   * @return the name of each result with no baseline score
+   */
+  static List<String> missing(JsonNode baseline, JsonNode results) {
+    Map<String, JsonNode> baselineResults = byKey(baseline);
+    List<String> missing = new ArrayList<>();
+    for (JsonNode result : results) {
+      String key = key(result);
+      if (!baselineResults.containsKey(key)) {
+        missing.add(key);
+      }
+    }
+    return missing;
+  }
+
+  /**
+   * Compare benchmark results with a baseline.
+   *
+   * @param baseline JMH results recorded earlier
+   * @param results JMH results
+   * @param maxRegression the largest allowed regression, as a fraction of the baseline score
+   * @return a description of each result which regressed by more than allowed, which excludes
+   *     those with no baseline score
+   */
+  static List<String> regressions(JsonNode baseline, JsonNode results, double maxRegression) {
+    Map<String, JsonNode> baselineResults = byKey(baseline);
+    List<String> regressions = new ArrayList<>();
+    for (JsonNode result : results) {
+      String key = key(result);
+      JsonNode baselineResult = baselineResults.get(key);
+      if (baselineResult == null) {
+        continue;
+      }
+      double score = score(result);
+      double baselineScore = score(baselineResult);
+      // Throughput is better when higher, and every other mode measures time
+      double regression =
+          "thrpt".equals(result.path("mode").asText())
+              ? (baselineScore - score) / baselineScore
+              : (score - baselineScore) / baselineScore;
+      if (regression > maxRegression) {
+        regressions.add(
+            String.format(
+                "%s scored %.3f %s against a baseline of %.3f, a regression of %s",
+                key,
+                score,
+                result.path("primaryMetric").path("scoreUnit").asText(),
+                baselineScore,
+                percent(regression)));
+      }
+    }
+    return regressions;
+  }
+
+  static JsonNode merge(JsonNode baseline, JsonNode results) {
+    Map<String, JsonNode> merged = byKey(baseline);
+    merged.putAll(byKey(results));
+    ArrayNode array = MAPPER.createArrayNode();
+    merged.values().forEach(array::add);
+    return array;
+  }
+
+  private static Map<String, JsonNode> byKey(JsonNode results) {
+    Map<String, JsonNode> byKey = new LinkedHashMap<>();
+    results.forEach(r -> byKey.put(key(r), r));
+    return byKey;
+  }
+
+  // A benchmark is run once for each combination of its parameters, and each is scored separately
+  private static String key(JsonNode result) {
+    Map<String, String> params = new TreeMap<>();
+    Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+    fields.forEachRemaining(f -> params.put(f.getKey(), f.getValue().asText()));
+    return result.path("benchmark").asText()
+        + " "
+        + result.path("mode").asText()
+        + (params.isEmpty() ? "" : " " + params);
+  }
+
+  private static double score(JsonNode result) {
+    return result.path("primaryMetric").path("score").asDouble();
+  }
+
+  private static String percent(double fraction) {
+    return String.format("%.0f%%", fraction * 100);
+  }
+}
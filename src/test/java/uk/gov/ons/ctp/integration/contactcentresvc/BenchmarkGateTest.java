@@ -0,0 +1,94 @@
+package uk.gov.ons.ctp.integration.contactcentresvc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.List;
+import org.junit.Test;
+
+public class BenchmarkGateTest {
+
+  private ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  public void shouldPassScoresWithinAllowedRegression() throws Exception {
+    JsonNode baseline = results(result("a.B.time", "avgt", 100.0, ""));
+    JsonNode results = results(result("a.B.time", "avgt", 114.0, ""));
+
+    assertTrue(BenchmarkGate.regressions(baseline, results, 0.15).isEmpty());
+  }
+
+  @Test
+  public void shouldFailSlowerTime() throws Exception {
+    JsonNode baseline = results(result("a.B.time", "avgt", 100.0, ""));
+    JsonNode results = results(result("a.B.time", "avgt", 120.0, ""));
+
+    List<String> regressions = BenchmarkGate.regressions(baseline, results, 0.15);
+
+    assertEquals(1, regressions.size());
+    assertTrue(regressions.get(0), regressions.get(0).startsWith("a.B.time avgt scored 120.000"));
+  }
+
+  @Test
+  public void shouldFailLowerThroughput() throws Exception {
+    JsonNode baseline = results(result("a.B.ops", "thrpt", 100.0, ""));
+    JsonNode faster = results(result("a.B.ops", "thrpt", 200.0, ""));
+    JsonNode slower = results(result("a.B.ops", "thrpt", 80.0, ""));
+
+    assertTrue(BenchmarkGate.regressions(baseline, faster, 0.15).isEmpty());
+    assertEquals(1, BenchmarkGate.regressions(baseline, slower, 0.15).size());
+  }
+
+  @Test
+  public void shouldCompareEachParameterCombinationSeparately() throws Exception {
+    JsonNode baseline =
+        results(
+            result("a.B.time", "avgt", 100.0, "{\"size\":\"100\"}"),
+            result("a.B.time", "avgt", 1000.0, "{\"size\":\"1000\"}"));
+    JsonNode results =
+        results(
+            result("a.B.time", "avgt", 1000.0, "{\"size\":\"1000\"}"),
+            result("a.B.time", "avgt", 200.0, "{\"size\":\"100\"}"));
+
+    List<String> regressions = BenchmarkGate.regressions(baseline, results, 0.15);
+
+    assertEquals(1, regressions.size());
+    assertTrue(regressions.get(0), regressions.get(0).contains("{size=100}"));
+  }
+
+  @Test
+  public void shouldReportBenchmarkWithoutBaseline() throws Exception {
+    JsonNode baseline = results(result("a.B.time", "avgt", 100.0, ""));
+    JsonNode results =
+        results(result("a.B.time", "avgt", 100.0, ""), result("a.B.other", "avgt", 1000.0, ""));
+
+    assertEquals(List.of("a.B.other avgt"), BenchmarkGate.missing(baseline, results));
+    assertTrue(BenchmarkGate.regressions(baseline, results, 0.15).isEmpty());
+  }
+
+  @Test
+  public void shouldReplaceBaselineScoresOfBenchmarksRun() throws Exception {
+    JsonNode baseline =
+        results(result("a.B.time", "avgt", 100.0, ""), result("a.B.other", "avgt", 50.0, ""));
+    JsonNode results = results(result("a.B.time", "avgt", 120.0, ""));
+
+    JsonNode merged = BenchmarkGate.merge(baseline, results);
+
+    assertEquals(
+        results(result("a.B.time", "avgt", 120.0, ""), result("a.B.other", "avgt", 50.0, "")),
+        merged);
+  }
+
+  private JsonNode results(String... results) throws Exception {
+    return mapper.readTree("[" + String.join(",", results) + "]");
+  }
+
+  private String result(String benchmark, String mode, double score, String params) {
+    return String.format(
+        "{\"benchmark\":\"%s\",\"mode\":\"%s\",%s\"primaryMetric\":"
+            + "{\"score\":%s,\"scoreUnit\":\"us/op\"}}",
+        benchmark, mode, params.isEmpty() ? "" : "\"params\":" + params + ",", score);
+  }
+}
@@ -3,6 +3,7 @@ package uk.gov.ons.ctp.integration.contactcentresvc.endpoint;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static uk.gov.ons.ctp.common.MvcHelper.getJson;
@@ -30,6 +31,7 @@ import uk.gov.ons.ctp.common.jackson.CustomObjectMapper;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseEventDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.service.CaseService;
+import uk.gov.ons.ctp.integration.contactcentresvc.service.CasesAtAddress;
 
 /**
  * Contact Centre Data Endpoint Unit tests. This class tests the get case endpoints, covering gets
@@ -134,7 +136,8 @@ public final class CaseEndpointGetCaseTest {
     testCases.add(createResponseCaseDTO());
     testCases.add(createResponseCaseDTO());
     UniquePropertyReferenceNumber expectedUprn = new UniquePropertyReferenceNumber(123456789012L);
-    Mockito.when(caseService.getCaseByUPRN(eq(expectedUprn), any())).thenReturn(testCases);
+    Mockito.when(caseService.getCaseByUPRN(eq(expectedUprn), any()))
+        .thenReturn(new CasesAtAddress(testCases, false));
 
     ResultActions actions = mockMvc.perform(getJson("/cases/uprn/123456789012"));
     actions.andExpect(status().isOk());
@@ -142,6 +145,29 @@ public final class CaseEndpointGetCaseTest {
     verifyStructureOfMultiResultsActions(actions);
   }
 
+  @Test
+  public void getCaseByUprn_CompleteHasNoPartialHeader() throws Exception {
+    UniquePropertyReferenceNumber expectedUprn = new UniquePropertyReferenceNumber(123456789012L);
+    Mockito.when(caseService.getCaseByUPRN(eq(expectedUprn), any()))
+        .thenReturn(new CasesAtAddress(List.of(createResponseCaseDTO()), false));
+
+    ResultActions actions = mockMvc.perform(getJson("/cases/uprn/123456789012"));
+    actions.andExpect(status().isOk());
+    actions.andExpect(header().doesNotExist(CaseEndpoint.PARTIAL_RESPONSE_HEADER));
+  }
+
+  @Test
+  public void getCaseByUprn_PartialHasPartialHeader() throws Exception {
+    UniquePropertyReferenceNumber expectedUprn = new UniquePropertyReferenceNumber(123456789012L);
+    Mockito.when(caseService.getCaseByUPRN(eq(expectedUprn), any()))
+        .thenReturn(new CasesAtAddress(List.of(createResponseCaseDTO()), true));
+
+    ResultActions actions = mockMvc.perform(getJson("/cases/uprn/123456789012"));
+    actions.andExpect(status().isOk());
+    actions.andExpect(header().string(CaseEndpoint.PARTIAL_RESPONSE_HEADER, "true"));
+    actions.andExpect(jsonPath("$[0].id", is(CASE_UUID_STRING)));
+  }
+
   @Test
   public void getCaseByUprn_UPRNTooLong() throws Exception {
     ResultActions actions = mockMvc.perform(getJson("/cases/uprn/123456789012345"));
@@ -160,7 +186,8 @@ public final class CaseEndpointGetCaseTest {
     testCases.add(createResponseCaseDTO());
     testCases.add(createResponseCaseDTO());
     UniquePropertyReferenceNumber expectedUprn = new UniquePropertyReferenceNumber(123456789012L);
-    Mockito.when(caseService.getCaseByUPRN(eq(expectedUprn), any())).thenReturn(testCases);
+    Mockito.when(caseService.getCaseByUPRN(eq(expectedUprn), any()))
+        .thenReturn(new CasesAtAddress(testCases, false));
 
     ResultActions actions = mockMvc.perform(getJson("/cases/uprn/123456789012?caseEvents=1"));
     actions.andExpect(status().isOk());
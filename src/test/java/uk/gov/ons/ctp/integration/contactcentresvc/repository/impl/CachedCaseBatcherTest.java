@@ -0,0 +1,143 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseWriteBatchSettings;
+
+public class CachedCaseBatcherTest {
+
+  private ExecutorService executor = Executors.newCachedThreadPool();
+
+  // the batches which have been written
+  private List<List<CachedCase>> batches = Collections.synchronizedList(new ArrayList<>());
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  private CachedCaseBatcher createBatcher(
+      int maxBatchSize, long maxDelayMillis, CachedCaseBatcher.BatchWriter writer) {
+    CaseWriteBatchSettings settings = new CaseWriteBatchSettings();
+    settings.setEnabled(true);
+    settings.setMaxBatchSize(maxBatchSize);
+    settings.setMaxDelayMillis(maxDelayMillis);
+    return new CachedCaseBatcher(settings, writer);
+  }
+
+  @Test
+  public void shouldWriteLoneCaseOnceDelayIsUp() throws Exception {
+    CachedCaseBatcher batcher = createBatcher(100, 10, batches::add);
+    CachedCase caze = caze("1");
+
+    batcher.write(caze);
+
+    assertEquals(List.of(List.of(caze)), batches);
+  }
+
+  @Test
+  public void shouldWriteConcurrentCasesInOneBatch() throws Exception {
+    // the delay is long enough that only a full batch will be written
+    CachedCaseBatcher batcher = createBatcher(5, 60000, batches::add);
+    Set<CachedCase> cases = new HashSet<>();
+    List<Future<?>> writes = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      CachedCase caze = caze(Integer.toString(i));
+      cases.add(caze);
+      writes.add(executor.submit(() -> write(batcher, caze)));
+    }
+
+    for (Future<?> write : writes) {
+      write.get(10, TimeUnit.SECONDS);
+    }
+
+    assertEquals(1, batches.size());
+    assertEquals(cases, new HashSet<>(batches.get(0)));
+  }
+
+  @Test
+  public void shouldFailEveryWriteInFailedBatch() throws Exception {
+    CTPException failure = new CTPException(Fault.SYSTEM_ERROR, "Firestore unavailable");
+    CachedCaseBatcher batcher =
+        createBatcher(
+            3,
+            60000,
+            cases -> {
+              batches.add(cases);
+              throw failure;
+            });
+    List<Future<?>> writes = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      CachedCase caze = caze(Integer.toString(i));
+      writes.add(executor.submit(() -> write(batcher, caze)));
+    }
+
+    for (Future<?> write : writes) {
+      ExecutionException e =
+          assertThrows(ExecutionException.class, () -> write.get(10, TimeUnit.SECONDS));
+      assertSame(failure, e.getCause());
+    }
+    assertEquals(1, batches.size());
+  }
+
+  @Test
+  public void shouldFailEveryWriteInBatchWhenWriterThrowsError() throws Exception {
+    Error failure = new OutOfMemoryError("Java heap space");
+    CachedCaseBatcher batcher =
+        createBatcher(
+            3,
+            60000,
+            cases -> {
+              throw failure;
+            });
+    List<Future<?>> writes = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      CachedCase caze = caze(Integer.toString(i));
+      writes.add(executor.submit(() -> write(batcher, caze)));
+    }
+
+    for (Future<?> write : writes) {
+      ExecutionException e =
+          assertThrows(ExecutionException.class, () -> write.get(10, TimeUnit.SECONDS));
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  @Test
+  public void shouldWriteNextBatchSeparately() throws Exception {
+    CachedCaseBatcher batcher = createBatcher(100, 0, batches::add);
+    CachedCase case1 = caze("1");
+    CachedCase case2 = caze("2");
+
+    batcher.write(case1);
+    batcher.write(case2);
+
+    assertEquals(List.of(List.of(case1), List.of(case2)), batches);
+  }
+
+  private Void write(CachedCaseBatcher batcher, CachedCase caze) throws CTPException {
+    batcher.write(caze);
+    return null;
+  }
+
+  private CachedCase caze(String id) {
+    return CachedCase.builder().id(id).uprn("100041045018").build();
+  }
+}
@@ -0,0 +1,202 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseReadCacheSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseEventDTO;
+
+public class CachedCaseReadCacheTest {
+
+  private static final String UPRN = "100041045018";
+  private static final String OTHER_UPRN = "100041045019";
+
+  private AtomicInteger reads = new AtomicInteger();
+
+  private CachedCaseReadCache createCache(boolean enabled, long notFoundTimeToLiveSeconds) {
+    CaseReadCacheSettings settings = new CaseReadCacheSettings();
+    settings.setEnabled(enabled);
+    settings.setNotFoundTimeToLiveSeconds(notFoundTimeToLiveSeconds);
+    return new CachedCaseReadCache(settings, new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void shouldReadEveryTimeWhenDisabled() throws Exception {
+    CachedCaseReadCache cache = createCache(false, 5);
+    CachedCase caze = caze("1", UPRN);
+
+    cache.getById("1", readById(caze));
+    cache.getById("1", readById(caze));
+    cache.getByUprn(UPRN, readByUprn(caze));
+    cache.put(caze);
+    cache.getByUprn(UPRN, readByUprn(caze));
+
+    assertEquals(4, reads.get());
+  }
+
+  @Test
+  public void shouldCacheFoundCaseAndHandOutCopies() throws Exception {
+    CachedCaseReadCache cache = createCache(true, 5);
+    CachedCase caze = caze("1", UPRN);
+
+    Optional<CachedCase> first = cache.getById("1", readById(caze));
+    first.get().setAddressLine1("modified");
+    Optional<CachedCase> second = cache.getById("1", readById(caze));
+
+    assertEquals(1, reads.get());
+    assertNotSame(first.get(), second.get());
+    assertEquals(caze("1", UPRN), second.get());
+  }
+
+  @Test
+  public void shouldCacheNotFound() throws Exception {
+    CachedCaseReadCache cache = createCache(true, 5);
+
+    assertTrue(cache.getByUprn(UPRN, readByUprn()).isEmpty());
+    assertTrue(cache.getByUprn(UPRN, readByUprn(caze("1", UPRN))).isEmpty());
+    assertEquals(Optional.empty(), cache.getById("1", readById(null)));
+    assertEquals(Optional.empty(), cache.getById("1", readById(caze("1", UPRN))));
+
+    assertEquals(2, reads.get());
+  }
+
+  @Test
+  public void shouldNotCacheNotFoundWithoutTimeToLive() throws Exception {
+    CachedCaseReadCache cache = createCache(true, 0);
+    CachedCase caze = caze("1", UPRN);
+
+    assertTrue(cache.getByUprn(UPRN, readByUprn()).isEmpty());
+    assertTrue(cache.getByUprnWithoutEvents(UPRN, readByUprn()).isEmpty());
+    assertEquals(Optional.empty(), cache.getById("1", readById(null)));
+    assertEquals(Optional.empty(), cache.getByIdWithoutEvents("1", readById(null)));
+
+    assertEquals(List.of(caze), cache.getByUprn(UPRN, readByUprn(caze)));
+    assertEquals(Optional.of(caze), cache.getById("1", readById(caze)));
+    assertEquals(6, reads.get());
+  }
+
+  @Test
+  public void shouldForgetNotFoundSoonerThanFound() throws Exception {
+    CachedCaseReadCache cache = createCache(true, 0);
+    CachedCase caze = caze("1", UPRN);
+
+    cache.getByUprn(UPRN, readByUprn());
+    cache.getByUprn(UPRN, readByUprn(caze));
+    assertEquals(2, reads.get());
+
+    assertEquals(List.of(caze), cache.getByUprn(UPRN, readByUprn()));
+    assertEquals(2, reads.get());
+  }
+
+  @Test
+  public void shouldUpdateCachedCasesOnWrite() throws Exception {
+    CachedCaseReadCache cache = createCache(true, 5);
+    CachedCase case1 = caze("1", UPRN);
+    CachedCase case2 = caze("2", UPRN);
+    CachedCase modifiedCase1 = caze("1", UPRN);
+    modifiedCase1.setAddressLine1("modified");
+    cache.getByUprn(UPRN, readByUprn(case1));
+    cache.getByUprn(OTHER_UPRN, readByUprn());
+
+    cache.put(modifiedCase1);
+    cache.put(case2);
+
+    assertEquals(List.of(modifiedCase1, case2), cache.getByUprn(UPRN, readByUprn()));
+    assertEquals(Optional.of(case2), cache.getById("2", readById(null)));
+    assertTrue(cache.getByUprn(OTHER_UPRN, readByUprn(case1)).isEmpty());
+    assertEquals(2, reads.get());
+  }
+
+  @Test
+  public void shouldForgetCasesForOldUprnWhenCaseMoves() throws Exception {
+    CachedCaseReadCache cache = createCache(true, 5);
+    CachedCase caze = caze("1", UPRN);
+    cache.put(caze);
+    cache.getByUprn(UPRN, readByUprn(caze));
+
+    cache.put(caze("1", OTHER_UPRN));
+
+    assertTrue(cache.getByUprn(UPRN, readByUprn()).isEmpty());
+    assertEquals(2, reads.get());
+  }
+
+  @Test
+  public void shouldAnswerReadWithoutEventsFromCachedCase() throws Exception {
+    CachedCaseReadCache cache = createCache(true, 5);
+    CachedCase caze = caze("1", UPRN);
+    caze.setCaseEvents(List.of(CaseEventDTO.builder().description("Initial creation").build()));
+    cache.getById("1", readById(caze));
+    cache.getByUprn(UPRN, readByUprn(caze));
+
+    Optional<CachedCase> byId = cache.getByIdWithoutEvents("1", readById(null));
+    List<CachedCase> byUprn = cache.getByUprnWithoutEvents(UPRN, readByUprn());
+
+    assertEquals(2, reads.get());
+    assertTrue(byId.get().getCaseEvents().isEmpty());
+    assertTrue(byUprn.get(0).getCaseEvents().isEmpty());
+    assertEquals(1, cache.getById("1", readById(null)).get().getCaseEvents().size());
+  }
+
+  @Test
+  public void shouldOnlyCacheNotFoundFromReadWithoutEvents() throws Exception {
+    CachedCaseReadCache cache = createCache(true, 5);
+    CachedCase caze = caze("1", UPRN);
+
+    cache.getByIdWithoutEvents("1", readById(caze));
+    cache.getByUprnWithoutEvents(OTHER_UPRN, readByUprn());
+    cache.getById("1", readById(caze));
+    cache.getByUprn(OTHER_UPRN, readByUprn(caze));
+
+    assertEquals(3, reads.get());
+  }
+
+  @Test
+  public void shouldNotCacheFailedRead() throws Exception {
+    CachedCaseReadCache cache = createCache(true, 5);
+    CTPException failure = new CTPException(Fault.SYSTEM_ERROR, "Firestore unavailable");
+
+    CTPException e =
+        assertThrows(
+            CTPException.class,
+            () ->
+                cache.getById(
+                    "1",
+                    () -> {
+                      reads.incrementAndGet();
+                      throw failure;
+                    }));
+    cache.getById("1", readById(caze("1", UPRN)));
+
+    assertSame(failure, e);
+    assertEquals(2, reads.get());
+  }
+
+  private CachedCaseReadCache.Loader<Optional<CachedCase>> readById(CachedCase caze) {
+    return () -> {
+      reads.incrementAndGet();
+      return Optional.ofNullable(caze);
+    };
+  }
+
+  private CachedCaseReadCache.Loader<List<CachedCase>> readByUprn(CachedCase... cases) {
+    return () -> {
+      reads.incrementAndGet();
+      return List.of(cases);
+    };
+  }
+
+  private CachedCase caze(String id, String uprn) {
+    return CachedCase.builder().id(id).uprn(uprn).addressLine1("1 High Street").build();
+  }
+}
@@ -0,0 +1,136 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseUprnFilterSettings;
+
+public class CachedCaseUprnFilterTest {
+
+  private static final String UPRN = "100041045018";
+  private static final String OTHER_UPRN = "100041045019";
+
+  private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  // what is in the store
+  private List<Object> storedUprns = new ArrayList<>();
+
+  private boolean storeAvailable = true;
+
+  private CachedCaseUprnFilter filter;
+
+  private CachedCaseUprnFilter createFilter() {
+    CaseUprnFilterSettings settings = new CaseUprnFilterSettings();
+    settings.setEnabled(true);
+    settings.setExpectedUprns(1000);
+    return new CachedCaseUprnFilter(
+        settings,
+        consumer -> {
+          if (!storeAvailable) {
+            throw new CTPException(Fault.SYSTEM_ERROR, "Firestore unavailable");
+          }
+          storedUprns.forEach(consumer);
+          // a write made while the filter is being built
+          filter.add(OTHER_UPRN);
+        },
+        meterRegistry);
+  }
+
+  @Test
+  public void shouldRuleOutNothingUntilBuilt() {
+    filter = createFilter();
+
+    assertTrue(filter.mightContain(UPRN));
+    assertTrue(Double.isNaN(falsePositiveRate()));
+  }
+
+  @Test
+  public void shouldRuleOutUprnsWithoutCases() {
+    storedUprns.add(UPRN);
+    storedUprns.add(null);
+    filter = createFilter();
+
+    filter.build();
+
+    assertTrue(filter.mightContain(UPRN));
+    assertTrue(filter.mightContain(OTHER_UPRN));
+    assertFalse(filter.mightContain("100041045020"));
+    assertTrue(filter.mightContain("not a uprn"));
+    assertTrue(falsePositiveRate() < 0.01);
+  }
+
+  @Test
+  public void shouldAddUprnRuledOutWhichHasCase() {
+    filter = createFilter();
+    filter.build();
+    assertFalse(filter.mightContain("100041045020"));
+    assertFalse(filter.mightContain("100041045021"));
+
+    filter.confirmed("100041045020", true);
+    filter.confirmed("100041045021", false);
+
+    assertTrue(filter.mightContain("100041045020"));
+    assertFalse(filter.mightContain("100041045021"));
+    assertEquals(1.0, searches(CachedCaseUprnFilter.MISSED), 0.0);
+    assertEquals(1.0, searches(CachedCaseUprnFilter.SKIPPED), 0.0);
+  }
+
+  @Test
+  public void shouldAddWrittenUprns() {
+    filter = createFilter();
+    filter.build();
+    assertFalse(filter.mightContain("100041045020"));
+
+    filter.add("100041045020");
+
+    assertTrue(filter.mightContain("100041045020"));
+  }
+
+  @Test
+  public void shouldRuleOutNothingUntilFailedBuildSucceeds() {
+    storedUprns.add(UPRN);
+    filter = createFilter();
+
+    storeAvailable = false;
+    assertFalse(filter.build());
+    assertTrue(filter.mightContain("100041045020"));
+
+    storeAvailable = true;
+    assertTrue(filter.build());
+    assertTrue(filter.mightContain(UPRN));
+    assertFalse(filter.mightContain("100041045020"));
+  }
+
+  @Test
+  public void shouldCountSearchOutcomes() {
+    filter = createFilter();
+    filter.searched(false);
+    filter.build();
+
+    filter.searched(true);
+    filter.searched(false);
+    filter.searched(false);
+
+    assertEquals(1.0, searches(CachedCaseUprnFilter.FOUND), 0.0);
+    assertEquals(2.0, searches(CachedCaseUprnFilter.FALSE_POSITIVE), 0.0);
+  }
+
+  private double searches(String outcome) {
+    return meterRegistry
+        .get(CachedCaseUprnFilter.SEARCH_COUNTER_NAME)
+        .tag("outcome", outcome)
+        .counter()
+        .count();
+  }
+
+  private double falsePositiveRate() {
+    return meterRegistry.get(CachedCaseUprnFilter.FALSE_POSITIVE_RATE_GAUGE_NAME).gauge().value();
+  }
+}
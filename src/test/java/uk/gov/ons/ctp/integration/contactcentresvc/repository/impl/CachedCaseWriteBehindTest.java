@@ -0,0 +1,203 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseWriteBehindSettings;
+
+public class CachedCaseWriteBehindTest {
+
+  private static final String UPRN = "100041045018";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  // what has been written to the store
+  private List<CachedCase> stored = new ArrayList<>();
+
+  // the size of each batch written
+  private List<Integer> batchSizes = new ArrayList<>();
+
+  private boolean storeAvailable = true;
+
+  private List<CachedCaseWriteBehind> started = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    storeAvailable = true;
+    started.forEach(CachedCaseWriteBehind::shutdown);
+  }
+
+  private CachedCaseWriteBehind createWriteBehind(int queueCapacity) throws Exception {
+    CaseWriteBehindSettings settings = new CaseWriteBehindSettings();
+    settings.setEnabled(true);
+    settings.setQueueCapacity(queueCapacity);
+    settings.setBatchSize(2);
+    settings.setFlushIntervalMillis(3600000);
+    settings.setSpillDirectory(folder.getRoot().getPath());
+    CachedCaseWriteBehind writeBehind =
+        new CachedCaseWriteBehind(settings, this::store, meterRegistry);
+    writeBehind.start();
+    started.add(writeBehind);
+    return writeBehind;
+  }
+
+  @Test
+  public void shouldWriteQueuedCasesWhenFlushed() throws Exception {
+    CachedCaseWriteBehind writeBehind = createWriteBehind(10);
+    CachedCase case1 = caze("1", "one");
+    CachedCase case2 = caze("2", "two");
+    CachedCase case3 = caze("3", "three");
+
+    writeBehind.write(case1);
+    writeBehind.write(case2);
+    writeBehind.write(case3);
+    assertTrue(stored.isEmpty());
+
+    writeBehind.flush();
+    assertEquals(List.of(case1, case2, case3), stored);
+    assertEquals(List.of(2, 1), batchSizes);
+    assertEquals(Optional.empty(), writeBehind.read("1"));
+  }
+
+  @Test
+  public void shouldServeUnwrittenCases() throws Exception {
+    CachedCaseWriteBehind writeBehind = createWriteBehind(10);
+    CachedCase unwritten = caze("1", "new address");
+    CachedCase storedCase = caze("2", "stored");
+    CachedCase newerVersion = caze("2", "modified");
+
+    writeBehind.write(unwritten);
+    writeBehind.write(newerVersion);
+
+    assertEquals(Optional.of(unwritten), writeBehind.read("1"));
+    assertEquals(List.of(newerVersion, unwritten), writeBehind.read(UPRN, List.of(storedCase)));
+    assertEquals(List.of(storedCase), writeBehind.read("999", List.of(storedCase)));
+  }
+
+  @Test
+  public void shouldOnlyWriteLatestVersionOfCase() throws Exception {
+    CachedCaseWriteBehind writeBehind = createWriteBehind(10);
+    CachedCase original = caze("1", "original");
+    CachedCase modified = caze("1", "modified");
+
+    writeBehind.write(original);
+    writeBehind.write(modified);
+    writeBehind.flush();
+
+    assertEquals(List.of(modified), stored);
+  }
+
+  @Test
+  public void shouldSpillCasesThatDoNotFitInQueue() throws Exception {
+    CachedCaseWriteBehind writeBehind = createWriteBehind(1);
+    CachedCase queued = caze("1", "queued");
+    CachedCase spilled = caze("2", "spilled");
+
+    writeBehind.write(queued);
+    writeBehind.write(spilled);
+
+    assertEquals(1, spillFiles().length);
+    assertEquals(1.0, spilledCount(CachedCaseWriteBehind.OVERFLOW), 0.0);
+    assertEquals(Optional.of(spilled), writeBehind.read("2"));
+
+    writeBehind.flush();
+    assertEquals(List.of(queued), stored);
+    writeBehind.flush();
+    assertEquals(List.of(queued, spilled), stored);
+    assertEquals(0, spillFiles().length);
+  }
+
+  @Test
+  public void shouldSpillAndRetryCasesThatCouldNotBeWritten() throws Exception {
+    CachedCaseWriteBehind writeBehind = createWriteBehind(10);
+    CachedCase case1 = caze("1", "one");
+    CachedCase case2 = caze("2", "two");
+    writeBehind.write(case1);
+    writeBehind.write(case2);
+
+    storeAvailable = false;
+    writeBehind.flush();
+    assertTrue(stored.isEmpty());
+    assertEquals(2, spillFiles().length);
+    assertEquals(2.0, spilledCount(CachedCaseWriteBehind.FAILURE), 0.0);
+    assertEquals(Optional.of(case1), writeBehind.read("1"));
+
+    storeAvailable = true;
+    writeBehind.flush();
+    assertEquals(List.of(case1, case2), stored);
+    assertEquals(0, spillFiles().length);
+  }
+
+  @Test
+  public void shouldNotOverwriteNewerCaseWithSpilledRetry() throws Exception {
+    CachedCaseWriteBehind writeBehind = createWriteBehind(10);
+    CachedCase original = caze("1", "original");
+    CachedCase modified = caze("1", "modified");
+    writeBehind.write(original);
+    storeAvailable = false;
+    writeBehind.flush();
+
+    storeAvailable = true;
+    writeBehind.write(modified);
+    writeBehind.flush();
+    writeBehind.flush();
+
+    assertEquals(List.of(modified), stored);
+    assertEquals(0, spillFiles().length);
+  }
+
+  @Test
+  public void shouldWriteCasesSpilledByEarlierRun() throws Exception {
+    CachedCase spilled = caze("1", "spilled");
+    CachedCaseWriteBehind earlierRun = createWriteBehind(10);
+    earlierRun.write(spilled);
+    storeAvailable = false;
+    earlierRun.shutdown();
+    assertEquals(1, spillFiles().length);
+
+    storeAvailable = true;
+    CachedCaseWriteBehind laterRun = createWriteBehind(10);
+    laterRun.flush();
+
+    assertEquals(List.of(spilled), stored);
+    assertEquals(0, spillFiles().length);
+  }
+
+  private void store(List<CachedCase> cases) throws CTPException {
+    if (!storeAvailable) {
+      throw new CTPException(Fault.SYSTEM_ERROR, "Firestore unavailable");
+    }
+    batchSizes.add(cases.size());
+    stored.addAll(cases);
+  }
+
+  private File[] spillFiles() {
+    return folder.getRoot().listFiles((dir, name) -> name.endsWith(".json"));
+  }
+
+  private double spilledCount(String reason) {
+    return meterRegistry
+        .get(CachedCaseWriteBehind.SPILLED_COUNTER_NAME)
+        .tag("reason", reason)
+        .counter()
+        .count();
+  }
+
+  private CachedCase caze(String id, String addressLine1) {
+    return CachedCase.builder().id(id).uprn(UPRN).addressLine1(addressLine1).build();
+  }
+}
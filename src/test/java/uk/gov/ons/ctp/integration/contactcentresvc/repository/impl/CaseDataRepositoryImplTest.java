@@ -4,29 +4,51 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.util.Arrays;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Collections;
-import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.boot.actuate.health.Status;
 import org.springframework.test.util.ReflectionTestUtils;
 import uk.gov.ons.ctp.common.FixtureHelper;
 import uk.gov.ons.ctp.common.cloud.RetryableCloudDataStore;
 import uk.gov.ons.ctp.common.domain.UniquePropertyReferenceNumber;
 import uk.gov.ons.ctp.common.error.CTPException;
 import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseCollectionCheckSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseReadCacheSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseUprnFilterSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseUprnIndexSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseWriteBatchSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseWriteBehindSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseEventDTO;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CaseDataRepositoryImplTest {
@@ -35,32 +57,58 @@ public class CaseDataRepositoryImplTest {
   private static final String SCHEMA_NAME = "schema-name";
   private static final String CASE_SCHEMA = GCP_PROJECT_NAME + "-" + SCHEMA_NAME;
 
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
   @Mock RetryableCloudDataStore dataStore;
 
+  @Mock FirestoreBatchWriter batchWriter;
+
+  @Mock FirestoreProjectedReader projectedReader;
+
+  @Mock CachedCaseUprnIndex uprnIndex;
+
+  @Spy CaseCollectionHealthIndicator collectionHealth = new CaseCollectionHealthIndicator();
+
+  @Spy AppConfig appConfig = new AppConfig();
+
+  @Spy MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
   @InjectMocks private CaseDataRepositoryImpl repo;
 
   @Before
   public void setup() {
     ReflectionTestUtils.setField(repo, "caseSchemaName", SCHEMA_NAME);
     ReflectionTestUtils.setField(repo, "gcpProject", GCP_PROJECT_NAME);
+    appConfig.setCaseWriteBehindSettings(new CaseWriteBehindSettings());
+    appConfig.setCaseWriteBatchSettings(new CaseWriteBatchSettings());
+    appConfig.setCaseReadCacheSettings(new CaseReadCacheSettings());
+    appConfig.setCaseUprnFilterSettings(new CaseUprnFilterSettings());
+    appConfig.setCaseCollectionCheckSettings(new CaseCollectionCheckSettings());
+    appConfig.setCaseUprnIndexSettings(new CaseUprnIndexSettings());
+  }
+
+  @After
+  public void tearDown() {
+    repo.shutdown();
   }
 
   @Test
   public void init_withExistingNewCaseCollection() throws Exception {
     // Firestore already has the new-case collection
-    Set<String> collectionNames = new HashSet<>(Arrays.asList("x", "y", CASE_SCHEMA));
-    when(dataStore.getCollectionNames()).thenReturn(collectionNames);
+    givenCollectionExists();
 
     repo.init();
 
     // Verify no attempt made to populate new-case collection
     verify(dataStore, never()).storeObject(any(), any(), any(), any());
+    verify(dataStore, never()).getCollectionNames();
+    assertEquals(Status.UP, collectionHealth.health().getStatus());
   }
 
   @Test
   public void init_andCreateNewCaseCollection() throws Exception {
-    Set<String> collectionNames = new HashSet<>(Arrays.asList("x", "y"));
-    when(dataStore.getCollectionNames()).thenReturn(collectionNames);
+    when(dataStore.retrieveObject(CachedCase.class, CASE_SCHEMA, "placeholder"))
+        .thenReturn(Optional.empty());
 
     repo.init();
 
@@ -70,8 +118,8 @@ public class CaseDataRepositoryImplTest {
   @Test
   public void init_failedToCreateNewCaseCollection() throws Exception {
     // Firestore doesn't have the new-case collection
-    Set<String> collectionNames = new HashSet<>(Arrays.asList("x", "y"));
-    when(dataStore.getCollectionNames()).thenReturn(collectionNames);
+    when(dataStore.retrieveObject(CachedCase.class, CASE_SCHEMA, "placeholder"))
+        .thenReturn(Optional.empty());
 
     // Simulate Firestore failing to create collection
     RuntimeException firestoreException = new RuntimeException("Firestore couldn't create");
@@ -120,4 +168,369 @@ public class CaseDataRepositoryImplTest {
     List<CachedCase> result = readCachedCases("9999999999");
     assertTrue(result.isEmpty());
   }
+
+  @Test
+  public void shouldWriteCachedCaseStraightAway() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    givenCollectionExists();
+    repo.init();
+
+    repo.writeCachedCase(caze);
+
+    verify(dataStore).storeObject(CASE_SCHEMA, caze.getId(), caze, caze.getId());
+  }
+
+  @Test
+  public void shouldWriteNewCaseBeforeReturningWhenWritingBehind() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    initWithWriteBehind();
+
+    repo.writeCachedCase(caze);
+
+    verify(dataStore).storeObject(CASE_SCHEMA, caze.getId(), caze, caze.getId());
+  }
+
+  @Test
+  public void shouldReadYourWritesWhenWritingBehind() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    initWithWriteBehind();
+
+    repo.updateCachedCase(caze);
+
+    verify(dataStore, never()).storeObject(any(), any(), any(), any());
+    assertEquals(Optional.of(caze), repo.readCachedCaseById(UUID.fromString(caze.getId())));
+    verify(dataStore, never()).retrieveObject(CachedCase.class, CASE_SCHEMA, caze.getId());
+
+    when(dataStore.search(CachedCase.class, CASE_SCHEMA, new String[] {"uprn"}, caze.getUprn()))
+        .thenReturn(Collections.emptyList());
+    List<CachedCase> byUprn =
+        repo.readCachedCasesByUprn(new UniquePropertyReferenceNumber(caze.getUprn()));
+    assertEquals(List.of(caze), byUprn);
+  }
+
+  @Test
+  public void shouldWriteBehindCasesOnShutdown() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    initWithWriteBehind();
+    repo.updateCachedCase(caze);
+
+    repo.shutdown();
+
+    verify(batchWriter).write(CASE_SCHEMA, Map.of(caze.getId(), caze));
+    when(dataStore.retrieveObject(CachedCase.class, CASE_SCHEMA, caze.getId()))
+        .thenReturn(Optional.empty());
+    assertEquals(Optional.empty(), repo.readCachedCaseById(UUID.fromString(caze.getId())));
+  }
+
+  @Test
+  public void shouldWriteCachedCasesInOneCommit() throws Exception {
+    List<CachedCase> cachedCases = FixtureHelper.loadClassFixtures(CachedCase[].class);
+    CachedCase case1 = cachedCases.get(0);
+    CachedCase case2 = cachedCases.get(1);
+    CachedCase modifiedCase1 =
+        CachedCase.builder().id(case1.getId()).uprn(case1.getUprn()).addressLine1("new").build();
+    givenCollectionExists();
+    repo.init();
+
+    repo.writeCachedCases(List.of(case1, case2, modifiedCase1));
+
+    Map<String, CachedCase> expected = new LinkedHashMap<>();
+    expected.put(case1.getId(), modifiedCase1);
+    expected.put(case2.getId(), case2);
+    verify(batchWriter).write(CASE_SCHEMA, expected);
+    verify(dataStore, never()).storeObject(any(), any(), any(), any());
+    assertEquals(
+        2.0,
+        meterRegistry.get(CaseDataRepositoryImpl.BATCH_SIZE_SUMMARY_NAME).summary().totalAmount(),
+        0.0);
+    assertEquals(
+        1L, meterRegistry.get(CaseDataRepositoryImpl.BATCH_LATENCY_TIMER_NAME).timer().count());
+  }
+
+  @Test
+  public void shouldWriteCachedCaseInBatchWhenBatching() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    CaseWriteBatchSettings settings = new CaseWriteBatchSettings();
+    settings.setEnabled(true);
+    settings.setMaxDelayMillis(0);
+    appConfig.setCaseWriteBatchSettings(settings);
+    givenCollectionExists();
+    repo.init();
+
+    repo.writeCachedCase(caze);
+
+    verify(batchWriter).write(CASE_SCHEMA, Map.of(caze.getId(), caze));
+    verify(dataStore, never()).storeObject(any(), any(), any(), any());
+  }
+
+  @Test
+  public void shouldAnswerRepeatedReadsFromCache() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    initWithReadCache(5);
+    when(dataStore.search(CachedCase.class, CASE_SCHEMA, new String[] {"uprn"}, "9999999999"))
+        .thenReturn(Collections.emptyList());
+    when(dataStore.retrieveObject(CachedCase.class, CASE_SCHEMA, caze.getId()))
+        .thenReturn(Optional.of(caze));
+
+    UniquePropertyReferenceNumber uprn = new UniquePropertyReferenceNumber("9999999999");
+    for (int i = 0; i < 2; i++) {
+      assertTrue(repo.readCachedCasesByUprn(uprn).isEmpty());
+      assertEquals(Optional.of(caze), repo.readCachedCaseById(UUID.fromString(caze.getId())));
+    }
+
+    verify(dataStore, times(1)).search(any(), any(), any(), any());
+    verify(dataStore, times(1)).retrieveObject(CachedCase.class, CASE_SCHEMA, caze.getId());
+  }
+
+  @Test
+  public void shouldFindCaseWrittenElsewhereAfterFindingNone() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    initWithReadCache(0);
+    when(dataStore.search(CachedCase.class, CASE_SCHEMA, new String[] {"uprn"}, caze.getUprn()))
+        .thenReturn(Collections.emptyList())
+        .thenReturn(List.of(caze));
+
+    UniquePropertyReferenceNumber uprn = new UniquePropertyReferenceNumber(caze.getUprn());
+    assertTrue(repo.readCachedCasesByUprn(uprn).isEmpty());
+
+    assertEquals(List.of(caze), repo.readCachedCasesByUprn(uprn));
+  }
+
+  @Test
+  public void shouldCacheCaseOnWrite() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    initWithReadCache(5);
+    UniquePropertyReferenceNumber uprn = new UniquePropertyReferenceNumber(caze.getUprn());
+    when(dataStore.search(CachedCase.class, CASE_SCHEMA, new String[] {"uprn"}, caze.getUprn()))
+        .thenReturn(Collections.emptyList());
+    assertTrue(repo.readCachedCasesByUprn(uprn).isEmpty());
+
+    repo.writeCachedCase(caze);
+
+    assertEquals(List.of(caze), repo.readCachedCasesByUprn(uprn));
+    assertEquals(Optional.of(caze), repo.readCachedCaseById(UUID.fromString(caze.getId())));
+    verify(dataStore, times(1)).search(any(), any(), any(), any());
+    verify(dataStore, never()).retrieveObject(CachedCase.class, CASE_SCHEMA, caze.getId());
+  }
+
+  @Test
+  public void shouldSkipReadForUprnWithoutIndexedCases() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    List<String> ids = List.of(caze.getId());
+    initWithUprnFilter(caze.getUprn());
+    when(uprnIndex.read(CASE_SCHEMA + "-uprn-index", "1")).thenReturn(List.of());
+    when(uprnIndex.read(CASE_SCHEMA + "-uprn-index", caze.getUprn())).thenReturn(ids);
+    when(projectedReader.retrieveObjects(CachedCase.class, CASE_SCHEMA, ids, null))
+        .thenReturn(List.of(caze));
+
+    UniquePropertyReferenceNumber uprn = new UniquePropertyReferenceNumber(caze.getUprn());
+    assertTrue(repo.readCachedCasesByUprn(new UniquePropertyReferenceNumber("1")).isEmpty());
+    assertEquals(List.of(caze), repo.readCachedCasesByUprn(uprn));
+    verify(projectedReader, times(1)).retrieveObjects(any(), any(), any(), any());
+    verify(dataStore, never()).search(any(), any(), any(), any());
+  }
+
+  @Test
+  public void shouldFindIndexedCaseWrittenByAnotherPodSinceFilterWasBuilt() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    List<String> ids = List.of(caze.getId());
+    initWithUprnFilter();
+    when(uprnIndex.read(CASE_SCHEMA + "-uprn-index", caze.getUprn())).thenReturn(ids);
+    when(projectedReader.retrieveObjects(CachedCase.class, CASE_SCHEMA, ids, null))
+        .thenReturn(List.of(caze));
+
+    UniquePropertyReferenceNumber uprn = new UniquePropertyReferenceNumber(caze.getUprn());
+    assertEquals(List.of(caze), repo.readCachedCasesByUprn(uprn));
+    CachedCaseUprnFilter filter =
+        (CachedCaseUprnFilter) ReflectionTestUtils.getField(repo, "uprnFilter");
+    assertTrue(filter.mightContain(caze.getUprn()));
+  }
+
+  @Test
+  public void shouldRefuseToFilterUprnsUnlessIndexIsUsedForReads() throws Exception {
+    CaseUprnFilterSettings settings = new CaseUprnFilterSettings();
+    settings.setEnabled(true);
+    appConfig.setCaseUprnFilterSettings(settings);
+    appConfig.getCaseUprnIndexSettings().setEnabled(true);
+    givenCollectionExists();
+
+    assertThrows(CTPException.class, () -> repo.init());
+    verify(projectedReader, never()).scan(any(), any(), any());
+  }
+
+  @Test
+  public void shouldReadCaseWithoutEvents() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    givenCollectionExists();
+    repo.init();
+    when(projectedReader.retrieveObject(
+            eq(CachedCase.class), eq(CASE_SCHEMA), eq(caze.getId()), argThat(this::isEventless)))
+        .thenReturn(Optional.of(caze));
+
+    Optional<CachedCase> result = repo.readCachedCaseById(UUID.fromString(caze.getId()), false);
+
+    assertEquals(Optional.of(caze), result);
+    verify(dataStore, never()).retrieveObject(CachedCase.class, CASE_SCHEMA, caze.getId());
+  }
+
+  @Test
+  public void shouldReadCasesByUprnWithoutEvents() throws Exception {
+    CachedCase caze = FixtureHelper.loadClassFixtures(CachedCase[].class).get(0);
+    caze.setCaseEvents(List.of(CaseEventDTO.builder().description("Initial creation").build()));
+    initWithWriteBehind();
+    repo.updateCachedCase(caze);
+    when(projectedReader.search(
+            eq(CachedCase.class),
+            eq(CASE_SCHEMA),
+            eq("uprn"),
+            eq(caze.getUprn()),
+            argThat(this::isEventless)))
+        .thenReturn(Collections.emptyList());
+
+    List<CachedCase> result =
+        repo.readCachedCasesByUprn(new UniquePropertyReferenceNumber(caze.getUprn()), false);
+
+    assertEquals(1, result.size());
+    assertTrue(result.get(0).getCaseEvents().isEmpty());
+    verify(dataStore, never()).search(any(), any(), any(), any());
+  }
+
+  @Test
+  public void shouldWriteCasesWithTheirIndexEntries() throws Exception {
+    List<CachedCase> cases = FixtureHelper.loadClassFixtures(CachedCase[].class);
+    appConfig.getCaseUprnIndexSettings().setEnabled(true);
+    givenCollectionExists();
+    repo.init();
+
+    repo.writeCachedCase(cases.get(0));
+    repo.writeCachedCases(cases);
+
+    CachedCase first = cases.get(0);
+    verify(uprnIndex).write(CASE_SCHEMA, CASE_SCHEMA + "-uprn-index", Map.of(first.getId(), first));
+    verify(uprnIndex)
+        .write(eq(CASE_SCHEMA), eq(CASE_SCHEMA + "-uprn-index"), argThat(c -> c.size() == 2));
+    verify(dataStore, never()).storeObject(any(), any(), any(), any());
+    verify(batchWriter, never()).write(any(), any());
+  }
+
+  @Test
+  public void shouldReadCasesByUprnThroughIndex() throws Exception {
+    List<CachedCase> cases = FixtureHelper.loadClassFixtures(CachedCase[].class);
+    String uprn = cases.get(0).getUprn();
+    CachedCase moved = CachedCase.builder().id(UUID.randomUUID().toString()).uprn("1").build();
+    List<String> ids = List.of(cases.get(1).getId(), moved.getId(), cases.get(0).getId());
+    appConfig.getCaseUprnIndexSettings().setUseForReads(true);
+    givenCollectionExists();
+    when(uprnIndex.read(CASE_SCHEMA + "-uprn-index", uprn)).thenReturn(ids);
+    when(projectedReader.retrieveObjects(CachedCase.class, CASE_SCHEMA, ids, null))
+        .thenReturn(List.of(cases.get(1), moved, cases.get(0)));
+    repo.init();
+
+    List<CachedCase> result = repo.readCachedCasesByUprn(new UniquePropertyReferenceNumber(uprn));
+
+    assertEquals(List.of(cases.get(1), cases.get(0)), result);
+    verify(dataStore, never()).search(any(), any(), any(), any());
+  }
+
+  private boolean isEventless(List<String> fields) {
+    return fields.contains("uprn") && fields.contains("id") && !fields.contains("caseEvents");
+  }
+
+  @Test
+  public void init_checksCollectionInBackground() throws Exception {
+    appConfig.getCaseCollectionCheckSettings().setAsync(true);
+    CountDownLatch checking = new CountDownLatch(1);
+    when(dataStore.retrieveObject(CachedCase.class, CASE_SCHEMA, "placeholder"))
+        .thenAnswer(
+            invocation -> {
+              checking.await();
+              return Optional.of(new CachedCase());
+            });
+
+    repo.init();
+    assertEquals(Status.OUT_OF_SERVICE, collectionHealth.health().getStatus());
+
+    checking.countDown();
+    for (int i = 0; i < 500 && collectionHealth.health().getStatus() != Status.UP; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(Status.UP, collectionHealth.health().getStatus());
+  }
+
+  @Test
+  public void init_recoversWhenBackgroundCheckFails() throws Exception {
+    appConfig.getCaseCollectionCheckSettings().setAsync(true);
+    appConfig.getCaseCollectionCheckSettings().setRetryMinDelayMillis(10);
+    CountDownLatch failed = new CountDownLatch(1);
+    CountDownLatch retrying = new CountDownLatch(1);
+    when(dataStore.retrieveObject(CachedCase.class, CASE_SCHEMA, "placeholder"))
+        .thenThrow(new RuntimeException("Firestore unavailable"))
+        .thenAnswer(
+            invocation -> {
+              retrying.await();
+              return Optional.of(new CachedCase());
+            });
+    doAnswer(
+            invocation -> {
+              invocation.callRealMethod();
+              failed.countDown();
+              return null;
+            })
+        .when(collectionHealth)
+        .failed(any(), any());
+
+    repo.init();
+    assertTrue(failed.await(5, TimeUnit.SECONDS));
+    assertEquals(Status.DOWN, collectionHealth.health().getStatus());
+
+    retrying.countDown();
+    for (int i = 0; i < 500 && collectionHealth.health().getStatus() != Status.UP; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(Status.UP, collectionHealth.health().getStatus());
+  }
+
+  private void givenCollectionExists() throws Exception {
+    when(dataStore.retrieveObject(CachedCase.class, CASE_SCHEMA, "placeholder"))
+        .thenReturn(Optional.of(new CachedCase()));
+  }
+
+  // The filter is built from the UPRNs of the cases stored when it is built
+  private void initWithUprnFilter(String... storedUprns) throws Exception {
+    CaseUprnFilterSettings settings = new CaseUprnFilterSettings();
+    settings.setEnabled(true);
+    appConfig.setCaseUprnFilterSettings(settings);
+    appConfig.getCaseUprnIndexSettings().setEnabled(true);
+    appConfig.getCaseUprnIndexSettings().setUseForReads(true);
+    doAnswer(
+            invocation -> {
+              Consumer<Object> consumer = invocation.getArgument(2);
+              List.of(storedUprns).forEach(consumer);
+              return null;
+            })
+        .when(projectedReader)
+        .scan(eq(CASE_SCHEMA), eq("uprn"), any());
+    givenCollectionExists();
+    repo.init();
+    ((CachedCaseUprnFilter) ReflectionTestUtils.getField(repo, "uprnFilter")).build();
+  }
+
+  private void initWithReadCache(long notFoundTimeToLiveSeconds) throws Exception {
+    CaseReadCacheSettings settings = new CaseReadCacheSettings();
+    settings.setEnabled(true);
+    settings.setNotFoundTimeToLiveSeconds(notFoundTimeToLiveSeconds);
+    appConfig.setCaseReadCacheSettings(settings);
+    givenCollectionExists();
+    repo.init();
+  }
+
+  private void initWithWriteBehind() throws Exception {
+    CaseWriteBehindSettings settings = new CaseWriteBehindSettings();
+    settings.setEnabled(true);
+    settings.setFlushIntervalMillis(3600000);
+    settings.setSpillDirectory(folder.getRoot().getPath());
+    appConfig.setCaseWriteBehindSettings(settings);
+    givenCollectionExists();
+    repo.init();
+  }
 }
@@ -0,0 +1,50 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.Configuration;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.EmbeddedCaseStoreSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.repository.CaseDataRepository;
+
+/** Starts the case repository beans with the embedded-case-store profile and no GCP settings. */
+public class EmbeddedCaseStoreContextTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Configuration
+  @ComponentScan(basePackageClasses = EmbeddedCaseDataRepository.class)
+  static class RepositoryBeans {}
+
+  @Test
+  public void shouldStartWithoutGcpProject() throws Exception {
+    EmbeddedCaseStoreSettings settings = new EmbeddedCaseStoreSettings();
+    settings.setDirectory(folder.newFolder().getPath());
+    settings.setSegmentSizeMegabytes(1);
+    AppConfig appConfig = new AppConfig();
+    appConfig.setEmbeddedCaseStoreSettings(settings);
+
+    String profile = EmbeddedCaseDataRepository.PROFILE;
+    new ApplicationContextRunner()
+        .withInitializer(context -> context.getEnvironment().setActiveProfiles(profile))
+        .withBean(AppConfig.class, () -> appConfig)
+        .withUserConfiguration(RepositoryBeans.class)
+        .run(
+            context -> {
+              assertNull(context.getStartupFailure());
+              assertTrue(
+                  context.getBean(CaseDataRepository.class) instanceof EmbeddedCaseDataRepository);
+              assertTrue(context.getBeansOfType(FirestoreClient.class).isEmpty());
+              assertTrue(context.getBeansOfType(FirestoreBatchWriter.class).isEmpty());
+              assertTrue(context.getBeansOfType(FirestoreProjectedReader.class).isEmpty());
+              assertTrue(context.getBeansOfType(CachedCaseUprnIndex.class).isEmpty());
+              assertTrue(context.getBeansOfType(CaseCollectionHealthIndicator.class).isEmpty());
+            });
+  }
+}
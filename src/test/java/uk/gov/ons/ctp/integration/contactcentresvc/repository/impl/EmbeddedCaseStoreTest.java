@@ -0,0 +1,141 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseEventDTO;
+
+public class EmbeddedCaseStoreTest {
+
+  private static final String UPRN = "100041045018";
+  private static final String OTHER_UPRN = "100041045019";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private List<EmbeddedCaseStore> opened = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    opened.forEach(EmbeddedCaseStore::close);
+  }
+
+  private EmbeddedCaseStore open(int segmentSize) throws Exception {
+    EmbeddedCaseStore store = new EmbeddedCaseStore(folder.getRoot().toPath(), segmentSize);
+    store.open();
+    opened.add(store);
+    return store;
+  }
+
+  @Test
+  public void shouldReadWrittenCases() throws Exception {
+    EmbeddedCaseStore store = open(4096);
+    CachedCase case1 = caze("1", UPRN, "one");
+    CachedCase case2 = caze("2", UPRN, "two");
+    CachedCase case3 = caze("3", OTHER_UPRN, "three");
+
+    store.write(List.of(case1, case2, case3));
+
+    assertEquals(Optional.of(case1), store.read("1"));
+    assertEquals(Optional.empty(), store.read("4"));
+    assertEquals(List.of(case1, case2), byId(store.readByUprn(UPRN)));
+    assertEquals(List.of(case3), store.readByUprn(OTHER_UPRN));
+    assertTrue(store.readByUprn("999").isEmpty());
+  }
+
+  @Test
+  public void shouldReadLatestVersion() throws Exception {
+    EmbeddedCaseStore store = open(4096);
+    CachedCase original = caze("1", UPRN, "original");
+    CachedCase modified = caze("1", UPRN, "modified");
+
+    store.write(List.of(original));
+    store.write(List.of(modified));
+
+    assertEquals(Optional.of(modified), store.read("1"));
+    assertEquals(List.of(modified), store.readByUprn(UPRN));
+  }
+
+  @Test
+  public void shouldMoveCaseToNewUprn() throws Exception {
+    EmbeddedCaseStore store = open(4096);
+    CachedCase original = caze("1", UPRN, "original");
+    CachedCase moved = caze("1", OTHER_UPRN, "moved");
+
+    store.write(List.of(original));
+    store.write(List.of(moved));
+
+    assertTrue(store.readByUprn(UPRN).isEmpty());
+    assertEquals(List.of(moved), store.readByUprn(OTHER_UPRN));
+  }
+
+  @Test
+  public void shouldStartNewSegmentWhenFull() throws Exception {
+    EmbeddedCaseStore store = open(1024);
+    List<CachedCase> cases = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      cases.add(caze(Integer.toString(i), UPRN, "case " + i));
+    }
+    CachedCase large = caze("large", UPRN, StringUtils.repeat('x', 2000));
+
+    for (CachedCase caze : cases) {
+      store.write(List.of(caze));
+    }
+    store.write(List.of(large));
+    cases.add(large);
+
+    assertTrue(segmentFiles().length > 2);
+    assertEquals(Optional.of(large), store.read("large"));
+    assertEquals(byId(cases), byId(store.readByUprn(UPRN)));
+  }
+
+  @Test
+  public void shouldReadCasesWrittenBeforeRestart() throws Exception {
+    EmbeddedCaseStore earlierRun = open(1024);
+    List<CachedCase> cases = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      cases.add(caze(Integer.toString(i), UPRN, "case " + i));
+    }
+    earlierRun.write(cases);
+    CachedCase modified = caze("0", OTHER_UPRN, "modified");
+    earlierRun.write(List.of(modified));
+    earlierRun.close();
+
+    EmbeddedCaseStore laterRun = open(1024);
+    CachedCase added = caze("added", OTHER_UPRN, "added");
+    laterRun.write(List.of(added));
+
+    assertEquals(Optional.of(modified), laterRun.read("0"));
+    assertEquals(byId(cases.subList(1, 20)), byId(laterRun.readByUprn(UPRN)));
+    assertEquals(List.of(modified, added), byId(laterRun.readByUprn(OTHER_UPRN)));
+  }
+
+  private File[] segmentFiles() {
+    return folder.getRoot().listFiles((dir, name) -> name.endsWith(".log"));
+  }
+
+  private List<CachedCase> byId(List<CachedCase> cases) {
+    List<CachedCase> sorted = new ArrayList<>(cases);
+    sorted.sort(Comparator.comparing(CachedCase::getId));
+    return sorted;
+  }
+
+  private CachedCase caze(String id, String uprn, String addressLine1) {
+    return CachedCase.builder()
+        .id(id)
+        .uprn(uprn)
+        .addressLine1(addressLine1)
+        .caseEvents(List.of(CaseEventDTO.builder().description("Initial creation").build()))
+        .build();
+  }
+}
@@ -0,0 +1,92 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiException;
+import com.google.cloud.firestore.Firestore;
+import io.grpc.Status;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import uk.gov.ons.ctp.common.error.CTPException;
+
+public class FirestoreClientTest {
+
+  private FirestoreClient client = new FirestoreClient();
+
+  private AtomicInteger attempts = new AtomicInteger();
+
+  @Before
+  public void setup() {
+    ReflectionTestUtils.setField(client, "firestore", mock(Firestore.class));
+    ReflectionTestUtils.setField(client, "backoffInitial", 1L);
+    ReflectionTestUtils.setField(client, "backoffMultiplier", 1.0);
+    ReflectionTestUtils.setField(client, "backoffMax", 1L);
+    ReflectionTestUtils.setField(client, "backoffMaxAttempts", 3);
+  }
+
+  @Test
+  public void shouldRetryTransientFailure() throws Exception {
+    String result =
+        client.call(
+            "test",
+            firestore -> {
+              if (attempts.incrementAndGet() == 1) {
+                throw new ExecutionException(failure(Status.Code.UNAVAILABLE));
+              }
+              return "done";
+            });
+
+    assertEquals("done", result);
+    assertEquals(2, attempts.get());
+  }
+
+  @Test
+  public void shouldGiveUpAfterMaxAttempts() {
+    assertThrows(
+        CTPException.class,
+        () ->
+            client.call(
+                "test",
+                firestore -> {
+                  attempts.incrementAndGet();
+                  throw failure(Status.Code.ABORTED);
+                }));
+
+    assertEquals(3, attempts.get());
+  }
+
+  @Test
+  public void shouldNotRetryOtherFailure() {
+    assertThrows(
+        CTPException.class,
+        () ->
+            client.call(
+                "test",
+                firestore -> {
+                  attempts.incrementAndGet();
+                  throw failure(Status.Code.PERMISSION_DENIED);
+                }));
+
+    assertEquals(1, attempts.get());
+  }
+
+  @Test
+  public void shouldOnlyTreatContentionAndUnavailabilityAsTransient() {
+    assertTrue(FirestoreClient.isTransient(failure(Status.Code.RESOURCE_EXHAUSTED)));
+    assertTrue(FirestoreClient.isTransient(failure(Status.Code.DEADLINE_EXCEEDED)));
+    assertFalse(FirestoreClient.isTransient(failure(Status.Code.INVALID_ARGUMENT)));
+    assertFalse(FirestoreClient.isTransient(new IllegalStateException()));
+  }
+
+  private ApiException failure(Status.Code code) {
+    return new ApiException(null, GrpcStatusCode.of(code), false);
+  }
+}
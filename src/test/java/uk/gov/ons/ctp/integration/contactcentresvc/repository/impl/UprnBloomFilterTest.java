@@ -0,0 +1,50 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.repository.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class UprnBloomFilterTest {
+
+  private static final long FIRST_UPRN = 100041045018L;
+
+  @Test
+  public void shouldContainEveryUprnAdded() {
+    UprnBloomFilter filter = new UprnBloomFilter(10000, 0.01);
+    for (long uprn = FIRST_UPRN; uprn < FIRST_UPRN + 10000; uprn++) {
+      filter.add(uprn);
+    }
+
+    for (long uprn = FIRST_UPRN; uprn < FIRST_UPRN + 10000; uprn++) {
+      assertTrue(filter.mightContain(uprn));
+    }
+  }
+
+  @Test
+  public void shouldRuleOutUprnsWhenEmpty() {
+    UprnBloomFilter filter = new UprnBloomFilter(10000, 0.01);
+
+    assertFalse(filter.mightContain(FIRST_UPRN));
+    assertEquals(0.0, filter.expectedFalsePositiveRate(), 0.0);
+  }
+
+  @Test
+  public void shouldHaveAboutTheFalsePositiveRateAskedFor() {
+    UprnBloomFilter filter = new UprnBloomFilter(10000, 0.01);
+    for (long uprn = FIRST_UPRN; uprn < FIRST_UPRN + 10000; uprn++) {
+      filter.add(uprn);
+    }
+
+    int falsePositives = 0;
+    for (long uprn = FIRST_UPRN + 10000; uprn < FIRST_UPRN + 110000; uprn++) {
+      if (filter.mightContain(uprn)) {
+        falsePositives++;
+      }
+    }
+
+    assertEquals(0.01, falsePositives / 100000.0, 0.005);
+    assertEquals(0.01, filter.expectedFalsePositiveRate(), 0.005);
+  }
+}
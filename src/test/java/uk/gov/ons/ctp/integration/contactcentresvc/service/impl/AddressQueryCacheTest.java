@@ -0,0 +1,193 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AddressQueryCacheSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryRequestDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryResponseDTO;
+
+public class AddressQueryCacheTest {
+
+  private static final List<String> HIGH_ST_ADDRESSES =
+      List.of(
+          "1 High Street, Exeter, EX1 1AA", "1 High Stile, Leeds, LS1 1AA", "11 High Street, Bath");
+
+  private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private AtomicInteger aiCalls = new AtomicInteger();
+
+  private AddressQueryCache createCache(boolean enabled, boolean derivePrefixQueries) {
+    AddressQueryCacheSettings settings = new AddressQueryCacheSettings();
+    settings.setEnabled(enabled);
+    settings.setDerivePrefixQueries(derivePrefixQueries);
+    return new AddressQueryCache(settings, "39", meterRegistry);
+  }
+
+  @Test
+  public void shouldCallAiEveryTimeWhenDisabled() {
+    AddressQueryCache cache = createCache(false, true);
+
+    cache.getAddressQuery(request("1 High St", 0, 10), ai(HIGH_ST_ADDRESSES));
+    cache.getAddressQuery(request("1 High St", 0, 10), ai(HIGH_ST_ADDRESSES));
+    cache.getAddressQuery(request("1 High Str", 0, 10), ai(HIGH_ST_ADDRESSES));
+
+    assertEquals(3, aiCalls.get());
+  }
+
+  @Test
+  public void shouldCacheResultsByNormalisedInput() {
+    AddressQueryCache cache = createCache(true, true);
+
+    AddressQueryResponseDTO results =
+        cache.getAddressQuery(request("1 High St", 0, 10), ai(HIGH_ST_ADDRESSES));
+
+    assertSame(results, cache.getAddressQuery(request(" 1  high ST ", 0, 10), ai(List.of())));
+    assertEquals(1, aiCalls.get());
+  }
+
+  @Test
+  public void shouldDeriveLongerSearchFromCompleteResults() {
+    AddressQueryCache cache = createCache(true, true);
+    cache.getAddressQuery(request("1 High St", 0, 10), ai(HIGH_ST_ADDRESSES));
+
+    AddressQueryResponseDTO results =
+        cache.getAddressQuery(request("1 High Stre", 0, 10), ai(List.of()));
+
+    assertEquals(1, aiCalls.get());
+    assertEquals(2, results.getTotal());
+    assertEquals("39", results.getDataVersion());
+    assertEquals(
+        List.of("1 High Street, Exeter, EX1 1AA", "11 High Street, Bath"), formatted(results));
+    assertEquals(
+        1.0, meterRegistry.get(AddressQueryCache.DERIVED_COUNTER_NAME).counter().count(), 0.0);
+  }
+
+  @Test
+  public void shouldDeriveFromDerivedResults() {
+    AddressQueryCache cache = createCache(true, true);
+    cache.getAddressQuery(request("1 High St", 0, 10), ai(HIGH_ST_ADDRESSES));
+    cache.getAddressQuery(request("1 High Stre", 0, 10), ai(List.of()));
+
+    AddressQueryResponseDTO results =
+        cache.getAddressQuery(request("1 High Street, Ex", 0, 10), ai(List.of()));
+
+    assertEquals(1, aiCalls.get());
+    assertEquals(List.of("1 High Street, Exeter, EX1 1AA"), formatted(results));
+  }
+
+  @Test
+  public void shouldPageDerivedResults() {
+    AddressQueryCache cache = createCache(true, true);
+    cache.getAddressQuery(request("1 High St", 0, 10), ai(HIGH_ST_ADDRESSES));
+
+    AddressQueryResponseDTO results =
+        cache.getAddressQuery(request("1 High Stre", 1, 1), ai(List.of()));
+
+    assertEquals(1, aiCalls.get());
+    assertEquals(2, results.getTotal());
+    assertEquals(List.of("11 High Street, Bath"), formatted(results));
+  }
+
+  @Test
+  public void shouldNotDeriveFromIncompleteResults() {
+    AddressQueryCache cache = createCache(true, true);
+    cache.getAddressQuery(request("1 High St", 0, 3), ai(HIGH_ST_ADDRESSES, 50));
+    cache.getAddressQuery(request("1 High St", 3, 3), ai(HIGH_ST_ADDRESSES));
+
+    cache.getAddressQuery(request("1 High Stre", 0, 3), ai(HIGH_ST_ADDRESSES));
+
+    assertEquals(3, aiCalls.get());
+  }
+
+  @Test
+  public void shouldCallAiWhenNothingDerivedMatches() {
+    AddressQueryCache cache = createCache(true, true);
+    cache.getAddressQuery(request("1 High St", 0, 10), ai(HIGH_ST_ADDRESSES));
+
+    AddressQueryResponseDTO results =
+        cache.getAddressQuery(
+            request("1 High Stx", 0, 10), ai(List.of("1 High Street, Exeter, EX1 1AA")));
+
+    assertEquals(2, aiCalls.get());
+    assertEquals(List.of("1 High Street, Exeter, EX1 1AA"), formatted(results));
+  }
+
+  @Test
+  public void shouldNotDeriveWhenDisabled() {
+    AddressQueryCache cache = createCache(true, false);
+    cache.getAddressQuery(request("1 High St", 0, 10), ai(HIGH_ST_ADDRESSES));
+
+    cache.getAddressQuery(request("1 High Stre", 0, 10), ai(HIGH_ST_ADDRESSES));
+
+    assertEquals(2, aiCalls.get());
+    assertNotNull(cacheSize(AddressQueryCache.CACHE_NAME));
+    assertNull(cacheSize(AddressQueryCache.COMPLETE_CACHE_NAME));
+  }
+
+  @Test
+  public void shouldNotCacheFailedSearch() {
+    AddressQueryCache cache = createCache(true, true);
+    AddressQueryRequestDTO request = request("1 High St", 0, 10);
+
+    assertThrows(
+        ResponseStatusException.class,
+        () ->
+            cache.getAddressQuery(
+                request,
+                () -> {
+                  throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+                }));
+    cache.getAddressQuery(request, ai(HIGH_ST_ADDRESSES));
+
+    assertEquals(1, aiCalls.get());
+  }
+
+  private Gauge cacheSize(String cacheName) {
+    return meterRegistry.find("cache.size").tag("cache", cacheName).gauge();
+  }
+
+  private List<String> formatted(AddressQueryResponseDTO results) {
+    return results.getAddresses().stream().map(AddressDTO::getFormattedAddress).collect(toList());
+  }
+
+  private AddressQueryRequestDTO request(String input, int offset, int limit) {
+    return AddressQueryRequestDTO.create(input, offset, limit);
+  }
+
+  private Supplier<AddressQueryResponseDTO> ai(List<String> formattedAddresses) {
+    return ai(formattedAddresses, formattedAddresses.size());
+  }
+
+  private Supplier<AddressQueryResponseDTO> ai(List<String> formattedAddresses, int total) {
+    return () -> {
+      aiCalls.incrementAndGet();
+      ArrayList<AddressDTO> addresses = new ArrayList<>();
+      for (String formattedAddress : formattedAddresses) {
+        AddressDTO address = new AddressDTO();
+        address.setFormattedAddress(formattedAddress);
+        address.setWelshFormattedAddress(formattedAddress);
+        addresses.add(address);
+      }
+      AddressQueryResponseDTO response = new AddressQueryResponseDTO();
+      response.setDataVersion("39");
+      response.setAddresses(addresses);
+      response.setTotal(total);
+      return response;
+    };
+  }
+}
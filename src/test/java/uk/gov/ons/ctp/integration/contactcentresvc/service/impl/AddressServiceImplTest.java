@@ -4,19 +4,29 @@ import static org.hamcrest.CoreMatchers.startsWith;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 import uk.gov.ons.ctp.common.FixtureHelper;
 import uk.gov.ons.ctp.common.error.CTPException;
@@ -24,6 +34,11 @@ import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.AddressSe
 import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexAddressCompositeDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexSearchResultsCompositeDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexSearchResultsDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AddressIndexSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AddressQueryCacheSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PostcodeQueryCacheSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.UprnAddressCacheSettings;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryRequestDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryResponseDTO;
@@ -36,8 +51,27 @@ public class AddressServiceImplTest {
   @Mock
   AddressServiceClientServiceImpl addressClientService = new AddressServiceClientServiceImpl();
 
+  @Spy
+  AddressQueryCache addressQueryCache =
+      new AddressQueryCache(new AddressQueryCacheSettings(), "", new SimpleMeterRegistry());
+
+  @Spy
+  PostcodeQueryCache postcodeQueryCache =
+      new PostcodeQueryCache(new PostcodeQueryCacheSettings(), "", new SimpleMeterRegistry());
+
+  @Spy
+  UprnAddressCache uprnAddressCache =
+      new UprnAddressCache(new UprnAddressCacheSettings(), "", new SimpleMeterRegistry());
+
+  @Spy AppConfig appConfig = new AppConfig();
+
   @InjectMocks AddressService addressService = new AddressServiceImpl();
 
+  @Before
+  public void setup() {
+    appConfig.setAddressIndexSettings(new AddressIndexSettings());
+  }
+
   private void mockSearchByAddress(String qualifier, int expectedNumAddresses) {
     AddressIndexSearchResultsDTO results =
         FixtureHelper.loadClassFixtures(AddressIndexSearchResultsDTO[].class, qualifier).get(0);
@@ -55,6 +89,97 @@ public class AddressServiceImplTest {
     verifyAddresses(results);
   }
 
+  private void mockSearchByAddressJson(String qualifier) throws Exception {
+    appConfig.getAddressIndexSettings().setStreamingParse(true);
+    when(addressClientService.searchByAddressJson(any())).thenReturn(json(qualifier));
+  }
+
+  private byte[] json(String qualifier) throws Exception {
+    String name = "AddressServiceImplTest.AddressIndexSearchResultsDTO." + qualifier + ".json";
+    try (InputStream in = getClass().getResourceAsStream(name)) {
+      return in.readAllBytes();
+    }
+  }
+
+  @Test
+  public void shouldSummariseAddressesWhileParsing() throws Exception {
+    mockSearchByAddressJson("current");
+
+    AddressQueryRequestDTO request = AddressQueryRequestDTO.create("Michael", 0, 100);
+    AddressQueryResponseDTO results = addressService.addressQuery(request);
+
+    verifyAddresses(results);
+    verify(addressClientService, never()).searchByAddress(any());
+  }
+
+  @Test
+  public void shouldConvertNAtoHHWhileParsing() throws Exception {
+    mockSearchByAddressJson("NA");
+
+    AddressQueryRequestDTO request = AddressQueryRequestDTO.create("Michael", 0, 100);
+    AddressQueryResponseDTO results = addressService.addressQuery(request);
+    verifyAddresses(results);
+  }
+
+  @Test
+  public void shouldFilterHistoricalAddressesWhileParsing() throws Exception {
+    mockSearchByAddressJson("somehistoric");
+
+    AddressQueryRequestDTO request = AddressQueryRequestDTO.create("Flixton", 0, 100);
+    AddressQueryResponseDTO results = addressService.addressQuery(request);
+
+    var addresses = results.getAddresses();
+    assertEquals(8, addresses.size());
+    assertTrue(hasAddress("Flixton Airfield Poultry Unit", addresses));
+    assertFalse(hasAddress("Flixton Ings", addresses));
+    assertFalse(hasAddress("Northern Rail", addresses));
+  }
+
+  @Test
+  public void shouldHandleNoResultsWhileParsing() throws Exception {
+    mockSearchByAddressJson("none");
+
+    AddressQueryRequestDTO request = AddressQueryRequestDTO.create("PlanetKrypton", 0, 100);
+    AddressQueryResponseDTO results = addressService.addressQuery(request);
+    assertTrue(results.getAddresses().isEmpty());
+  }
+
+  @Test
+  public void shouldSkipAddressesWhichAreNotObjectsWhileParsing() throws Exception {
+    appConfig.getAddressIndexSettings().setStreamingParse(true);
+    String response =
+        new String(json("current"), StandardCharsets.UTF_8)
+            .replace("\"addresses\": [", "\"addresses\": [null, \"\", [{}], ");
+    when(addressClientService.searchByAddressJson(any()))
+        .thenReturn(response.getBytes(StandardCharsets.UTF_8));
+
+    AddressQueryRequestDTO request = AddressQueryRequestDTO.create("Michael", 0, 100);
+    AddressQueryResponseDTO results = addressService.addressQuery(request);
+    verifyAddresses(results);
+  }
+
+  @Test
+  public void shouldRejectUnparseableResponse() throws Exception {
+    appConfig.getAddressIndexSettings().setStreamingParse(true);
+    when(addressClientService.searchByAddressJson(any()))
+        .thenReturn("{\"response\": [".getBytes(StandardCharsets.UTF_8));
+
+    AddressQueryRequestDTO request = AddressQueryRequestDTO.create("Michael", 0, 100);
+    assertThrows(ResponseStatusException.class, () -> addressService.addressQuery(request));
+  }
+
+  @Test
+  public void shouldSummarisePostcodeResultsWhileParsing() throws Exception {
+    appConfig.getAddressIndexSettings().setStreamingParse(true);
+    when(addressClientService.searchByPostcodeJson(any())).thenReturn(json("current"));
+
+    PostcodeQueryRequestDTO request = PostcodeQueryRequestDTO.create("EX2 8DD", 0, 100);
+    AddressQueryResponseDTO results = addressService.postcodeQuery(request);
+
+    verifyAddresses(results);
+    verify(addressClientService, never()).searchByPostcode(any());
+  }
+
   @Test
   public void testAddressQuery_ConvertNAtoHH() throws Exception {
     // Load data which includes an address reporting as NA. This should be 'corrected' to 'HH'.
@@ -124,6 +249,26 @@ public class AddressServiceImplTest {
     verifyAddresses(results);
   }
 
+  @Test
+  public void shouldAnswerRepeatedPostcodeQueryFromCache() {
+    PostcodeQueryCacheSettings settings = new PostcodeQueryCacheSettings();
+    settings.setEnabled(true);
+    ReflectionTestUtils.setField(
+        addressService,
+        "postcodeQueryCache",
+        new PostcodeQueryCache(settings, "39", new SimpleMeterRegistry()));
+    AddressIndexSearchResultsDTO addressIndexResults =
+        FixtureHelper.loadClassFixtures(AddressIndexSearchResultsDTO[].class, "current").get(0);
+    when(addressClientService.searchByPostcode(any())).thenReturn(addressIndexResults);
+
+    PostcodeQueryRequestDTO request = PostcodeQueryRequestDTO.create("EX2 8DD", 0, 100);
+    addressService.postcodeQuery(request);
+    AddressQueryResponseDTO results = addressService.postcodeQuery(request);
+
+    verifyAddresses(results);
+    verify(addressClientService, times(1)).searchByPostcode(any());
+  }
+
   @Test
   public void testUPRNQueryProcessing() throws Exception {
     // Build results to be returned from search
@@ -142,6 +287,26 @@ public class AddressServiceImplTest {
     assertEquals("EX1 2ET", address.getPostcode());
   }
 
+  @Test
+  public void shouldAnswerRepeatedUprnQueryFromCache() throws Exception {
+    UprnAddressCacheSettings settings = new UprnAddressCacheSettings();
+    settings.setEnabled(true);
+    ReflectionTestUtils.setField(
+        addressService,
+        "uprnAddressCache",
+        new UprnAddressCache(settings, "39", new SimpleMeterRegistry()));
+    AddressIndexSearchResultsCompositeDTO addressIndexResults =
+        FixtureHelper.loadClassFixtures(AddressIndexSearchResultsCompositeDTO[].class).get(0);
+    when(addressClientService.searchByUPRN(any())).thenReturn(addressIndexResults);
+
+    addressService.uprnQuery(100041045018L);
+    AddressIndexAddressCompositeDTO address = addressService.uprnQuery(100041045018L);
+
+    assertEquals("100041045018", address.getUprn());
+    assertEquals("EX1 2ET", address.getPostcode());
+    verify(addressClientService, times(1)).searchByUPRN(any());
+  }
+
   @Test(expected = CTPException.class)
   public void testUPRNQueryJSONStatusNot200() throws Exception {
     // Build results to be returned from search
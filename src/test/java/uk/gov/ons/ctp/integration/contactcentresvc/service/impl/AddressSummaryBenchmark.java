@@ -0,0 +1,135 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static java.util.stream.Collectors.toList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.ons.ctp.common.domain.AddressType;
+import uk.gov.ons.ctp.common.domain.EstabType;
+import uk.gov.ons.ctp.common.util.StringUtils;
+import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexAddressCensusDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexAddressDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexResponseDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexSearchResultsDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryResponseDTO;
+
+/**
+ * Compares summarising a page of Address Index results in a single pass with the stream, loop and
+ * copy it replaced. Run through the jmh profile, which also reports the allocation per operation:
+ *
+ * <pre>
+ * mvn -Pjmh verify -Djmh.include=AddressSummaryBenchmark
+ * </pre>
+ *
+ * <p>The pages hold no historical addresses, as each is logged as an error, which would swamp what
+ * is being measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddressSummaryBenchmark {
+
+  @Param({"100", "500", "1000"})
+  private int addresses;
+
+  private AddressServiceImpl addressService = new AddressServiceImpl();
+
+  private AddressIndexSearchResultsDTO results;
+
+  @Setup
+  public void setup() {
+    ArrayList<AddressIndexAddressDTO> page = new ArrayList<>();
+    for (int i = 0; i < addresses; i++) {
+      AddressIndexAddressCensusDTO census = new AddressIndexAddressCensusDTO();
+      census.setCountryCode("E");
+      // One in ten is reclassified
+      census.setAddressType(i % 10 == 0 ? "NA" : "HH");
+      census.setEstabType("Household");
+      AddressIndexAddressDTO address = new AddressIndexAddressDTO();
+      address.setUprn(Long.toString(100041045018L + i));
+      address.setCensus(census);
+      address.setFormattedAddress(i + " Sandford Walk, Exeter, EX1 2ET");
+      address.setFormattedAddressNag(i + " Sandford Walk, Exeter, EX1 2ET");
+      address.setFormattedAddressPaf(i % 3 == 0 ? "" : i + " Sandford Walk, Exeter, EX1 2ET");
+      address.setWelshFormattedAddressNag("");
+      address.setWelshFormattedAddressPaf(i + " Sandford Walk, Exeter, EX1 2ET");
+      address.setLpiLogicalStatus("1");
+      page.add(address);
+    }
+    AddressIndexResponseDTO response = new AddressIndexResponseDTO();
+    response.setAddresses(page);
+    response.setTotal(addresses * 2);
+    results = new AddressIndexSearchResultsDTO();
+    results.setDataVersion("39");
+    results.setResponse(response);
+  }
+
+  @Benchmark
+  public AddressQueryResponseDTO singlePass() {
+    return addressService.convertAddressIndexResultsToSummarisedAdresses(results);
+  }
+
+  @Benchmark
+  public AddressQueryResponseDTO streamLoopAndCopy() {
+    List<AddressDTO> summarisedAddresses =
+        results.getResponse().getAddresses().stream()
+            .filter(a -> !"8".equals(a.getLpiLogicalStatus()))
+            .map(AddressSummaryBenchmark::convertToSummarised)
+            .collect(toList());
+
+    for (AddressDTO address : summarisedAddresses) {
+      String addressType = address.getAddressType();
+      if (addressType != null && addressType.equals("NA")) {
+        address.setAddressType(AddressType.HH.name());
+        address.setEstabType(EstabType.HOUSEHOLD.name());
+        address.setEstabDescription("Household");
+      }
+    }
+
+    AddressQueryResponseDTO queryResponse = new AddressQueryResponseDTO();
+    queryResponse.setDataVersion(results.getDataVersion());
+    queryResponse.setAddresses(new ArrayList<>(summarisedAddresses));
+    queryResponse.setTotal(results.getResponse().getTotal());
+    return queryResponse;
+  }
+
+  // As summarised before the reclassification was folded in
+  private static AddressDTO convertToSummarised(AddressIndexAddressDTO fullAddress) {
+    String formattedAddress = fullAddress.getFormattedAddress();
+    String estabDescription = fullAddress.getCensus().getEstabType();
+
+    AddressDTO addressSummary = new AddressDTO();
+    addressSummary.setUprn(fullAddress.getUprn());
+    addressSummary.setRegion(fullAddress.getCensus().getCountryCode());
+    addressSummary.setAddressType(fullAddress.getCensus().getAddressType());
+    addressSummary.setEstabType(EstabType.forCode(estabDescription).name());
+    addressSummary.setEstabDescription(estabDescription);
+    addressSummary.setFormattedAddress(
+        StringUtils.selectFirstNonBlankString(
+            fullAddress.getFormattedAddressPaf(),
+            fullAddress.getFormattedAddressNag(),
+            formattedAddress));
+    addressSummary.setWelshFormattedAddress(
+        StringUtils.selectFirstNonBlankString(
+            fullAddress.getWelshFormattedAddressPaf(),
+            fullAddress.getWelshFormattedAddressNag(),
+            formattedAddress));
+    return addressSummary;
+  }
+}
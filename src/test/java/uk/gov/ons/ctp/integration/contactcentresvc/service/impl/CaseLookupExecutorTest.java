@@ -0,0 +1,231 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseLookupSettings;
+
+public class CaseLookupExecutorTest {
+
+  private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private CaseLookupExecutor executor;
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+  }
+
+  private void createExecutor(boolean concurrent) {
+    createExecutor(concurrent, 0);
+  }
+
+  private void createExecutor(boolean concurrent, long cacheDeadlineMillis) {
+    CaseLookupSettings settings = new CaseLookupSettings();
+    settings.setConcurrent(concurrent);
+    settings.setCacheDeadlineMillis(cacheDeadlineMillis);
+    executor = new CaseLookupExecutor(settings, meterRegistry);
+  }
+
+  @Test
+  public void shouldRunCacheLegAfterRmLegWhenSequential() throws Exception {
+    createExecutor(false);
+    assertFalse(executor.isConcurrent());
+    List<String> calls = new ArrayList<>();
+
+    FutureTask<String> cacheLeg = executor.startCacheLeg("id", () -> record(calls, "cache"));
+    String rmResult = executor.callRm("id", () -> record(calls, "rm"));
+    String cacheResult = executor.join(cacheLeg);
+
+    assertEquals("rm", rmResult);
+    assertEquals("cache", cacheResult);
+    assertEquals(List.of("rm", "cache"), calls);
+  }
+
+  @Test
+  public void shouldRunCacheLegOnPoolThreadWhenConcurrent() throws Exception {
+    createExecutor(true);
+    assertTrue(executor.isConcurrent());
+    String callerThread = Thread.currentThread().getName();
+
+    FutureTask<String> cacheLeg =
+        executor.startCacheLeg("id", () -> Thread.currentThread().getName());
+    String rmThread = executor.callRm("id", () -> Thread.currentThread().getName());
+
+    assertEquals(callerThread, rmThread);
+    String cacheThread = executor.join(cacheLeg);
+    if (!callerThread.equals(cacheThread)) {
+      assertTrue(cacheThread, cacheThread.startsWith("case-lookup-"));
+    }
+  }
+
+  @Test
+  public void shouldRethrowCTPExceptionFromCacheLeg() {
+    createExecutor(true);
+    CTPException failure = new CTPException(Fault.SYSTEM_ERROR, "Firestore down");
+
+    FutureTask<String> cacheLeg =
+        executor.startCacheLeg(
+            "id",
+            () -> {
+              throw failure;
+            });
+
+    CTPException e = assertThrows(CTPException.class, () -> executor.join(cacheLeg));
+    assertSame(failure, e);
+  }
+
+  @Test
+  public void shouldRethrowRuntimeExceptionFromCacheLeg() {
+    createExecutor(false);
+    ResponseStatusException failure = new ResponseStatusException(HttpStatus.BAD_GATEWAY);
+
+    FutureTask<String> cacheLeg =
+        executor.startCacheLeg(
+            "id",
+            () -> {
+              throw failure;
+            });
+
+    ResponseStatusException e =
+        assertThrows(ResponseStatusException.class, () -> executor.join(cacheLeg));
+    assertSame(failure, e);
+  }
+
+  @Test
+  public void shouldTimeEachLeg() throws Exception {
+    createExecutor(false);
+
+    executor.join(executor.startCacheLeg("uprn", () -> "cache"));
+    executor.callRm("uprn", () -> "rm");
+
+    assertEquals(1, legTimerCount("uprn", CaseLookupExecutor.RM_LEG));
+    assertEquals(1, legTimerCount("uprn", CaseLookupExecutor.CACHE_LEG));
+  }
+
+  @Test
+  public void shouldTimeFailedLeg() {
+    createExecutor(false);
+
+    assertThrows(
+        ResponseStatusException.class,
+        () ->
+            executor.callRm(
+                "id",
+                () -> {
+                  throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+                }));
+
+    assertEquals(1, legTimerCount("id", CaseLookupExecutor.RM_LEG));
+  }
+
+  @Test
+  public void shouldNotRunAbandonedCacheLeg() throws Exception {
+    createExecutor(false);
+    List<String> calls = new ArrayList<>();
+
+    FutureTask<String> cacheLeg = executor.startCacheLeg("id", () -> record(calls, "cache"));
+    executor.abandon(cacheLeg);
+
+    assertTrue(cacheLeg.isCancelled());
+    assertTrue(calls.isEmpty());
+  }
+
+  @Test
+  public void shouldReturnCacheResultWithinDeadline() throws Exception {
+    createExecutor(true, 5000);
+
+    FutureTask<String> cacheLeg = executor.startCacheLeg("uprn", () -> "cache");
+
+    assertEquals(Optional.of("cache"), executor.joinWithinDeadline("uprn", cacheLeg));
+  }
+
+  @Test
+  public void shouldGiveUpOnSlowCacheLegAfterDeadline() throws Exception {
+    createExecutor(true, 50);
+    CountDownLatch release = new CountDownLatch(1);
+
+    FutureTask<String> cacheLeg =
+        executor.startCacheLeg(
+            "uprn",
+            () -> {
+              awaitQuietly(release);
+              return "cache";
+            });
+
+    try {
+      assertEquals(Optional.empty(), executor.joinWithinDeadline("uprn", cacheLeg));
+      assertEquals(
+          1.0,
+          meterRegistry
+              .get(CaseLookupExecutor.CACHE_DEADLINE_COUNTER_NAME)
+              .tag("lookup", "uprn")
+              .counter()
+              .count(),
+          0.0);
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void shouldIgnoreDeadlineWhenSequential() throws Exception {
+    createExecutor(false, 1);
+
+    FutureTask<String> cacheLeg =
+        executor.startCacheLeg(
+            "uprn",
+            () -> {
+              sleepQuietly(20);
+              return "cache";
+            });
+
+    assertEquals(Optional.of("cache"), executor.joinWithinDeadline("uprn", cacheLeg));
+  }
+
+  private void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void sleepQuietly(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private long legTimerCount(String lookup, String leg) {
+    return meterRegistry
+        .get(CaseLookupExecutor.LEG_TIMER_NAME)
+        .tag("lookup", lookup)
+        .tag("leg", leg)
+        .timer()
+        .count();
+  }
+
+  private String record(List<String> calls, String leg) {
+    calls.add(leg);
+    return leg;
+  }
+}
@@ -0,0 +1,140 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import ma.glasnost.orika.MapperFacade;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.test.util.ReflectionTestUtils;
+import uk.gov.ons.ctp.common.FixtureHelper;
+import uk.gov.ons.ctp.integration.caseapiclient.caseservice.model.CaseContainerDTO;
+import uk.gov.ons.ctp.integration.caseapiclient.caseservice.model.EventDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.CCSPostcodesBean;
+import uk.gov.ons.ctp.integration.contactcentresvc.CCSvcBeanMapper;
+import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CCSPostcodes;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseServiceSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseDTO;
+
+/**
+ * Measures the work done by the case service for each case it reads, other than calling RM and
+ * the cloud data store, which are left out: mapping RM's and our own cached cases, filtering case
+ * events, picking the latest case, and checking whether a postcode is in the CCS sample. Run
+ * through the jmh profile, eg:
+ *
+ * <pre>
+ * mvn -Pjmh verify -Djmh.include=CaseServiceImplBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CaseServiceImplBenchmark {
+
+  // A case which has been through a survey's worth of fulfilments and launches
+  private static final int EVENTS_PER_CASE = 30;
+
+  private static final int CCS_POSTCODES = 20000;
+
+  private MapperFacade mapper = new CCSvcBeanMapper();
+
+  private CaseServiceImpl caseService = new CaseServiceImpl();
+
+  private CCSPostcodesBean ccsPostcodesBean = new CCSPostcodesBean();
+
+  private File ccsPostcodeFile;
+
+  private CaseContainerDTO rmCase;
+
+  private List<EventDTO> rmCaseEvents;
+
+  private CachedCase cachedCase;
+
+  private List<CaseDTO> cases;
+
+  @Setup
+  public void setup() throws Exception {
+    List<CaseContainerDTO> rmCases = FixtureHelper.loadPackageFixtures(CaseContainerDTO[].class);
+    rmCase = rmCases.get(0);
+    rmCaseEvents = new ArrayList<>();
+    while (rmCaseEvents.size() < EVENTS_PER_CASE) {
+      rmCaseEvents.addAll(rmCase.getCaseEvents());
+    }
+    rmCase.setCaseEvents(rmCaseEvents);
+    cachedCase = FixtureHelper.loadPackageFixtures(CachedCase[].class).get(0);
+    cases = mapper.mapAsList(rmCases, CaseDTO.class);
+
+    AppConfig appConfig = new AppConfig();
+    CaseServiceSettings caseServiceSettings = new CaseServiceSettings();
+    // The fixture's other event types are filtered out
+    caseServiceSettings.setWhitelistedEventCategories(Set.of("CASE_CREATED", "CASE_UPDATED"));
+    appConfig.setCaseServiceSettings(caseServiceSettings);
+
+    ccsPostcodeFile = File.createTempFile("ccs-postcodes", ".txt");
+    List<String> ccsPostcodes = new ArrayList<>(CCS_POSTCODES);
+    for (int i = 0; i < CCS_POSTCODES; i++) {
+      ccsPostcodes.add(String.format("HP%d %dHU", i / 100, i % 100));
+    }
+    Files.write(ccsPostcodeFile.toPath(), ccsPostcodes);
+    CCSPostcodes ccsPostcodeSettings = new CCSPostcodes();
+    ccsPostcodeSettings.setCcsPostcodePath(ccsPostcodeFile.getPath());
+    appConfig.setCcsPostcodes(ccsPostcodeSettings);
+
+    ReflectionTestUtils.setField(caseService, "appConfig", appConfig);
+    ReflectionTestUtils.setField(ccsPostcodesBean, "appConfig", appConfig);
+    ReflectionTestUtils.invokeMethod(ccsPostcodesBean, "init");
+  }
+
+  @TearDown
+  public void tearDown() {
+    ccsPostcodeFile.delete();
+  }
+
+  @Benchmark
+  public CaseDTO mapRmCase() {
+    return mapper.map(rmCase, CaseDTO.class);
+  }
+
+  @Benchmark
+  public CaseDTO mapCachedCase() {
+    return mapper.map(cachedCase, CaseDTO.class);
+  }
+
+  @Benchmark
+  public CaseContainerDTO filterCaseEvents() {
+    // the events are replaced by those which pass the filter
+    rmCase.setCaseEvents(rmCaseEvents);
+    return caseService.filterCaseEvents(rmCase, true);
+  }
+
+  @Benchmark
+  public Object latestCase() {
+    TimeOrderedCases timeOrderedCases = new TimeOrderedCases();
+    timeOrderedCases.add(cases);
+    return timeOrderedCases.latest();
+  }
+
+  @Benchmark
+  public void isInCcsPostcodes(Blackhole blackhole) {
+    blackhole.consume(ccsPostcodesBean.isInCCSPostcodes("HP22 4HU"));
+    blackhole.consume(ccsPostcodesBean.isInCCSPostcodes("EX1 2ET"));
+  }
+}
@@ -4,6 +4,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.ons.ctp.integration.contactcentresvc.CaseServiceFixture.UUID_0;
 
@@ -59,6 +61,7 @@ public class CaseServiceImplCaseInvalidateTest extends CaseServiceImplTestBase {
     assertEquals(dto.getCaseId(), payload.getCollectionCase().getId());
     assertEquals(dto.getNotes(), payload.getNotes());
     assertEquals(dto.getStatus().name(), payload.getReason());
+    verify(rmCaseCache).evict(UUID_0);
   }
 
   @Test
@@ -105,7 +108,8 @@ public class CaseServiceImplCaseInvalidateTest extends CaseServiceImplTestBase {
   public void shouldRejectCaseNotFoundInRMOrCache() throws Exception {
     when(caseServiceClient.getCaseById(any(), any()))
         .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND)); // Not in RM
-    when(dataRepo.readCachedCaseById(any())).thenReturn(Optional.empty()); // Not in cache either
+    when(dataRepo.readCachedCaseById(any(), anyBoolean()))
+        .thenReturn(Optional.empty()); // Not in cache either
     List<InvalidateCaseRequestDTO> requestsFromCCSvc =
         FixtureHelper.loadClassFixtures(InvalidateCaseRequestDTO[].class);
     InvalidateCaseRequestDTO dto = requestsFromCCSvc.get(0);
@@ -119,7 +123,7 @@ public class CaseServiceImplCaseInvalidateTest extends CaseServiceImplTestBase {
         .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND)); // Not in RM
     CachedCase cc = new CachedCase();
     cc.setCaseType(CaseType.HH);
-    when(dataRepo.readCachedCaseById(any())).thenReturn(Optional.of(cc));
+    when(dataRepo.readCachedCaseById(any(), anyBoolean())).thenReturn(Optional.of(cc));
     List<InvalidateCaseRequestDTO> requestsFromCCSvc =
         FixtureHelper.loadClassFixtures(InvalidateCaseRequestDTO[].class);
     InvalidateCaseRequestDTO dto = requestsFromCCSvc.get(0);
@@ -5,8 +5,10 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.ArrayList;
 import java.util.Arrays;
 import org.junit.Before;
@@ -16,7 +18,9 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 import uk.gov.ons.ctp.common.FixtureHelper;
 import uk.gov.ons.ctp.common.domain.CaseType;
@@ -33,6 +37,7 @@ import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.Add
 import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexSearchResultsDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
 import uk.gov.ons.ctp.integration.contactcentresvc.config.AddressIndexSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PostcodeCountryIndexSettings;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.DeliveryChannel;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.NewCaseRequestDTO;
@@ -272,6 +277,49 @@ public class CaseServiceImplCreateCaseForNewAddressTest extends CaseServiceImplT
     }
   }
 
+  @Test
+  public void shouldRejectScottishPostcodeFromIndexWithoutCallingAI() throws Exception {
+    usePostcodeCountryIndex();
+    NewCaseRequestDTO caseRequestDTO =
+        FixtureHelper.loadClassFixtures(NewCaseRequestDTO[].class).get(0);
+    caseRequestDTO.setPostcode("EH1 1YZ");
+    caseRequestDTO.setRegion(Region.E);
+
+    try {
+      target.createCaseForNewAddress(caseRequestDTO);
+      fail();
+    } catch (CTPException e) {
+      assertEquals(Fault.BAD_REQUEST, e.getFault());
+      assertTrue(e.toString(), e.getMessage().startsWith("Scottish addresses are not valid"));
+    }
+    verifyNoAIPostcodeQuery();
+  }
+
+  @Test
+  public void shouldOverrideSercoRegionFromIndexWithoutCallingAI() throws Exception {
+    usePostcodeCountryIndex();
+    NewCaseRequestDTO caseRequestDTO =
+        FixtureHelper.loadClassFixtures(NewCaseRequestDTO[].class).get(0);
+    caseRequestDTO.setPostcode("CF10 1AA"); // Cardiff postcode
+    caseRequestDTO.setRegion(Region.E);
+
+    doTestNewCaseForNewAddress(caseRequestDTO, "SPG", "U", Region.W, true);
+    verifyNoAIPostcodeQuery();
+  }
+
+  @Test
+  public void shouldCallAIForBorderPostcodeWhenUsingIndex() throws Exception {
+    usePostcodeCountryIndex();
+    NewCaseRequestDTO caseRequestDTO =
+        FixtureHelper.loadClassFixtures(NewCaseRequestDTO[].class).get(0);
+    caseRequestDTO.setPostcode("TD15 1AA"); // Berwick-upon-Tweed postcode
+    caseRequestDTO.setRegion(Region.W);
+
+    setupMockAIPostcodeQuery("E");
+
+    doTestNewCaseForNewAddress(caseRequestDTO, "SPG", "U", Region.E, true);
+  }
+
   @Test
   public void testNewCaseForNewAddress_AIReturnsNullRegion() throws Exception {
     // A NI postcode will cause the
@@ -413,6 +461,20 @@ public class CaseServiceImplCreateCaseForNewAddressTest extends CaseServiceImplT
     assertEquals(payload, payloadSent);
   }
 
+  private void usePostcodeCountryIndex() {
+    PostcodeCountryIndexSettings settings = new PostcodeCountryIndexSettings();
+    settings.setEnabled(true);
+    settings.setIndexFile(new ClassPathResource("postcode/postcode-country-index-v2.csv"));
+    ReflectionTestUtils.setField(
+        target,
+        "postcodeCountryIndex",
+        new PostcodeCountryIndex(settings, new SimpleMeterRegistry()));
+  }
+
+  private void verifyNoAIPostcodeQuery() {
+    Mockito.verify(restClient, never()).getResource(any(), any(), any(), any(), any());
+  }
+
   private void setupMockAIPostcodeQuery(String countryCode) {
     AddressIndexSearchResultsDTO resultsFromAddressIndex =
         FixtureHelper.loadClassFixtures(AddressIndexSearchResultsDTO[].class).get(0);
@@ -7,6 +7,7 @@ import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
 import static uk.gov.ons.ctp.integration.contactcentresvc.CaseServiceFixture.UUID_0;
 import static uk.gov.ons.ctp.integration.contactcentresvc.CaseServiceFixture.UUID_1;
@@ -161,7 +162,8 @@ public class CaseServiceImplFulfilmentTest extends CaseServiceImplTestBase {
     Mockito.doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND))
         .when(caseServiceClient)
         .getCaseById(eq(UUID_0), any());
-    Mockito.when(dataRepo.readCachedCaseById(eq(UUID_0))).thenReturn(Optional.empty());
+    Mockito.when(dataRepo.readCachedCaseById(eq(UUID_0), anyBoolean()))
+        .thenReturn(Optional.empty());
 
     PostalFulfilmentRequestDTO requestBodyDTOFixture =
         getPostalFulfilmentRequestDTO(UUID_0, "Mrs", "Sally", "Smurf");
@@ -272,7 +274,8 @@ public class CaseServiceImplFulfilmentTest extends CaseServiceImplTestBase {
     Mockito.doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND))
         .when(caseServiceClient)
         .getCaseById(eq(UUID_0), any());
-    Mockito.when(dataRepo.readCachedCaseById(eq(UUID_0))).thenReturn(Optional.empty());
+    Mockito.when(dataRepo.readCachedCaseById(eq(UUID_0), anyBoolean()))
+        .thenReturn(Optional.empty());
 
     SMSFulfilmentRequestDTO requestBodyDTOFixture = getSMSFulfilmentRequestDTO(caseData);
 
@@ -388,7 +391,8 @@ public class CaseServiceImplFulfilmentTest extends CaseServiceImplTestBase {
       Mockito.doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND))
           .when(caseServiceClient)
           .getCaseById(eq(UUID_0), any());
-      Mockito.when(dataRepo.readCachedCaseById(eq(UUID_0))).thenReturn(Optional.of(cachedCase));
+      Mockito.when(dataRepo.readCachedCaseById(eq(UUID_0), anyBoolean()))
+          .thenReturn(Optional.of(cachedCase));
     } else {
       Mockito.when(caseServiceClient.getCaseById(eq(UUID_0), any()))
           .thenReturn(caseFromCaseService);
@@ -449,7 +453,8 @@ public class CaseServiceImplFulfilmentTest extends CaseServiceImplTestBase {
       Mockito.doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND))
           .when(caseServiceClient)
           .getCaseById(eq(UUID_0), any());
-      Mockito.when(dataRepo.readCachedCaseById(eq(UUID_0))).thenReturn(Optional.of(cachedCase));
+      Mockito.when(dataRepo.readCachedCaseById(eq(UUID_0), anyBoolean()))
+          .thenReturn(Optional.of(cachedCase));
     } else {
       Mockito.when(caseServiceClient.getCaseById(eq(UUID_0), any()))
           .thenReturn(caseFromCaseService);
@@ -4,10 +4,12 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
 import static uk.gov.ons.ctp.integration.contactcentresvc.CaseServiceFixture.UUID_0;
 import static uk.gov.ons.ctp.integration.contactcentresvc.CaseServiceFixture.UUID_1;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.Collections;
@@ -16,12 +18,14 @@ import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import lombok.SneakyThrows;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 import uk.gov.ons.ctp.common.FixtureHelper;
 import uk.gov.ons.ctp.common.domain.CaseType;
@@ -31,6 +35,7 @@ import uk.gov.ons.ctp.common.error.CTPException;
 import uk.gov.ons.ctp.common.error.CTPException.Fault;
 import uk.gov.ons.ctp.integration.caseapiclient.caseservice.model.CaseContainerDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseLookupSettings;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseQueryRequestDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.service.CaseService;
@@ -49,11 +54,20 @@ public class CaseServiceImplGetCaseByIdTest extends CaseServiceImplTestBase {
   private static final String CACHED_CASE_UPRN_0 = "1347459987";
   private static final String RM_CASE_UPRN_0 = "1347459988";
 
+  private CaseLookupExecutor concurrentLookupExecutor;
+
   @Before
   public void setup() {
     mockCaseEventWhiteList();
   }
 
+  @After
+  public void tearDown() {
+    if (concurrentLookupExecutor != null) {
+      concurrentLookupExecutor.shutdown();
+    }
+  }
+
   @Test
   public void testGetHouseholdCaseByCaseId_withCaseDetails() {
     doTestGetCaseByCaseId(CaseType.HH, CASE_EVENTS_TRUE, NO_CACHED_CASE);
@@ -230,6 +244,45 @@ public class CaseServiceImplGetCaseByIdTest extends CaseServiceImplTestBase {
     doGetCaseByIdGetsError(UUID_0);
   }
 
+  @Test
+  public void testGetLatestFromCacheWhenResultsFromBothRmAndCache_concurrentLookup()
+      throws Exception {
+    useConcurrentLookups();
+    testGetLatestFromCacheWhenResultsFromBothRmAndCache();
+  }
+
+  @Test
+  public void testGetLatestFromRmWhenResultsFromBothRmAndCache_concurrentLookup()
+      throws Exception {
+    useConcurrentLookups();
+    testGetLatestFromRmWhenResultsFromBothRmAndCache();
+  }
+
+  @Test
+  public void testRMCaseNotFound_concurrentLookup() throws CTPException {
+    useConcurrentLookups();
+    testRMCaseNotFound();
+  }
+
+  @Test
+  public void testRMAndCachedCaseNotFound_concurrentLookup() throws CTPException {
+    useConcurrentLookups();
+    doGetCaseByIdNotFound(UUID_0);
+  }
+
+  @Test
+  public void testHandleErrorFromRM_concurrentLookup() throws CTPException {
+    useConcurrentLookups();
+    doGetCaseByIdGetsError(UUID_0);
+  }
+
+  private void useConcurrentLookups() {
+    CaseLookupSettings settings = new CaseLookupSettings();
+    settings.setConcurrent(true);
+    concurrentLookupExecutor = new CaseLookupExecutor(settings, new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(target, "caseLookupExecutor", concurrentLookupExecutor);
+  }
+
   @SneakyThrows
   private void doTestGetCaseByCaseId(CaseType caseType, boolean caseEvents, boolean cached) {
     // Build results to be returned from search
@@ -246,7 +299,7 @@ public class CaseServiceImplGetCaseByIdTest extends CaseServiceImplTestBase {
       List<CachedCase> casesFromRepository = FixtureHelper.loadPackageFixtures(CachedCase[].class);
       caseFromRepository = casesFromRepository.get(1);
       caseFromRepository.setCaseType(caseType);
-      Mockito.when(dataRepo.readCachedCaseById(eq(UUID_0)))
+      Mockito.when(dataRepo.readCachedCaseById(eq(UUID_0), anyBoolean()))
           .thenReturn(Optional.of(caseFromRepository));
 
       expectedCaseResult = mapperFacade.map(caseFromRepository, CaseDTO.class);
@@ -293,7 +346,7 @@ public class CaseServiceImplGetCaseByIdTest extends CaseServiceImplTestBase {
       String expectedUprn)
       throws CTPException {
     Mockito.when(caseServiceClient.getCaseById(eq(caseId), any())).thenReturn(caseFromCaseService);
-    Mockito.when(dataRepo.readCachedCaseById(eq(caseId)))
+    Mockito.when(dataRepo.readCachedCaseById(eq(caseId), anyBoolean()))
         .thenReturn(Optional.of(caseFromRepository));
 
     // Run the request
@@ -312,7 +365,7 @@ public class CaseServiceImplGetCaseByIdTest extends CaseServiceImplTestBase {
       throws CTPException {
     Mockito.when(caseServiceClient.getCaseById(eq(caseId), any()))
         .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND)); // Not in RM
-    Mockito.when(dataRepo.readCachedCaseById(eq(caseId)))
+    Mockito.when(dataRepo.readCachedCaseById(eq(caseId), anyBoolean()))
         .thenReturn(Optional.of(casesFromRepository.get(0)));
 
     // Run the request
@@ -326,7 +379,8 @@ public class CaseServiceImplGetCaseByIdTest extends CaseServiceImplTestBase {
   private void doGetCaseByIdNotFound(UUID caseId) throws CTPException {
     Mockito.when(caseServiceClient.getCaseById(eq(caseId), any()))
         .thenThrow(new ResponseStatusException(HttpStatus.NOT_FOUND)); // Not in RM
-    Mockito.when(dataRepo.readCachedCaseById(eq(caseId))).thenReturn(Optional.empty());
+    Mockito.when(dataRepo.readCachedCaseById(eq(caseId), anyBoolean()))
+        .thenReturn(Optional.empty());
 
     Fault fault = null;
     String message = null;
@@ -4,6 +4,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doThrow;
@@ -14,6 +15,7 @@ import static org.mockito.Mockito.when;
 import static uk.gov.ons.ctp.integration.contactcentresvc.CaseServiceFixture.UUID_0;
 import static uk.gov.ons.ctp.integration.contactcentresvc.CaseServiceFixture.UUID_1;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.ArrayList;
@@ -22,12 +24,16 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.server.ResponseStatusException;
 import uk.gov.ons.ctp.common.FixtureHelper;
 import uk.gov.ons.ctp.common.domain.AddressType;
@@ -43,10 +49,12 @@ import uk.gov.ons.ctp.common.event.model.NewAddress;
 import uk.gov.ons.ctp.integration.caseapiclient.caseservice.model.CaseContainerDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexAddressCompositeDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.cloud.CachedCase;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseLookupSettings;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseQueryRequestDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.DeliveryChannel;
 import uk.gov.ons.ctp.integration.contactcentresvc.service.CaseService;
+import uk.gov.ons.ctp.integration.contactcentresvc.service.CasesAtAddress;
 
 /**
  * Unit Test {@link CaseService#getCaseByUPRN(UniquePropertyReferenceNumber, CaseQueryRequestDTO)
@@ -70,6 +78,7 @@ public class CaseServiceImplGetCaseByUprnTest extends CaseServiceImplTestBase {
   List<CaseContainerDTO> casesFromRm;
   List<CachedCase> casesFromCache;
   private AddressIndexAddressCompositeDTO addressFromAI;
+  private CaseLookupExecutor concurrentLookupExecutor;
 
   @Before
   public void setup() {
@@ -84,6 +93,13 @@ public class CaseServiceImplGetCaseByUprnTest extends CaseServiceImplTestBase {
     addressFromAI = FixtureHelper.loadClassFixtures(AddressIndexAddressCompositeDTO[].class).get(0);
   }
 
+  @After
+  public void tearDown() {
+    if (concurrentLookupExecutor != null) {
+      concurrentLookupExecutor.shutdown();
+    }
+  }
+
   @Test
   public void testGetCaseByUprn_withCaseDetailsForCaseTypeHH() throws Exception {
     casesFromRm.get(0).setCaseType(CaseType.HH.name());
@@ -427,8 +443,65 @@ public class CaseServiceImplGetCaseByUprnTest extends CaseServiceImplTestBase {
     assertEquals(UUID_0, result.getId());
   }
 
+  @Test
+  public void shouldGetLatestFromCacheWhenResultsFromBothRmAndCache_concurrentLookup()
+      throws Exception {
+    useConcurrentLookups(5000);
+    shouldGetLatestFromCacheWhenResultsFromBothRmAndCache();
+  }
+
+  @Test
+  public void shouldCreateNewCaseWhenNothingInRmOrCache_concurrentLookup() throws Exception {
+    useConcurrentLookups(5000);
+    mockNothingInRm();
+    mockNothingInTheCache();
+    mockAddressFromAI();
+
+    CaseDTO result = getCasesByUprn(false);
+    verifyNewCase(result, AddressType.HH.name(), "Household", "U");
+  }
+
+  @Test
+  public void shouldReturnRmCaseAsPartialResponseWhenCacheTooSlow() throws Exception {
+    useConcurrentLookups(50);
+    casesFromRm.get(0).setLastUpdated(utcDate(LocalDateTime.of(2020, 1, 4, 0, 0)));
+    casesFromRm.get(1).setLastUpdated(utcDate(LocalDateTime.of(2019, 12, 12, 0, 0)));
+    mockCasesFromRm();
+    CountDownLatch release = new CountDownLatch(1);
+    when(dataRepo.readCachedCasesByUprn(eq(UPRN), anyBoolean()))
+        .thenAnswer(
+            invocation -> {
+              release.await(10, TimeUnit.SECONDS);
+              return casesFromCache;
+            });
+
+    try {
+      CasesAtAddress results = target.getCaseByUPRN(UPRN, new CaseQueryRequestDTO(false));
+      assertEquals(UUID_0, results.getCases().get(0).getId());
+      assertTrue(results.isPartial());
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  public void shouldNotFlagCompleteResponseAsPartial() throws Exception {
+    mockCasesFromRm();
+    mockCasesFromCache();
+
+    assertFalse(target.getCaseByUPRN(UPRN, new CaseQueryRequestDTO(false)).isPartial());
+  }
+
   // ---- helpers methods below ---
 
+  private void useConcurrentLookups(long cacheDeadlineMillis) {
+    CaseLookupSettings settings = new CaseLookupSettings();
+    settings.setConcurrent(true);
+    settings.setCacheDeadlineMillis(cacheDeadlineMillis);
+    concurrentLookupExecutor = new CaseLookupExecutor(settings, new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(target, "caseLookupExecutor", concurrentLookupExecutor);
+  }
+
   private Date utcDate(LocalDateTime dateTime) {
     return Date.from(dateTime.toInstant(ZoneOffset.UTC));
   }
@@ -453,19 +526,20 @@ public class CaseServiceImplGetCaseByUprnTest extends CaseServiceImplTestBase {
   }
 
   private void mockCachedCase() throws Exception {
-    when(dataRepo.readCachedCasesByUprn(UPRN)).thenReturn(List.of(casesFromCache.get(0)));
+    when(dataRepo.readCachedCasesByUprn(eq(UPRN), anyBoolean()))
+        .thenReturn(List.of(casesFromCache.get(0)));
   }
 
   private void mockCasesFromCache() throws Exception {
-    when(dataRepo.readCachedCasesByUprn(UPRN)).thenReturn(casesFromCache);
+    when(dataRepo.readCachedCasesByUprn(eq(UPRN), anyBoolean())).thenReturn(casesFromCache);
   }
 
   private void mockNothingInTheCache() throws Exception {
-    when(dataRepo.readCachedCasesByUprn(UPRN)).thenReturn(new ArrayList<>());
+    when(dataRepo.readCachedCasesByUprn(eq(UPRN), anyBoolean())).thenReturn(new ArrayList<>());
   }
 
   private void verifyHasReadCachedCases() throws Exception {
-    verify(dataRepo).readCachedCasesByUprn(any(UniquePropertyReferenceNumber.class));
+    verify(dataRepo).readCachedCasesByUprn(any(UniquePropertyReferenceNumber.class), anyBoolean());
   }
 
   private CachedCase verifyHasWrittenCachedCase() throws Exception {
@@ -598,7 +672,8 @@ public class CaseServiceImplGetCaseByUprnTest extends CaseServiceImplTestBase {
   }
 
   private CaseDTO getCasesByUprn(boolean caseEvents) throws CTPException {
-    List<CaseDTO> results = target.getCaseByUPRN(UPRN, new CaseQueryRequestDTO(caseEvents));
+    List<CaseDTO> results =
+        target.getCaseByUPRN(UPRN, new CaseQueryRequestDTO(caseEvents)).getCases();
     assertEquals(1, results.size());
     return results.get(0);
   }
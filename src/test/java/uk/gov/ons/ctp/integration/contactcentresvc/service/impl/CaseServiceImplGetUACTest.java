@@ -82,7 +82,8 @@ public class CaseServiceImplGetUACTest extends CaseServiceImplTestBase {
     Mockito.doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND))
         .when(caseServiceClient)
         .getCaseById(UUID_0, false);
-    Mockito.when(dataRepo.readCachedCaseById(UUID_0)).thenReturn(Optional.of(new CachedCase()));
+    Mockito.when(dataRepo.readCachedCaseById(UUID_0, false))
+        .thenReturn(Optional.of(new CachedCase()));
     target.getUACForCaseId(UUID_0, new UACRequestDTO());
   }
 
@@ -91,7 +92,7 @@ public class CaseServiceImplGetUACTest extends CaseServiceImplTestBase {
     Mockito.doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND))
         .when(caseServiceClient)
         .getCaseById(UUID_0, false);
-    Mockito.when(dataRepo.readCachedCaseById(UUID_0)).thenReturn(Optional.empty());
+    Mockito.when(dataRepo.readCachedCaseById(UUID_0, false)).thenReturn(Optional.empty());
     target.getUACForCaseId(UUID_0, new UACRequestDTO());
   }
 
@@ -178,7 +178,8 @@ public class CaseServiceImplLaunchTest extends CaseServiceImplTestBase {
     Mockito.doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND))
         .when(caseServiceClient)
         .getCaseById(UUID_0, false);
-    Mockito.when(dataRepo.readCachedCaseById(UUID_0)).thenReturn(Optional.of(new CachedCase()));
+    Mockito.when(dataRepo.readCachedCaseById(UUID_0, false))
+        .thenReturn(Optional.of(new CachedCase()));
     target.getLaunchURLForCaseId(UUID_0, new LaunchRequestDTO());
   }
 
@@ -187,7 +188,7 @@ public class CaseServiceImplLaunchTest extends CaseServiceImplTestBase {
     Mockito.doThrow(new ResponseStatusException(HttpStatus.NOT_FOUND))
         .when(caseServiceClient)
         .getCaseById(UUID_0, false);
-    Mockito.when(dataRepo.readCachedCaseById(UUID_0)).thenReturn(Optional.empty());
+    Mockito.when(dataRepo.readCachedCaseById(UUID_0, false)).thenReturn(Optional.empty());
     target.getLaunchURLForCaseId(UUID_0, new LaunchRequestDTO());
   }
 
@@ -7,6 +7,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -188,7 +189,7 @@ public class CaseServiceImplModifyCaseTest extends CaseServiceImplTestBase {
   @Test
   public void shouldAcceptCaseWhenFoundFromCache() throws Exception {
     mockRmCannotFindCase();
-    when(dataRepo.readCachedCaseById(eq(UUID_0))).thenReturn(Optional.of(cachedCase));
+    when(dataRepo.readCachedCaseById(eq(UUID_0), anyBoolean())).thenReturn(Optional.of(cachedCase));
     CaseDTO response = target.modifyCase(requestDTO);
     assertNotNull(response);
   }
@@ -196,7 +197,7 @@ public class CaseServiceImplModifyCaseTest extends CaseServiceImplTestBase {
   @Test
   public void shouldReturnNotFoundWhenNeitherRmOrCacheCaseExists() throws Exception {
     mockRmCannotFindCase();
-    when(dataRepo.readCachedCaseById(eq(UUID_0))).thenReturn(Optional.empty());
+    when(dataRepo.readCachedCaseById(eq(UUID_0), anyBoolean())).thenReturn(Optional.empty());
     CTPException e = assertThrows(CTPException.class, () -> target.modifyCase(requestDTO));
     assertEquals(Fault.RESOURCE_NOT_FOUND, e.getFault());
   }
@@ -232,6 +233,7 @@ public class CaseServiceImplModifyCaseTest extends CaseServiceImplTestBase {
     verifyRmCaseCall(1);
     AddressModification payload =
         verifyEventSent(EventType.ADDRESS_MODIFIED, AddressModification.class);
+    verify(rmCaseCache).evict(requestDTO.getCaseId());
 
     CollectionCaseCompact collectionCase = payload.getCollectionCase();
     assertEquals(caseContainerDTO.getId(), collectionCase.getId());
@@ -348,6 +350,7 @@ public class CaseServiceImplModifyCaseTest extends CaseServiceImplTestBase {
     verifyRmCaseCall(1);
     AddressTypeChanged payload =
         verifyEventSent(EventType.ADDRESS_TYPE_CHANGED, AddressTypeChanged.class);
+    verify(rmCaseCache).evict(requestDTO.getCaseId());
 
     assertNotNull(payload.getNewCaseId());
     assertNotEquals(requestDTO.getCaseId(), payload.getNewCaseId());
@@ -543,7 +546,7 @@ public class CaseServiceImplModifyCaseTest extends CaseServiceImplTestBase {
   }
 
   private void verifySavedCashedCase(CachedCase expected) throws Exception {
-    verify(dataRepo).writeCachedCase(cachedCaseCaptor.capture());
+    verify(dataRepo).updateCachedCase(cachedCaseCaptor.capture());
     CachedCase saved = cachedCaseCaptor.getValue();
     assertEquals(expected, saved);
   }
@@ -569,7 +572,7 @@ public class CaseServiceImplModifyCaseTest extends CaseServiceImplTestBase {
     caseContainerDTO.setEstabType(EstabType.HOUSEHOLD.getCode());
 
     mockRmCannotFindCase();
-    when(dataRepo.readCachedCaseById(eq(UUID_0))).thenReturn(Optional.of(cachedCase));
+    when(dataRepo.readCachedCaseById(eq(UUID_0), anyBoolean())).thenReturn(Optional.of(cachedCase));
 
     CaseDTO response = target.modifyCase(requestDTO);
 
@@ -600,7 +603,7 @@ public class CaseServiceImplModifyCaseTest extends CaseServiceImplTestBase {
     caseContainerDTO.setEstabType(EstabType.EMBASSY.getCode());
 
     mockRmCannotFindCase();
-    when(dataRepo.readCachedCaseById(eq(UUID_0))).thenReturn(Optional.of(cachedCase));
+    when(dataRepo.readCachedCaseById(eq(UUID_0), anyBoolean())).thenReturn(Optional.of(cachedCase));
 
     CaseDTO response = target.modifyCase(requestDTO);
 
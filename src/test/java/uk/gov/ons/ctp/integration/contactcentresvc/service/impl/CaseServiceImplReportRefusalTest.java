@@ -3,13 +3,16 @@ package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static uk.gov.ons.ctp.integration.contactcentresvc.CaseServiceFixture.A_REGION;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 import org.junit.Before;
 import org.junit.Test;
@@ -17,12 +20,15 @@ import org.junit.runner.RunWith;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
 import uk.gov.ons.ctp.common.domain.UniquePropertyReferenceNumber;
 import uk.gov.ons.ctp.common.event.EventPublisher.Channel;
 import uk.gov.ons.ctp.common.event.EventPublisher.EventType;
 import uk.gov.ons.ctp.common.event.model.AddressCompact;
 import uk.gov.ons.ctp.common.event.model.ContactCompact;
 import uk.gov.ons.ctp.common.event.model.RespondentRefusalDetails;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PgpKeySettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.RefusalEncryptionSettings;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.Reason;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.RefusalRequestDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.ResponseDTO;
@@ -44,10 +50,10 @@ public class CaseServiceImplReportRefusalTest extends CaseServiceImplTestBase {
   public void setup() {
     when(appConfig.getChannel()).thenReturn(Channel.CC);
 
-    Resource pubKey1 = new ClassPathResource(PUBLIC_KEY_1);
-    Resource pubKey2 = new ClassPathResource(PUBLIC_KEY_2);
-    when(appConfig.getPublicPgpKey1()).thenReturn(pubKey1);
-    when(appConfig.getPublicPgpKey2()).thenReturn(pubKey2);
+    List<Resource> publicKeys =
+        List.of(new ClassPathResource(PUBLIC_KEY_1), new ClassPathResource(PUBLIC_KEY_2));
+    ReflectionTestUtils.setField(
+        target, "pgpKeyRegistry", new PgpKeyRegistry(new PgpKeySettings(), publicKeys));
   }
 
   @Test
@@ -62,6 +68,20 @@ public class CaseServiceImplReportRefusalTest extends CaseServiceImplTestBase {
     doRespondentRefusalTest(dateTime, Reason.HARD, createContact());
   }
 
+  @Test
+  public void testRespondentRefusal_encryptedByPool() throws Exception {
+    RefusalEncryptionSettings settings = new RefusalEncryptionSettings();
+    settings.setPooled(true);
+    RefusalEncryptionExecutor executor =
+        new RefusalEncryptionExecutor(settings, new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(target, "refusalEncryptionExecutor", executor);
+    try {
+      doRespondentRefusalTest(new Date(), Reason.HARD, createContact());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void testRespondentRefusal_withEmptyContactFields() throws Exception {
     Date dateTime = new Date();
@@ -111,6 +131,7 @@ public class CaseServiceImplReportRefusalTest extends CaseServiceImplTestBase {
     assertTrue(refusal.isHouseholder());
     verifyEmptyRefusalAddress(refusal);
     assertEquals("HARD_REFUSAL", refusal.getType());
+    verify(rmCaseCache).evict(caseId);
   }
 
   private ContactCompact createContact() {
@@ -15,6 +15,7 @@ import static org.mockito.Mockito.when;
 import static uk.gov.ons.ctp.integration.contactcentresvc.CaseServiceFixture.AN_AGENT_ID;
 import static uk.gov.ons.ctp.integration.contactcentresvc.CaseServiceFixture.UUID_0;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
@@ -47,7 +48,12 @@ import uk.gov.ons.ctp.integration.contactcentresvc.CCSPostcodesBean;
 import uk.gov.ons.ctp.integration.contactcentresvc.CCSvcBeanMapper;
 import uk.gov.ons.ctp.integration.contactcentresvc.config.AppConfig;
 import uk.gov.ons.ctp.integration.contactcentresvc.config.CCSPostcodes;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseLookupSettings;
 import uk.gov.ons.ctp.integration.contactcentresvc.config.CaseServiceSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PostcodeCountryCacheSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PostcodeCountryIndexSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.RefusalEncryptionSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.RmCaseCacheSettings;
 import uk.gov.ons.ctp.integration.contactcentresvc.repository.CaseDataRepository;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseDTO;
 import uk.gov.ons.ctp.integration.contactcentresvc.representation.CaseEventDTO;
@@ -76,6 +82,26 @@ public abstract class CaseServiceImplTestBase {
 
   @Mock CCSPostcodesBean ccsPostcodesBean;
 
+  @Spy
+  CaseLookupExecutor caseLookupExecutor =
+      new CaseLookupExecutor(new CaseLookupSettings(), new SimpleMeterRegistry());
+
+  @Spy
+  RmCaseCache rmCaseCache = new RmCaseCache(new RmCaseCacheSettings(), new SimpleMeterRegistry());
+
+  @Spy
+  PostcodeCountryIndex postcodeCountryIndex =
+      new PostcodeCountryIndex(new PostcodeCountryIndexSettings(), new SimpleMeterRegistry());
+
+  @Spy
+  PostcodeCountryCache postcodeCountryCache =
+      new PostcodeCountryCache(
+          new PostcodeCountryCacheSettings(), null, new SimpleMeterRegistry());
+
+  @Spy
+  RefusalEncryptionExecutor refusalEncryptionExecutor =
+      new RefusalEncryptionExecutor(new RefusalEncryptionSettings(), new SimpleMeterRegistry());
+
   static final List<DeliveryChannel> ALL_DELIVERY_CHANNELS =
       List.of(DeliveryChannel.POST, DeliveryChannel.SMS);
 
@@ -114,6 +140,7 @@ public abstract class CaseServiceImplTestBase {
 
   void verifyNotWrittenCachedCase() throws Exception {
     verify(dataRepo, never()).writeCachedCase(any());
+    verify(dataRepo, never()).updateCachedCase(any());
   }
 
   void verifyCase(CaseDTO results, CaseDTO expectedCaseResult, boolean caseEventsExpected)
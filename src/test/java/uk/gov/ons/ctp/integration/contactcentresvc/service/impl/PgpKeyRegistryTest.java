@@ -0,0 +1,120 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.List;
+import org.bouncycastle.openpgp.PGPPublicKey;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PgpKeySettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.util.PgpEncrypt;
+import uk.gov.ons.ctp.integration.contactcentresvc.util.PgpFieldEncryptor;
+
+public class PgpKeyRegistryTest {
+  private static final String PUBLIC_KEY_1 = "pgp/key1.asc";
+  private static final String PUBLIC_KEY_2 = "pgp/key2.asc";
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private PgpKeyRegistry createRegistry(long reloadCheckIntervalSeconds, Resource... keyFiles) {
+    PgpKeySettings settings = new PgpKeySettings();
+    settings.setReloadCheckIntervalSeconds(reloadCheckIntervalSeconds);
+    return new PgpKeyRegistry(settings, List.of(keyFiles));
+  }
+
+  @Test
+  public void shouldReadKeysOnce() throws Exception {
+    Resource key1 = spy(new ClassPathResource(PUBLIC_KEY_1));
+    Resource key2 = spy(new ClassPathResource(PUBLIC_KEY_2));
+    PgpKeyRegistry registry = createRegistry(60, key1, key2);
+
+    Collection<PGPPublicKey> keys = registry.getPublicKeys();
+    for (int i = 0; i < 3; i++) {
+      assertSame(keys, registry.getPublicKeys());
+    }
+
+    assertEquals(keyIds(PgpEncrypt.readPublicKeys(List.of(key1, key2))), keyIds(keys));
+    // once by the registry, and once above
+    verify(key1, times(2)).getInputStream();
+    verify(key2, times(2)).getInputStream();
+  }
+
+  @Test
+  public void shouldKeepKeysWhenKeyFileUnchanged() throws Exception {
+    PgpKeyRegistry registry = createRegistry(0, new FileSystemResource(keyFile(PUBLIC_KEY_1)));
+    Collection<PGPPublicKey> keys = registry.getPublicKeys();
+    PgpFieldEncryptor fieldEncryptor = registry.getFieldEncryptor();
+
+    registry.reloadIfChanged();
+
+    assertSame(keys, registry.getPublicKeys());
+    assertSame(fieldEncryptor, registry.getFieldEncryptor());
+  }
+
+  @Test
+  public void shouldReloadChangedKeyFile() throws Exception {
+    File keyFile = keyFile(PUBLIC_KEY_1);
+    PgpKeyRegistry registry = createRegistry(0, new FileSystemResource(keyFile));
+    List<Long> original = keyIds(registry.getPublicKeys());
+
+    replace(keyFile, PUBLIC_KEY_2);
+    registry.reloadIfChanged();
+
+    List<Long> reloaded = keyIds(registry.getPublicKeys());
+    List<Resource> expected = List.of(new ClassPathResource(PUBLIC_KEY_2));
+    assertNotEquals(original, reloaded);
+    assertEquals(keyIds(PgpEncrypt.readPublicKeys(expected)), reloaded);
+  }
+
+  @Test
+  public void shouldKeepKeysWhenChangedKeyFileCannotBeRead() throws Exception {
+    File keyFile = keyFile(PUBLIC_KEY_1);
+    PgpKeyRegistry registry = createRegistry(0, new FileSystemResource(keyFile));
+    Collection<PGPPublicKey> keys = registry.getPublicKeys();
+
+    Files.delete(keyFile.toPath());
+    registry.reloadIfChanged();
+
+    assertSame(keys, registry.getPublicKeys());
+  }
+
+  @Test(expected = RuntimeException.class)
+  public void shouldRejectMissingKeyFile() {
+    createRegistry(60, new FileSystemResource(new File(folder.getRoot(), "missing.asc")))
+        .getPublicKeys();
+  }
+
+  private File keyFile(String key) throws Exception {
+    File keyFile = folder.newFile();
+    replace(keyFile, key);
+    return keyFile;
+  }
+
+  private void replace(File keyFile, String key) throws Exception {
+    long previous = keyFile.lastModified();
+    try (InputStream in = new ClassPathResource(key).getInputStream()) {
+      Files.copy(in, keyFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    // file times may be too coarse to tell a quick rewrite apart
+    keyFile.setLastModified(previous + 10000);
+  }
+
+  private List<Long> keyIds(Collection<PGPPublicKey> keys) {
+    return keys.stream().map(PGPPublicKey::getKeyID).collect(toList());
+  }
+}
@@ -0,0 +1,105 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PostcodeCountryCacheSettings;
+
+public class PostcodeCountryCacheTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private AtomicInteger aiCalls = new AtomicInteger();
+
+  private PostcodeCountryCache createCache(boolean enabled, String preloadPath) {
+    return createCache(enabled, preloadPath, "39");
+  }
+
+  private PostcodeCountryCache createCache(
+      boolean enabled, String preloadPath, String preloadEpoch) {
+    PostcodeCountryCacheSettings settings = new PostcodeCountryCacheSettings();
+    settings.setEnabled(enabled);
+    settings.setPreloadPath(preloadPath);
+    settings.setPreloadEpoch(preloadEpoch);
+    return new PostcodeCountryCache(settings, "39", new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void shouldCallAiEveryTimeWhenDisabled() {
+    PostcodeCountryCache cache = createCache(false, null);
+
+    assertEquals(Optional.of("E"), cache.getCountryCode("PO15 5RR", ai("E")));
+    assertEquals(Optional.of("E"), cache.getCountryCode("PO15 5RR", ai("E")));
+
+    assertEquals(2, aiCalls.get());
+  }
+
+  @Test
+  public void shouldCacheCountryCodeByNormalisedPostcode() {
+    PostcodeCountryCache cache = createCache(true, null);
+
+    assertEquals(Optional.of("W"), cache.getCountryCode("CF10 1AA", ai("W")));
+    assertEquals(Optional.of("W"), cache.getCountryCode("cf101aa", ai("W")));
+    assertEquals(Optional.of("W"), cache.getCountryCode(" Cf10  1Aa ", ai("W")));
+
+    assertEquals(1, aiCalls.get());
+  }
+
+  @Test
+  public void shouldNotCacheUnknownPostcode() {
+    PostcodeCountryCache cache = createCache(true, null);
+
+    assertEquals(Optional.empty(), cache.getCountryCode("ZZ1 1ZZ", ai(null)));
+    assertEquals(Optional.of("E"), cache.getCountryCode("ZZ1 1ZZ", ai("E")));
+
+    assertEquals(2, aiCalls.get());
+  }
+
+  @Test
+  public void shouldUsePreloadedCountryCodesWithoutCallingAi() throws Exception {
+    File preload = folder.newFile("postcode-countries");
+    Files.write(preload.toPath(), List.of("CF10 1AA,W", "", "not a valid line", "eh1 1yz, s"));
+    PostcodeCountryCache cache = createCache(true, preload.getPath());
+
+    assertEquals(Optional.of("W"), cache.getCountryCode("CF10 1AA", ai("E")));
+    assertEquals(Optional.of("S"), cache.getCountryCode("EH1 1YZ", ai("E")));
+    assertEquals(0, aiCalls.get());
+
+    assertEquals(Optional.of("E"), cache.getCountryCode("PO15 5RR", ai("E")));
+    assertEquals(1, aiCalls.get());
+  }
+
+  @Test
+  public void shouldIgnorePreloadFileBuiltForAnotherEpoch() throws Exception {
+    File preload = folder.newFile("postcode-countries");
+    Files.write(preload.toPath(), List.of("CF10 1AA,E"));
+    PostcodeCountryCache cache = createCache(true, preload.getPath(), "38");
+
+    assertEquals(Optional.of("W"), cache.getCountryCode("CF10 1AA", ai("W")));
+    assertEquals(1, aiCalls.get());
+  }
+
+  @Test
+  public void shouldFallBackToAiWhenPreloadFileMissing() {
+    PostcodeCountryCache cache = createCache(true, "/no/such/file");
+
+    assertEquals(Optional.of("W"), cache.getCountryCode("CF10 1AA", ai("W")));
+    assertEquals(1, aiCalls.get());
+  }
+
+  private Supplier<Optional<String>> ai(String countryCode) {
+    return () -> {
+      aiCalls.incrementAndGet();
+      return Optional.ofNullable(countryCode);
+    };
+  }
+}
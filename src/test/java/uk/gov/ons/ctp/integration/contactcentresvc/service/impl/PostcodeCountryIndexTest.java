@@ -0,0 +1,171 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Optional;
+import org.junit.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PostcodeCountryIndexSettings;
+
+public class PostcodeCountryIndexTest {
+
+  private static final String INDEX_FILE = "postcode/postcode-country-index-v2.csv";
+
+  private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private PostcodeCountryIndex createIndex(boolean enabled, Resource indexFile) {
+    PostcodeCountryIndexSettings settings = new PostcodeCountryIndexSettings();
+    settings.setEnabled(enabled);
+    settings.setIndexFile(indexFile);
+    return new PostcodeCountryIndex(settings, meterRegistry);
+  }
+
+  private PostcodeCountryIndex createIndex() {
+    return createIndex(true, new ClassPathResource(INDEX_FILE));
+  }
+
+  @Test
+  public void shouldFindCountryOfPostcodeArea() {
+    PostcodeCountryIndex index = createIndex();
+
+    assertEquals(Optional.of("S"), index.getCountryCode("EH1 1YZ"));
+    assertEquals(Optional.of("W"), index.getCountryCode("CF10 1AA"));
+    assertEquals(Optional.of("E"), index.getCountryCode("SO15 5NF"));
+    assertEquals(Optional.of("N"), index.getCountryCode("BT1 1AA"));
+  }
+
+  @Test
+  public void shouldNotConfuseAreasSharingLeadingLetters() {
+    PostcodeCountryIndex index = createIndex();
+
+    assertEquals(Optional.of("S"), index.getCountryCode("G1 1AA"));
+    assertEquals(Optional.of("E"), index.getCountryCode("GL1 1AA"));
+  }
+
+  @Test
+  public void shouldPreferDistrictOverArea() {
+    PostcodeCountryIndex index = createIndex();
+
+    assertEquals(Optional.of("E"), index.getCountryCode("CH2 1AA"));
+    assertEquals(Optional.of("W"), index.getCountryCode("CH5 1AA"));
+  }
+
+  @Test
+  public void shouldLeaveBorderDistrictsToAI() {
+    PostcodeCountryIndex index = createIndex();
+
+    assertEquals(Optional.empty(), index.getCountryCode("TD15 1AA"));
+    assertEquals(Optional.empty(), index.getCountryCode("SY10 1AA"));
+  }
+
+  /*
+   * Places in districts with postcodes on both sides of a border. Only the outward code is used by
+   * the index, so the inward code is arbitrary.
+   */
+  @Test
+  public void shouldNeverGiveWrongCountryForCrossBorderDistricts() {
+    PostcodeCountryIndex index = createIndex();
+
+    assertNeverWrong(index, "TD15 1AA", "E"); // Berwick-upon-Tweed
+    assertNeverWrong(index, "TD15 1AA", "S"); // Paxton
+    assertNeverWrong(index, "TD12 1AA", "E"); // Cornhill-on-Tweed
+    assertNeverWrong(index, "TD12 1AA", "S"); // Coldstream
+    assertNeverWrong(index, "TD5 1AA", "S"); // Kirk Yetholm
+    assertNeverWrong(index, "TD9 1AA", "S"); // Newcastleton
+    assertNeverWrong(index, "DG16 1AA", "S"); // Gretna
+    assertNeverWrong(index, "CA6 1AA", "E"); // Longtown
+    assertNeverWrong(index, "LL14 1AA", "E"); // Chirk Bank
+    assertNeverWrong(index, "LL14 1AA", "W"); // Chirk
+    assertNeverWrong(index, "SY10 1AA", "E"); // Oswestry
+    assertNeverWrong(index, "SY10 1AA", "W"); // Llansilin
+    assertNeverWrong(index, "CH4 1AA", "E"); // Handbridge
+    assertNeverWrong(index, "CH4 1AA", "W"); // Saltney
+    assertNeverWrong(index, "HR3 1AA", "E"); // Clifford
+    assertNeverWrong(index, "HR3 1AA", "W"); // Hay-on-Wye
+    assertNeverWrong(index, "NP16 1AA", "E"); // Tutshill
+    assertNeverWrong(index, "NP16 1AA", "W"); // Chepstow
+    assertNeverWrong(index, "LD7 1AA", "W"); // Knighton
+  }
+
+  @Test
+  public void shouldNotKnowPostcodesOutsideIndex() {
+    PostcodeCountryIndex index = createIndex();
+
+    assertEquals(Optional.empty(), index.getCountryCode("GY1 1AA"));
+  }
+
+  @Test
+  public void shouldIgnoreCaseAndSpaces() {
+    PostcodeCountryIndex index = createIndex();
+
+    assertEquals(Optional.of("S"), index.getCountryCode("eh11yz"));
+    assertEquals(Optional.of("W"), index.getCountryCode(" cf10  1aa "));
+  }
+
+  @Test
+  public void shouldOnlyKnowNorthernIrelandWhenDisabled() {
+    PostcodeCountryIndex index = createIndex(false, new ClassPathResource(INDEX_FILE));
+
+    assertEquals(Optional.empty(), index.getCountryCode("EH1 1YZ"));
+    assertEquals(Optional.of("N"), index.getCountryCode("BT1 1AA"));
+  }
+
+  @Test
+  public void shouldOnlyKnowNorthernIrelandWhenIndexFileIsMissing() {
+    PostcodeCountryIndex index = createIndex(true, new ClassPathResource("postcode/missing.csv"));
+
+    assertEquals(Optional.empty(), index.getCountryCode("EH1 1YZ"));
+    assertEquals(Optional.of("N"), index.getCountryCode("bt1 1aa"));
+  }
+
+  @Test
+  public void shouldSkipMalformedLines() {
+    Resource indexFile =
+        new ByteArrayResource("# test\nEH,S\nrubbish\nCF,W,X\n\nTD15,*\n".getBytes());
+    PostcodeCountryIndex index = createIndex(true, indexFile);
+
+    assertEquals(Optional.of("S"), index.getCountryCode("EH1 1YZ"));
+    assertEquals(Optional.empty(), index.getCountryCode("CF10 1AA"));
+    assertEquals(Optional.empty(), index.getCountryCode("TD15 1AA"));
+    assertEquals(Optional.of("N"), index.getCountryCode("BT1 1AA"));
+  }
+
+  @Test
+  public void shouldCountLookupsByResult() {
+    PostcodeCountryIndex index = createIndex();
+
+    index.getCountryCode("EH1 1YZ");
+    index.getCountryCode("CF10 1AA");
+    index.getCountryCode("TD15 1AA");
+    index.getCountryCode("GY1 1AA");
+
+    assertEquals(2.0, lookups("hit"), 0.0);
+    assertEquals(1.0, lookups("border"), 0.0);
+    assertEquals(1.0, lookups("unknown"), 0.0);
+  }
+
+  @Test
+  public void shouldFindOutwardCode() {
+    assertEquals("EH1", PostcodeCountryIndex.outwardCode("EH1 1YZ"));
+    assertEquals("SW1A", PostcodeCountryIndex.outwardCode("sw1a1aa"));
+  }
+
+  private void assertNeverWrong(PostcodeCountryIndex index, String postcode, String country) {
+    Optional<String> countryCode = index.getCountryCode(postcode);
+    assertTrue(
+        postcode + " gave " + countryCode,
+        countryCode.isEmpty() || countryCode.get().equals(country));
+  }
+
+  private double lookups(String result) {
+    return meterRegistry
+        .get(PostcodeCountryIndex.LOOKUP_COUNTER_NAME)
+        .tag("result", result)
+        .counter()
+        .count();
+  }
+}
@@ -0,0 +1,138 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PostcodeQueryCacheSettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.AddressQueryResponseDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.representation.PostcodeQueryRequestDTO;
+
+public class PostcodeQueryCacheTest {
+
+  private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private AtomicInteger aiCalls = new AtomicInteger();
+
+  private PostcodeQueryCache createCache(boolean enabled, String epoch) {
+    PostcodeQueryCacheSettings settings = new PostcodeQueryCacheSettings();
+    settings.setEnabled(enabled);
+    return new PostcodeQueryCache(settings, epoch, meterRegistry);
+  }
+
+  @Test
+  public void shouldCallAiEveryTimeWhenDisabled() {
+    PostcodeQueryCache cache = createCache(false, "39");
+
+    cache.getPostcodeQuery(request("EX2 8DD", 0, 100), ai());
+    cache.getPostcodeQuery(request("EX2 8DD", 0, 100), ai());
+
+    assertEquals(2, aiCalls.get());
+  }
+
+  @Test
+  public void shouldCacheResultsByNormalisedPostcode() {
+    PostcodeQueryCache cache = createCache(true, "39");
+
+    AddressQueryResponseDTO results = cache.getPostcodeQuery(request("EX2 8DD", 0, 100), ai());
+
+    assertSame(results, cache.getPostcodeQuery(request("ex28dd", 0, 100), ai()));
+    assertSame(results, cache.getPostcodeQuery(request(" Ex2  8dD ", 0, 100), ai()));
+    assertEquals(1, aiCalls.get());
+  }
+
+  @Test
+  public void shouldCacheEachPageSeparately() {
+    PostcodeQueryCache cache = createCache(true, "39");
+
+    cache.getPostcodeQuery(request("EX2 8DD", 0, 10), ai());
+    cache.getPostcodeQuery(request("EX2 8DD", 10, 10), ai());
+    cache.getPostcodeQuery(request("EX2 8DD", 0, 20), ai());
+    assertEquals(3, aiCalls.get());
+
+    cache.getPostcodeQuery(request("EX2 8DD", 10, 10), ai());
+    assertEquals(3, aiCalls.get());
+  }
+
+  @Test
+  public void shouldCacheResultsWithNoAddresses() {
+    PostcodeQueryCache cache = createCache(true, null);
+
+    cache.getPostcodeQuery(request("ZZ1 1ZZ", 0, 100), ai(0));
+    cache.getPostcodeQuery(request("ZZ1 1ZZ", 0, 100), ai(0));
+
+    assertEquals(1, aiCalls.get());
+  }
+
+  @Test
+  public void shouldNotCacheFailedSearch() {
+    PostcodeQueryCache cache = createCache(true, "39");
+    PostcodeQueryRequestDTO request = request("EX2 8DD", 0, 100);
+
+    assertThrows(
+        ResponseStatusException.class,
+        () ->
+            cache.getPostcodeQuery(
+                request,
+                () -> {
+                  throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE);
+                }));
+    cache.getPostcodeQuery(request, ai());
+
+    assertEquals(1, aiCalls.get());
+  }
+
+  @Test
+  public void shouldRecordHitsAndMisses() {
+    PostcodeQueryCache cache = createCache(true, "39");
+
+    cache.getPostcodeQuery(request("EX2 8DD", 0, 100), ai());
+    cache.getPostcodeQuery(request("EX2 8DD", 0, 100), ai());
+    cache.getPostcodeQuery(request("EX2 8DD", 0, 100), ai());
+
+    assertEquals(2.0, gets("hit"), 0.0);
+    assertEquals(1.0, gets("miss"), 0.0);
+  }
+
+  private double gets(String result) {
+    return meterRegistry
+        .get("cache.gets")
+        .tag("cache", PostcodeQueryCache.CACHE_NAME)
+        .tag("result", result)
+        .functionCounter()
+        .count();
+  }
+
+  private PostcodeQueryRequestDTO request(String postcode, int offset, int limit) {
+    return PostcodeQueryRequestDTO.create(postcode, offset, limit);
+  }
+
+  private Supplier<AddressQueryResponseDTO> ai() {
+    return ai(3);
+  }
+
+  private Supplier<AddressQueryResponseDTO> ai(int numAddresses) {
+    return () -> {
+      aiCalls.incrementAndGet();
+      ArrayList<AddressDTO> addresses = new ArrayList<>();
+      for (int i = 0; i < numAddresses; i++) {
+        AddressDTO address = new AddressDTO();
+        address.setUprn(Integer.toString(i));
+        addresses.add(address);
+      }
+      AddressQueryResponseDTO response = new AddressQueryResponseDTO();
+      response.setDataVersion("39");
+      response.setAddresses(addresses);
+      response.setTotal(numAddresses);
+      return response;
+    };
+  }
+}
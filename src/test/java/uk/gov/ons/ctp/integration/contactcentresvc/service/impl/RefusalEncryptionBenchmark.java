@@ -0,0 +1,82 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.PgpKeySettings;
+import uk.gov.ons.ctp.integration.contactcentresvc.util.PgpEncrypt;
+import uk.gov.ons.ctp.integration.contactcentresvc.util.PgpFieldEncryptor;
+
+/**
+ * Measures encrypting the contact details of a hard refusal, which are a title, forename and
+ * surname each encrypted for both public keys and Base64 encoded. They are encrypted with the keys
+ * read for each field as they used to be, with the keys held by the key registry, and with the
+ * registry's field encryptor. Run through the jmh profile, which also reports the allocation per
+ * operation:
+ *
+ * <pre>
+ * mvn -Pjmh verify -Djmh.include=RefusalEncryptionBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RefusalEncryptionBenchmark {
+
+  private static final List<String> CONTACT = List.of("Mr", "Steve", "Jones");
+
+  private List<Resource> keyResources;
+
+  private PgpKeyRegistry pgpKeyRegistry;
+
+  @Setup
+  public void setup() {
+    keyResources =
+        List.of(new ClassPathResource("pgp/key1.asc"), new ClassPathResource("pgp/key2.asc"));
+    pgpKeyRegistry = new PgpKeyRegistry(new PgpKeySettings(), keyResources);
+  }
+
+  @Benchmark
+  public void readingKeysForEachField(Blackhole blackhole) {
+    for (String field : CONTACT) {
+      blackhole.consume(base64(PgpEncrypt.encrypt(field, keyResources)));
+    }
+  }
+
+  @Benchmark
+  public void withKeyRegistry(Blackhole blackhole) {
+    for (String field : CONTACT) {
+      blackhole.consume(
+          base64(PgpEncrypt.encryptWithKeys(field, pgpKeyRegistry.getPublicKeys())));
+    }
+  }
+
+  @Benchmark
+  public void withFieldEncryptor(Blackhole blackhole) {
+    PgpFieldEncryptor encryptor = pgpKeyRegistry.getFieldEncryptor();
+    for (String field : CONTACT) {
+      blackhole.consume(encryptor.encryptToBase64(field));
+    }
+  }
+
+  private static String base64(String armoured) {
+    return Base64.getEncoder().encodeToString(armoured.getBytes(StandardCharsets.UTF_8));
+  }
+}
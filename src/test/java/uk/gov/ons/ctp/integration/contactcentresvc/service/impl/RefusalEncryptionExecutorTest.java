@@ -0,0 +1,138 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import uk.gov.ons.ctp.common.error.CTPException;
+import uk.gov.ons.ctp.common.error.CTPException.Fault;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.RefusalEncryptionSettings;
+
+public class RefusalEncryptionExecutorTest {
+
+  private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private RefusalEncryptionExecutor executor;
+
+  private ExecutorService callers = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdown();
+    callers.shutdownNow();
+  }
+
+  private void createExecutor(boolean pooled, long timeoutMillis) {
+    RefusalEncryptionSettings settings = new RefusalEncryptionSettings();
+    settings.setPooled(pooled);
+    settings.setThreadPoolSize(1);
+    settings.setQueueCapacity(1);
+    settings.setTimeoutMillis(timeoutMillis);
+    executor = new RefusalEncryptionExecutor(settings, meterRegistry);
+  }
+
+  @Test
+  public void shouldEncryptOnCallingThreadWhenNotPooled() throws Exception {
+    createExecutor(false, 1000);
+    assertFalse(executor.isPooled());
+
+    assertEquals(
+        Thread.currentThread().getName(),
+        executor.encrypt(() -> Thread.currentThread().getName()));
+  }
+
+  @Test
+  public void shouldEncryptOnPoolThreadWhenPooled() throws Exception {
+    createExecutor(true, 1000);
+    assertTrue(executor.isPooled());
+
+    String thread = executor.encrypt(() -> Thread.currentThread().getName());
+
+    assertTrue(thread, thread.startsWith("refusal-encryption-"));
+  }
+
+  @Test
+  public void shouldRethrowFailedEncryption() {
+    createExecutor(true, 1000);
+    IllegalStateException failure = new IllegalStateException("failed to encrypt contents");
+
+    RuntimeException thrown =
+        assertThrows(
+            RuntimeException.class,
+            () ->
+                executor.encrypt(
+                    () -> {
+                      throw failure;
+                    }));
+
+    assertSame(failure, thrown);
+  }
+
+  @Test
+  public void shouldTimeOutSlowEncryption() throws Exception {
+    createExecutor(true, 50);
+    CountDownLatch release = new CountDownLatch(1);
+
+    CTPException thrown =
+        assertThrows(CTPException.class, () -> executor.encrypt(() -> await(release)));
+    release.countDown();
+
+    assertEquals(Fault.SYSTEM_ERROR, thrown.getFault());
+  }
+
+  @Test
+  public void shouldTurnAwayEncryptionWhenSaturated() throws Exception {
+    createExecutor(true, 10000);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(1);
+
+    // one being encrypted and one queued fills the pool
+    callers.submit(
+        () ->
+            executor.encrypt(
+                () -> {
+                  started.countDown();
+                  return await(release);
+                }));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    callers.submit(() -> executor.encrypt(() -> await(release)));
+    while (executor.saturation() < 1.0) {
+      Thread.sleep(10);
+    }
+
+    assertEquals(
+        1.0,
+        meterRegistry.get(RefusalEncryptionExecutor.SATURATION_GAUGE_NAME).gauge().value(),
+        0.0);
+
+    ResponseStatusException thrown =
+        assertThrows(ResponseStatusException.class, () -> executor.encrypt(() -> "turned away"));
+    release.countDown();
+
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, thrown.getStatus());
+    assertEquals(
+        1.0,
+        meterRegistry.get(RefusalEncryptionExecutor.REJECTED_COUNTER_NAME).counter().count(),
+        0.0);
+  }
+
+  private String await(CountDownLatch release) {
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return "released";
+  }
+}
@@ -0,0 +1,402 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+import uk.gov.ons.ctp.common.FixtureHelper;
+import uk.gov.ons.ctp.integration.caseapiclient.caseservice.model.CaseContainerDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.RmCaseCacheSettings;
+
+public class RmCaseCacheTest {
+  private static final long UPRN = 334999999999L;
+
+  private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private RmCaseCache cache;
+  private List<CaseContainerDTO> casesFromRm;
+  private CaseContainerDTO caseFromRm;
+  private AtomicInteger rmCalls = new AtomicInteger();
+
+  @Before
+  public void setup() {
+    casesFromRm = FixtureHelper.loadPackageFixtures(CaseContainerDTO[].class);
+    caseFromRm = casesFromRm.get(0);
+    createCache(true);
+  }
+
+  @After
+  public void tearDown() {
+    RequestContextHolder.resetRequestAttributes();
+  }
+
+  private void createCache(boolean enabled) {
+    createCache(enabled, false);
+  }
+
+  private void createCache(boolean enabled, boolean singleFlight) {
+    RmCaseCacheSettings settings = new RmCaseCacheSettings();
+    settings.setEnabled(enabled);
+    settings.setSingleFlight(singleFlight);
+    cache = new RmCaseCache(settings, meterRegistry);
+  }
+
+  @Test
+  public void shouldCallRmEveryTimeWhenDisabled() {
+    createCache(false);
+    assertFalse(cache.isEnabled());
+
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+
+    assertEquals(2, rmCalls.get());
+  }
+
+  @Test
+  public void shouldCacheCaseById() {
+    assertTrue(cache.isEnabled());
+
+    CaseContainerDTO first = cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+    CaseContainerDTO second = cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+
+    assertEquals(1, rmCalls.get());
+    assertEquals(caseFromRm.getId(), second.getId());
+    assertEquals(caseFromRm.getCaseRef(), second.getCaseRef());
+    assertEquals(caseFromRm.getCaseEvents().size(), second.getCaseEvents().size());
+    assertNotSame(first, second);
+    assertNotSame(caseFromRm, second);
+  }
+
+  @Test
+  public void shouldNotLetCallerModifyCachedCase() {
+    CaseContainerDTO first = cache.getCaseById(caseFromRm.getId(), true, rm(caseFromRm));
+    first.setCaseType("CE");
+    first.setCaseEvents(List.of());
+
+    CaseContainerDTO second = cache.getCaseById(caseFromRm.getId(), true, rm(caseFromRm));
+    assertEquals("HH", second.getCaseType());
+    assertEquals(3, second.getCaseEvents().size());
+  }
+
+  @Test
+  public void shouldCacheWithAndWithoutEventsSeparately() {
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+    cache.getCaseById(caseFromRm.getId(), true, rm(caseFromRm));
+    cache.getCaseById(caseFromRm.getId(), true, rm(caseFromRm));
+
+    assertEquals(2, rmCalls.get());
+  }
+
+  @Test
+  public void shouldNotCacheFailedRmCall() {
+    Supplier<CaseContainerDTO> notFound =
+        () -> {
+          rmCalls.incrementAndGet();
+          throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        };
+
+    assertThrows(
+        ResponseStatusException.class,
+        () -> cache.getCaseById(caseFromRm.getId(), false, notFound));
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+
+    assertEquals(2, rmCalls.get());
+  }
+
+  @Test
+  public void shouldCacheCaseByCaseRef() {
+    long caseRef = Long.parseLong(caseFromRm.getCaseRef());
+
+    cache.getCaseByCaseRef(caseRef, false, rm(caseFromRm));
+    CaseContainerDTO result = cache.getCaseByCaseRef(caseRef, false, rm(caseFromRm));
+
+    assertEquals(1, rmCalls.get());
+    assertEquals(caseFromRm.getId(), result.getId());
+  }
+
+  @Test
+  public void shouldCacheCasesByUprn() {
+    cache.getCasesByUprn(UPRN, false, rm(casesFromRm));
+    List<CaseContainerDTO> result = cache.getCasesByUprn(UPRN, false, rm(casesFromRm));
+
+    assertEquals(1, rmCalls.get());
+    assertEquals(casesFromRm.size(), result.size());
+    assertNotSame(casesFromRm.get(0), result.get(0));
+  }
+
+  @Test
+  public void shouldEvictCaseFromEveryLookup() {
+    long caseRef = Long.parseLong(caseFromRm.getCaseRef());
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+    cache.getCaseById(caseFromRm.getId(), true, rm(caseFromRm));
+    cache.getCaseByCaseRef(caseRef, false, rm(caseFromRm));
+    cache.getCasesByUprn(UPRN, false, rm(casesFromRm));
+    assertEquals(4, rmCalls.get());
+
+    cache.evict(caseFromRm.getId());
+
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+    cache.getCaseById(caseFromRm.getId(), true, rm(caseFromRm));
+    cache.getCaseByCaseRef(caseRef, false, rm(caseFromRm));
+    cache.getCasesByUprn(UPRN, false, rm(casesFromRm));
+    assertEquals(8, rmCalls.get());
+  }
+
+  @Test
+  public void shouldKeepOtherCasesOnEviction() {
+    CaseContainerDTO otherCase = casesFromRm.get(2);
+    cache.getCaseById(otherCase.getId(), false, rm(otherCase));
+
+    cache.evict(caseFromRm.getId());
+    cache.getCaseById(otherCase.getId(), false, rm(otherCase));
+
+    assertEquals(1, rmCalls.get());
+  }
+
+  @Test
+  public void shouldRecordHitsAndMisses() {
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+
+    assertEquals(2.0, cacheGets("hit"), 0.0);
+    assertEquals(1.0, cacheGets("miss"), 0.0);
+  }
+
+  @Test
+  public void shouldNotFetchSameCaseTwiceInOneRequest() {
+    createCache(false);
+    startRequest();
+
+    CaseContainerDTO first = cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+    CaseContainerDTO second = cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+
+    assertEquals(1, rmCalls.get());
+    assertEquals(caseFromRm.getId(), second.getId());
+    assertNotSame(first, second);
+    assertEquals(1.0, avoidedLookups(RmCaseCache.BY_ID_CACHE_NAME), 0.0);
+  }
+
+  @Test
+  public void shouldKeepLookupsApartInRequestMemo() {
+    createCache(false);
+    startRequest();
+    long caseRef = Long.parseLong(caseFromRm.getCaseRef());
+
+    cache.getCaseByCaseRef(caseRef, false, rm(caseFromRm));
+    cache.getCasesByUprn(caseRef, false, rm(casesFromRm));
+    cache.getCasesByUprn(caseRef, false, rm(casesFromRm));
+
+    assertEquals(2, rmCalls.get());
+    assertEquals(1.0, avoidedLookups(RmCaseCache.BY_UPRN_CACHE_NAME), 0.0);
+  }
+
+  @Test
+  public void shouldNotShareRequestMemoBetweenRequests() {
+    createCache(false);
+    startRequest();
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+
+    startRequest();
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+
+    assertEquals(2, rmCalls.get());
+  }
+
+  @Test
+  public void shouldClearRequestMemoOnEviction() {
+    createCache(false);
+    startRequest();
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+
+    cache.evict(caseFromRm.getId());
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+
+    assertEquals(2, rmCalls.get());
+  }
+
+  @Test
+  public void shouldShareInFlightRmCall() throws Exception {
+    createCache(false, true);
+    CountDownLatch release = new CountDownLatch(1);
+    Supplier<CaseContainerDTO> slowRm =
+        () -> {
+          rmCalls.incrementAndGet();
+          awaitQuietly(release);
+          return caseFromRm;
+        };
+
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<CaseContainerDTO> leader =
+          pool.submit(() -> cache.getCaseById(caseFromRm.getId(), false, slowRm));
+      waitForFlights(RmCaseCache.BY_ID_CACHE_NAME, RmCaseCache.LEADER, 1);
+      Future<CaseContainerDTO> follower =
+          pool.submit(() -> cache.getCaseById(caseFromRm.getId(), false, slowRm));
+      waitForFlights(RmCaseCache.BY_ID_CACHE_NAME, RmCaseCache.FOLLOWER, 1);
+      release.countDown();
+
+      assertSame(caseFromRm, leader.get(10, TimeUnit.SECONDS));
+      CaseContainerDTO shared = follower.get(10, TimeUnit.SECONDS);
+      assertNotSame(caseFromRm, shared);
+      assertEquals(caseFromRm.getId(), shared.getId());
+      assertEquals(1, rmCalls.get());
+    } finally {
+      release.countDown();
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldShareInFlightRmCallWhileCaching() throws Exception {
+    createCache(true, true);
+    CountDownLatch release = new CountDownLatch(1);
+    Supplier<CaseContainerDTO> slowRm =
+        () -> {
+          rmCalls.incrementAndGet();
+          awaitQuietly(release);
+          return caseFromRm;
+        };
+
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<CaseContainerDTO> leader =
+          pool.submit(() -> cache.getCaseById(caseFromRm.getId(), false, slowRm));
+      waitForFlights(RmCaseCache.BY_ID_CACHE_NAME, RmCaseCache.LEADER, 1);
+      Future<CaseContainerDTO> follower =
+          pool.submit(() -> cache.getCaseById(caseFromRm.getId(), false, slowRm));
+      waitForFlights(RmCaseCache.BY_ID_CACHE_NAME, RmCaseCache.FOLLOWER, 1);
+      release.countDown();
+      leader.get(10, TimeUnit.SECONDS);
+      follower.get(10, TimeUnit.SECONDS);
+
+      cache.getCaseById(caseFromRm.getId(), false, slowRm);
+
+      assertEquals(1, rmCalls.get());
+    } finally {
+      release.countDown();
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldShareFailureOfInFlightRmCall() throws Exception {
+    createCache(false, true);
+    CountDownLatch release = new CountDownLatch(1);
+    Supplier<List<CaseContainerDTO>> failingRm =
+        () -> {
+          rmCalls.incrementAndGet();
+          awaitQuietly(release);
+          throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        };
+
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<List<CaseContainerDTO>> leader =
+          pool.submit(() -> cache.getCasesByUprn(UPRN, false, failingRm));
+      waitForFlights(RmCaseCache.BY_UPRN_CACHE_NAME, RmCaseCache.LEADER, 1);
+      Future<List<CaseContainerDTO>> follower =
+          pool.submit(() -> cache.getCasesByUprn(UPRN, false, failingRm));
+      waitForFlights(RmCaseCache.BY_UPRN_CACHE_NAME, RmCaseCache.FOLLOWER, 1);
+      release.countDown();
+
+      ExecutionException e =
+          assertThrows(ExecutionException.class, () -> follower.get(10, TimeUnit.SECONDS));
+      assertTrue(e.getCause() instanceof ResponseStatusException);
+      assertThrows(ExecutionException.class, () -> leader.get(10, TimeUnit.SECONDS));
+      assertEquals(1, rmCalls.get());
+    } finally {
+      release.countDown();
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldNotShareCompletedRmCall() {
+    createCache(false, true);
+
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+    cache.getCaseById(caseFromRm.getId(), false, rm(caseFromRm));
+
+    assertEquals(2, rmCalls.get());
+    assertEquals(2.0, flights(RmCaseCache.BY_ID_CACHE_NAME, RmCaseCache.LEADER), 0.0);
+    assertEquals(0.0, flights(RmCaseCache.BY_ID_CACHE_NAME, RmCaseCache.FOLLOWER), 0.0);
+  }
+
+  private double flights(String cacheName, String role) {
+    Counter counter =
+        meterRegistry
+            .find(RmCaseCache.SINGLE_FLIGHT_COUNTER_NAME)
+            .tag("cache", cacheName)
+            .tag("role", role)
+            .counter();
+    return counter == null ? 0.0 : counter.count();
+  }
+
+  private void waitForFlights(String cacheName, String role, int expected)
+      throws InterruptedException {
+    long giveUp = System.currentTimeMillis() + 10000;
+    while (flights(cacheName, role) < expected) {
+      assertTrue("Timed out waiting for " + role, System.currentTimeMillis() < giveUp);
+      Thread.sleep(5);
+    }
+  }
+
+  private void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void startRequest() {
+    RequestContextHolder.setRequestAttributes(
+        new ServletRequestAttributes(new MockHttpServletRequest()));
+  }
+
+  private double avoidedLookups(String cacheName) {
+    return meterRegistry
+        .get(RmCaseCache.AVOIDED_LOOKUP_COUNTER_NAME)
+        .tag("cache", cacheName)
+        .counter()
+        .count();
+  }
+
+  private double cacheGets(String result) {
+    return meterRegistry
+        .get("cache.gets")
+        .tag("cache", RmCaseCache.BY_ID_CACHE_NAME)
+        .tag("result", result)
+        .functionCounter()
+        .count();
+  }
+
+  private <T> Supplier<T> rm(T result) {
+    return () -> {
+      rmCalls.incrementAndGet();
+      return result;
+    };
+  }
+}
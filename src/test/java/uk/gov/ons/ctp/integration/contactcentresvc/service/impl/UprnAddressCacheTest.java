@@ -0,0 +1,153 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.service.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertThrows;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexAddressCompositeDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexResponseCompositeDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.AddressIndexSearchResultsCompositeDTO;
+import uk.gov.ons.ctp.integration.contactcentresvc.client.addressindex.model.ResponseStatusData;
+import uk.gov.ons.ctp.integration.contactcentresvc.config.UprnAddressCacheSettings;
+
+public class UprnAddressCacheTest {
+
+  private static final long UPRN = 100041045018L;
+
+  private AtomicInteger aiCalls = new AtomicInteger();
+
+  private UprnAddressCache createCache(boolean enabled, long notFoundTimeToLiveSeconds) {
+    UprnAddressCacheSettings settings = new UprnAddressCacheSettings();
+    settings.setEnabled(enabled);
+    settings.setNotFoundTimeToLiveSeconds(notFoundTimeToLiveSeconds);
+    return new UprnAddressCache(settings, "39", new SimpleMeterRegistry());
+  }
+
+  @Test
+  public void shouldCallAiEveryTimeWhenDisabled() {
+    UprnAddressCache cache = createCache(false, 60);
+
+    cache.getAddress(UPRN, ai(200));
+    cache.getAddress(UPRN, ai(200));
+
+    assertEquals(2, aiCalls.get());
+  }
+
+  @Test
+  public void shouldCacheFoundAddress() {
+    UprnAddressCache cache = createCache(true, 60);
+
+    cache.getAddress(UPRN, ai(200));
+    AddressIndexSearchResultsCompositeDTO result = cache.getAddress(UPRN, ai(200));
+
+    assertEquals(1, aiCalls.get());
+    assertEquals(200, result.getStatus().getCode());
+    assertEquals(Long.toString(UPRN), result.getResponse().getAddress().getUprn());
+  }
+
+  @Test
+  public void shouldHandOutCopies() {
+    UprnAddressCache cache = createCache(true, 60);
+
+    AddressIndexSearchResultsCompositeDTO first = cache.getAddress(UPRN, ai(200));
+    first.getResponse().getAddress().setCensusAddressType("HH");
+    AddressIndexSearchResultsCompositeDTO second = cache.getAddress(UPRN, ai(200));
+
+    assertNotSame(first, second);
+    assertEquals("NA", second.getResponse().getAddress().getCensusAddressType());
+  }
+
+  @Test
+  public void shouldCacheNotFoundStatus() {
+    UprnAddressCache cache = createCache(true, 60);
+
+    cache.getAddress(UPRN, ai(404));
+    AddressIndexSearchResultsCompositeDTO result = cache.getAddress(UPRN, ai(200));
+
+    assertEquals(1, aiCalls.get());
+    assertEquals(404, result.getStatus().getCode());
+  }
+
+  @Test
+  public void shouldCacheNotFoundException() {
+    UprnAddressCache cache = createCache(true, 60);
+    ResponseStatusException notFound =
+        new ResponseStatusException(HttpStatus.NOT_FOUND, "No address for UPRN");
+
+    assertThrows(ResponseStatusException.class, () -> cache.getAddress(UPRN, aiThrows(notFound)));
+    ResponseStatusException first =
+        assertThrows(ResponseStatusException.class, () -> cache.getAddress(UPRN, ai(200)));
+    ResponseStatusException second =
+        assertThrows(ResponseStatusException.class, () -> cache.getAddress(UPRN, ai(200)));
+
+    assertEquals(1, aiCalls.get());
+    assertEquals(HttpStatus.NOT_FOUND, first.getStatus());
+    assertEquals("No address for UPRN", first.getReason());
+    assertNotSame(notFound, first);
+    assertNotSame(first, second);
+  }
+
+  @Test
+  public void shouldForgetNotFoundSoonerThanFound() {
+    UprnAddressCache cache = createCache(true, 0);
+
+    cache.getAddress(UPRN, ai(404));
+    cache.getAddress(UPRN, ai(200));
+    assertEquals(2, aiCalls.get());
+
+    cache.getAddress(UPRN, ai(200));
+    assertEquals(2, aiCalls.get());
+  }
+
+  @Test
+  public void shouldNotCacheOtherStatus() {
+    UprnAddressCache cache = createCache(true, 60);
+
+    assertEquals(429, cache.getAddress(UPRN, ai(429)).getStatus().getCode());
+    assertEquals(200, cache.getAddress(UPRN, ai(200)).getStatus().getCode());
+
+    assertEquals(2, aiCalls.get());
+  }
+
+  @Test
+  public void shouldNotCacheOtherFailure() {
+    UprnAddressCache cache = createCache(true, 60);
+    ResponseStatusException failure = new ResponseStatusException(HttpStatus.BAD_GATEWAY);
+
+    assertThrows(ResponseStatusException.class, () -> cache.getAddress(UPRN, aiThrows(failure)));
+    cache.getAddress(UPRN, ai(200));
+
+    assertEquals(2, aiCalls.get());
+  }
+
+  private Supplier<AddressIndexSearchResultsCompositeDTO> ai(int status) {
+    return () -> {
+      aiCalls.incrementAndGet();
+      AddressIndexAddressCompositeDTO address = new AddressIndexAddressCompositeDTO();
+      address.setUprn(Long.toString(UPRN));
+      address.setCensusAddressType("NA");
+      AddressIndexResponseCompositeDTO response = new AddressIndexResponseCompositeDTO();
+      response.setAddress(address);
+      ResponseStatusData statusData = new ResponseStatusData();
+      statusData.setCode(status);
+      AddressIndexSearchResultsCompositeDTO result = new AddressIndexSearchResultsCompositeDTO();
+      result.setDataVersion("39");
+      result.setResponse(response);
+      result.setStatus(statusData);
+      return result;
+    };
+  }
+
+  private Supplier<AddressIndexSearchResultsCompositeDTO> aiThrows(ResponseStatusException e) {
+    return () -> {
+      aiCalls.incrementAndGet();
+      throw e;
+    };
+  }
+}
@@ -0,0 +1,43 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class PgpBufferTest {
+
+  private ThreadLocal<PgpBuffer> buffers = PgpBuffer.threadLocal();
+
+  @Test
+  public void shouldReuseBufferEmptied() throws Exception {
+    PgpBuffer first = PgpBuffer.get(buffers);
+    first.write(new byte[100]);
+
+    PgpBuffer second = PgpBuffer.get(buffers);
+
+    assertSame(first, second);
+    assertEquals(0, second.size());
+  }
+
+  @Test
+  public void shouldDropBufferWhichHasGrownTooLarge() throws Exception {
+    PgpBuffer first = PgpBuffer.get(buffers);
+    first.write(new byte[100 * 1024]);
+
+    PgpBuffer second = PgpBuffer.get(buffers);
+
+    assertNotSame(first, second);
+    assertSame(second, PgpBuffer.get(buffers));
+  }
+
+  @Test
+  public void shouldGiveContentsInPlace() throws Exception {
+    PgpBuffer buffer = PgpBuffer.get(buffers);
+    buffer.write(new byte[] {1, 2, 3});
+
+    assertEquals(3, buffer.size());
+    assertEquals(2, buffer.array()[1]);
+  }
+}
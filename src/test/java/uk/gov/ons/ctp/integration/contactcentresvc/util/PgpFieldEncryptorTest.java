@@ -0,0 +1,78 @@
+package uk.gov.ons.ctp.integration.contactcentresvc.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.io.ClassPathResource;
+
+public class PgpFieldEncryptorTest {
+  private static final String PUBLIC_KEY_1 = "pgp/key1.asc";
+  private static final String PUBLIC_KEY_2 = "pgp/key2.asc";
+
+  private PgpFieldEncryptor encryptor;
+
+  @Before
+  public void setup() throws Exception {
+    encryptor =
+        new PgpFieldEncryptor(
+            PgpEncrypt.readPublicKeys(
+                List.of(new ClassPathResource(PUBLIC_KEY_1), new ClassPathResource(PUBLIC_KEY_2))));
+  }
+
+  @Test
+  public void shouldEncryptForEitherKey() throws Exception {
+    String encrypted = encryptor.encryptToBase64(PgpEncryptTest.TEST_STRING);
+
+    verifyDecrypt(
+        PgpEncryptTest.TEST_STRING,
+        encrypted,
+        PgpEncryptTest.PASS_PHRASE,
+        PgpEncryptTest.PRIVATE_KEY_1);
+    verifyDecrypt(
+        PgpEncryptTest.TEST_STRING,
+        encrypted,
+        PgpEncryptTest.PASS_PHRASE2,
+        PgpEncryptTest.PRIVATE_KEY_2);
+  }
+
+  @Test
+  public void shouldEncryptEachValueSeparately() throws Exception {
+    String first = encryptor.encryptToBase64("Steve");
+    String second = encryptor.encryptToBase64("Jones");
+
+    verifyDecrypt("Steve", first, PgpEncryptTest.PASS_PHRASE, PgpEncryptTest.PRIVATE_KEY_1);
+    verifyDecrypt("Jones", second, PgpEncryptTest.PASS_PHRASE, PgpEncryptTest.PRIVATE_KEY_1);
+  }
+
+  @Test
+  public void shouldEncryptNamesWithAlternateCharacters() throws Exception {
+    List<String> names = List.of("Zoë", "Sørina", "Sévērus", "Mary-Jo", "Jokūbas", "Mæve", "Jœ");
+    for (String name : names) {
+      verifyDecrypt(
+          name,
+          encryptor.encryptToBase64(name),
+          PgpEncryptTest.PASS_PHRASE2,
+          PgpEncryptTest.PRIVATE_KEY_2);
+    }
+  }
+
+  @Test
+  public void shouldNotEncryptNull() {
+    assertNull(encryptor.encryptToBase64(null));
+  }
+
+  private void verifyDecrypt(
+      String clearText, String encrypted, String passPhrase, String privateKey) throws Exception {
+    String armoured = new String(Base64.getDecoder().decode(encrypted), StandardCharsets.UTF_8);
+    String privKey = PgpEncryptTest.readFileIntoString(privateKey);
+    try (ByteArrayInputStream is = new ByteArrayInputStream(privKey.getBytes())) {
+      assertEquals(clearText, PgpDecrypt.decrypt(is, armoured, passPhrase.toCharArray()));
+    }
+  }
+}